@@ -1,20 +1,243 @@
 package org.example;
 
+import org.example.controller.ColumnarTaskStore;
+import org.example.controller.TaskArchiver;
 import org.example.controller.TaskManager;
+import org.example.controller.TaskTransfer;
+import org.example.controller.WriteBehindQueue;
 import org.example.model.DatabaseHelper;
+import org.example.model.LogTaskRepository;
+import org.example.model.Metrics;
 import org.example.model.TaskDao;
+import org.example.model.TaskRepository;
 import org.example.view.ConsoleView;
+import org.example.view.ScriptRunner;
+import org.example.view.TaskClient;
+import org.example.view.TaskServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 public class Main {
 
     public static void main(String[] args) {
+        // "--cache" keeps every task in memory so the view menu doesn't have to query the database
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        boolean useCache = options.remove("--cache");
+        // "--columnar" is cache mode with the tasks kept in primitive arrays, for millions of tasks, see ColumnarTaskStore
+        boolean columnar = options.remove("--columnar");
+        // "--write-behind" queues changes and commits them in groups in the background, see WriteBehindQueue
+        boolean writeBehind = options.remove("--write-behind");
+        // "--summary-counters" keeps the Summary screen's counts up to date on every write, see SummaryCounters
+        boolean summaryCounters = options.remove("--summary-counters");
+        // "--archive" moves old completed tasks out of the tasks table in the background, see TaskArchiver
+        boolean archive = options.remove("--archive");
+        // "--reminders" prints a line in the menu when a task becomes due or overdue, see ReminderScheduler
+        boolean reminders = options.remove("--reminders");
+        // "--log-store <file>" keeps the tasks in an append-only log file instead of SQLite, see LogTaskRepository
+        Path logStore = null;
+        int logStoreOption = options.indexOf("--log-store");
+        if (logStoreOption >= 0 && logStoreOption + 1 < options.size()) {
+            logStore = Path.of(options.get(logStoreOption + 1));
+            options.subList(logStoreOption, logStoreOption + 2).clear();
+        }
+        args = options.toArray(new String[0]);
+
+        // "--client <address> <command>" or "--client <address> --script <file>" hands the work to a running server
+        // (see "--serve" below) without opening the database here at all
+        if (args.length >= 3 && args[0].equals("--client")) {
+            int errors = runClient(args);
+            if (errors > 0) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        // -Dtasktracker.metrics.dump=<file> writes the statistics to that file every
+        // -Dtasktracker.metrics.dumpSeconds (60 by default), which also turns the statistics on
+        String dumpFile = System.getProperty("tasktracker.metrics.dump");
+        if (dumpFile != null) {
+            Metrics.startDumping(Path.of(dumpFile), Long.getLong("tasktracker.metrics.dumpSeconds", 60));
+        }
+
         DatabaseHelper dbHelper = new DatabaseHelper();
-        TaskDao taskDao = new TaskDao(dbHelper);
+        TaskDao taskDao = null;
+        try {
+            taskDao = new TaskDao(dbHelper);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+
+        // "--vacuum" is a one-off for a tasks.db made before auto_vacuum was turned on - it rebuilds the whole file
+        // once, so the archiving can give space back a few pages at a time from then on
+        if (args.length >= 1 && args[0].equals("--vacuum")) {
+            System.out.println(taskDao.enableIncrementalVacuum()
+                    ? "Rebuilt the database, freed space is given back incrementally from now on."
+                    : "The database already gives freed space back incrementally.");
+            dbHelper.closeConnection();
+            return;
+        }
+
+        TaskRepository repository = taskDao;
+        if (logStore != null) {
+            try {
+                repository = new LogTaskRepository(logStore).start();
+            } catch (IOException e) {
+                System.err.println("Could not open " + logStore + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        TaskManager taskManager = columnar
+                ? new TaskManager(repository, new ColumnarTaskStore())
+                : new TaskManager(repository, useCache);
+        if (summaryCounters) {
+            taskManager.enableSummaryCounters();
+        }
+        if (writeBehind) {
+            taskManager.enableWriteBehind(new WriteBehindQueue.Settings());
+        }
+        if (archive) {
+            taskManager.enableArchiving(new TaskArchiver.Settings());
+        }
+
+        // running with "--import <file> [batchSize]" loads the file without opening the menu, and "--export <file>"
+        // writes every task out. Files ending in .json or .jsonl are JSON lines, anything else CSV, see TaskTransfer
+        if (args.length >= 2 && (args[0].equals("--import") || args[0].equals("--export"))) {
+            if (args.length >= 3) {
+                taskDao.setBatchSize(Integer.parseInt(args[2]));
+            }
+            Path file = Path.of(args[1]);
+            try {
+                if (args[0].equals("--import")) {
+                    taskManager.importTasks(file, TaskTransfer.Format.of(file), taskDao.getBatchSize(), progress("Imported"));
+                } else {
+                    taskManager.exportTasks(file, TaskTransfer.Format.of(file), progress("Exported"));
+                }
+            } catch (IOException e) {
+                System.out.println("Could not " + args[0].substring(2) + " " + file + ": " + e.getMessage());
+            } finally {
+                taskManager.close();
+                dbHelper.closeConnection();
+            }
+            return;
+        }
+
+        // "--script <file>" (or "-" for standard input) runs a file of commands, and a command can also be given
+        // directly, e.g. "add 2025-04-22 1 Buy milk" - see ScriptRunner for the commands and the output format
+        if ((args.length >= 2 && args[0].equals("--script")) || (args.length >= 1 && ScriptRunner.isCommand(args[0]))) {
+            int errors;
+            try {
+                errors = runScript(taskManager, args);
+            } finally {
+                taskManager.close();
+                dbHelper.closeConnection();
+            }
+            if (errors > 0) {
+                System.exit(1);
+            }
+            return;
+        }
 
-        TaskManager taskManager = new TaskManager(taskDao);
+        // "--serve <port or socket path>" keeps running and answers clients, until the process is stopped
+        if (args.length >= 2 && args[0].equals("--serve")) {
+            // the shutdown hook only makes serve() return. Everything is closed here, once, and the hook waits for
+            // that - the JVM halts as soon as the hooks are done.
+            CountDownLatch closed = new CountDownLatch(1);
+            boolean failed = false;
+            try (TaskServer server = new TaskServer(taskManager, args[1])) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        server.stop();
+                        closed.await();
+                    } catch (IOException e) {
+                        System.err.println("Could not stop the server cleanly: " + e.getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+                server.serve();
+            } catch (IOException e) {
+                System.err.println("Could not start the server on " + args[1] + ": " + e.getMessage());
+                failed = true;
+            } finally {
+                taskManager.close();
+                dbHelper.closeConnection();
+                closed.countDown();
+            }
+            if (failed) {
+                System.exit(1);
+            }
+            return;
+        }
 
         ConsoleView console = new ConsoleView(taskManager, dbHelper);
+        if (reminders) {
+            taskManager.enableReminders(console::showReminder);
+        }
 
         console.showMainMenu();
     }
-}
\ No newline at end of file
+
+    private static int runClient(String[] args) {
+        String address = args[1];
+        try {
+            if (args[2].equals("--script") && args.length >= 4) {
+                if (args[3].equals("-")) {
+                    return TaskClient.send(address, System.in, System.out);
+                }
+                try (InputStream in = Files.newInputStream(Path.of(args[3]))) {
+                    return TaskClient.send(address, in, System.out);
+                }
+            }
+            return TaskClient.send(address, String.join(" ", Arrays.copyOfRange(args, 2, args.length)), System.out);
+        } catch (IOException e) {
+            System.err.println("Could not reach the server at " + address + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static int runScript(TaskManager taskManager, String[] args) {
+        ScriptRunner runner = new ScriptRunner(taskManager, System.out);
+        if (!args[0].equals("--script")) {
+            return runner.runCommand(String.join(" ", args));
+        }
+
+        try (BufferedReader reader = args[1].equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8)) {
+            return runner.run(reader);
+        } catch (IOException e) {
+            System.err.println("Could not read " + args[1] + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // prints how far an import or export has got, and the rows per second
+    private static TaskTransfer.Progress progress(String verb) {
+        return new TaskTransfer.Progress() {
+            @Override
+            public void update(long rows, long elapsedNanos, boolean done) {
+                long millis = elapsedNanos / 1_000_000;
+                long perSecond = elapsedNanos == 0 ? 0 : rows * 1_000_000_000L / elapsedNanos;
+                System.out.println((done ? verb + " " : "... ") + rows + " tasks in " + millis + " ms ("
+                        + perSecond + " tasks/s)" + (done ? "." : ""));
+            }
+
+            @Override
+            public void skipped(long lineNumber, String line) {
+                System.out.println("Skipping invalid line " + lineNumber + ": " + line);
+            }
+        };
+    }
+}
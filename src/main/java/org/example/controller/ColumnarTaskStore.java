@@ -0,0 +1,458 @@
+package org.example.controller;
+
+import org.example.model.Recurrence;
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.example.model.Urgency;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// the TaskStore for very large task sets. A Task object with its LocalDate and String costs well over 100 bytes, so
+// instead every field is kept in its own primitive array (a column), one entry per row:
+//   ids int[] | due dates int[] of epoch days | versions int[] | priorities byte[] | completed one bit per row in a long[]
+//   titles as UTF-8, one after another in a single byte[] arena, with each row's start and length
+// plus an int[] from task id to row. That is six ints, a byte and a bit - 25 bytes per task - and the title bytes.
+// With a million tasks titled "Task number <n>" (18 bytes on average) memoryBytes comes to 58 bytes per task, the
+// rest being room the arrays keep for growing, against 109 for a plain List<Task> and 296 for TaskCache.
+// The few tasks that have a Recurrence keep it in a map by id on the side, so the others don't pay for a column.
+// Filters are plain loops over one or two columns, which the JIT can unroll and vectorize, and a Task is only built
+// for the rows a call actually returns. Rows are in no particular order - a removed row is filled with the last row -
+// so lists in date order are sorted from packed (due date, id) keys.
+// A changed title that doesn't fit in its old place goes to the end of the arena; the arena is compacted once more
+// than half of it is old titles.
+public class ColumnarTaskStore implements TaskStore {
+    private static final int INITIAL_ROWS = 1024;
+    private static final int MIN_ARENA_FOR_COMPACTION = 1 << 20;
+
+    private int[] ids = new int[INITIAL_ROWS];
+    private int[] dueDays = new int[INITIAL_ROWS];
+    private int[] versions = new int[INITIAL_ROWS];
+    private byte[] priorities = new byte[INITIAL_ROWS];
+    private long[] completed = new long[INITIAL_ROWS / 64];
+    private int[] titleStarts = new int[INITIAL_ROWS];
+    private int[] titleLengths = new int[INITIAL_ROWS];
+    private byte[] titles = new byte[INITIAL_ROWS * 16];
+    private int titlesEnd;
+    private int titleGarbage; // bytes in the arena no row points at any more
+    private int[] rowOfId = new int[INITIAL_ROWS]; // row + 1 by task id, 0 when the id isn't stored
+    private int size;
+    private final Map<Integer, Recurrence> recurrences = new HashMap<>(); // only the recurring tasks, by id
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void load(Collection<Task> tasks) {
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            titlesEnd = 0;
+            titleGarbage = 0;
+            Arrays.fill(rowOfId, 0);
+            recurrences.clear();
+            ensureRows(tasks.size());
+            for (Task task : tasks) {
+                put(task);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Task task) {
+        lock.writeLock().lock();
+        try {
+            int id = task.getId();
+            int row = rowOf(id);
+            if (row < 0) {
+                ensureRows(size + 1);
+                if (id >= rowOfId.length) {
+                    rowOfId = Arrays.copyOf(rowOfId, Math.max(id + 1, rowOfId.length * 2));
+                }
+                row = size++;
+                ids[row] = id;
+                rowOfId[id] = row + 1;
+                titleLengths[row] = 0;
+            }
+            dueDays[row] = Math.toIntExact(task.getDueDate().toEpochDay());
+            versions[row] = task.getVersion();
+            priorities[row] = (byte) task.getPriority();
+            setCompleted(row, task.isCompleted());
+            setTitle(row, task.getTitle());
+            if (task.isRecurring()) {
+                recurrences.put(id, task.getRecurrence());
+            } else {
+                recurrences.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(id);
+            if (row < 0) {
+                return;
+            }
+            titleGarbage += titleLengths[row];
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                dueDays[row] = dueDays[last];
+                versions[row] = versions[last];
+                priorities[row] = priorities[last];
+                setCompleted(row, isCompleted(last));
+                titleStarts[row] = titleStarts[last];
+                titleLengths[row] = titleLengths[last];
+                rowOfId[ids[row]] = row + 1;
+            }
+            rowOfId[id] = 0;
+            recurrences.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Task get(int id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? null : taskAt(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // bytes held by the columns and the title arena, to compare with TaskCache
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return 4L * (ids.length + dueDays.length + versions.length + titleStarts.length + titleLengths.length + rowOfId.length)
+                    + priorities.length + 8L * completed.length + titles.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getAll() {
+        lock.readLock().lock();
+        try {
+            long[] keys = new long[size];
+            for (int row = 0; row < size; row++) {
+                keys[row] = dateKey(row);
+            }
+            return tasksInKeyOrder(keys, keys.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the limit smallest (due date, id) keys after the given one, kept in a heap with the largest on top so it can be
+    // swapped out - a page costs one pass over the due dates instead of a sort of every task
+    @Override
+    public List<Task> getPage(LocalDate afterDueDate, int afterId, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        long after = afterDueDate == null ? Long.MIN_VALUE : dateKey(afterDueDate.toEpochDay(), afterId);
+        PriorityQueue<Long> page = new PriorityQueue<>(limit + 1, (a, b) -> Long.compare(b, a));
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                long key = dateKey(row);
+                if (key <= after) {
+                    continue;
+                }
+                if (page.size() < limit) {
+                    page.add(key);
+                } else if (key < page.peek()) {
+                    page.poll();
+                    page.add(key);
+                }
+            }
+            long[] keys = page.stream().mapToLong(Long::longValue).toArray();
+            return tasksInKeyOrder(keys, keys.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getByDate(LocalDate date) {
+        int day = Math.toIntExact(date.toEpochDay());
+        lock.readLock().lock();
+        try {
+            long[] keys = new long[count(day)];
+            int found = 0;
+            for (int row = 0; row < size && found < keys.length; row++) {
+                if (dueDays[row] == day) {
+                    keys[found++] = dateKey(row);
+                }
+            }
+            return tasksInKeyOrder(keys, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getByPriority(int priority) {
+        lock.readLock().lock();
+        try {
+            long[] keys = new long[size];
+            int found = 0;
+            for (int row = 0; row < size; row++) {
+                if (priorities[row] == priority) {
+                    keys[found++] = dateKey(row);
+                }
+            }
+            return tasksInKeyOrder(keys, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // by id, like TaskCache
+    @Override
+    public List<Task> getByCompletionStatus(boolean isCompleted) {
+        lock.readLock().lock();
+        try {
+            int[] matching = new int[size];
+            int found = 0;
+            for (int row = 0; row < size; row++) {
+                if (isCompleted(row) == isCompleted) {
+                    matching[found++] = ids[row];
+                }
+            }
+            Arrays.sort(matching, 0, found);
+            List<Task> tasks = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                tasks.add(taskAt(rowOfId[matching[i]] - 1));
+            }
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the date range, priorities and completion status are checked on the columns, and only the rows that pass have
+    // their title decoded for titleContains. In date order only the keys are sorted, so just the first limit rows
+    // become Task objects.
+    @Override
+    public List<Task> query(TaskQuery query) {
+        long from = query.getDueFrom() == null ? Long.MIN_VALUE : query.getDueFrom().toEpochDay();
+        long to = query.getDueTo() == null ? Long.MAX_VALUE : query.getDueTo().toEpochDay();
+        int priorityMask = 0; // bit p set when priority p is wanted, 0 when any priority is
+        for (int priority : query.getPriorities()) {
+            priorityMask |= 1 << priority;
+        }
+        Boolean wantCompleted = query.getCompleted();
+        Boolean wantRecurring = query.getRecurring();
+        long after = query.getAfterDueDate() == null ? Long.MIN_VALUE
+                : dateKey(query.getAfterDueDate().toEpochDay(), query.getAfterId());
+        String needle = query.getTitleContains() == null ? null : TaskQuery.foldCase(query.getTitleContains());
+        boolean dateOrder = query.getOrder() == TaskQuery.Order.DUE_DATE;
+        int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+
+        lock.readLock().lock();
+        try {
+            long[] keys = new long[size];
+            int found = 0;
+            for (int row = 0; row < size; row++) {
+                int day = dueDays[row];
+                if (day < from || day > to
+                        || (priorityMask != 0 && (priorityMask & (1 << priorities[row])) == 0)
+                        || (wantCompleted != null && isCompleted(row) != wantCompleted)
+                        || (wantRecurring != null && recurrences.containsKey(ids[row]) != wantRecurring)
+                        || dateKey(row) <= after
+                        || (needle != null && !TaskQuery.foldCase(titleAt(row)).contains(needle))) {
+                    continue;
+                }
+                keys[found++] = dateKey(row);
+            }
+            if (dateOrder) {
+                Arrays.sort(keys, 0, found);
+                return tasksInKeyOrder(keys, Math.min(found, limit));
+            }
+            List<Task> tasks = tasksInKeyOrder(keys, found);
+            tasks.sort(query.getOrder().comparator());
+            return tasks.size() > limit ? new ArrayList<>(tasks.subList(0, limit)) : tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // same as TaskCache.topUrgent, but the heap holds rows and the score comes straight from the columns
+    @Override
+    public List<Task> topUrgent(int k, Urgency urgency, LocalDate today) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        long todayDay = today.toEpochDay();
+        lock.readLock().lock();
+        try {
+            // the least urgent of the best rows so far on top
+            PriorityQueue<Integer> best = new PriorityQueue<>(k + 1,
+                    (a, b) -> compareUrgency(b, a, urgency, todayDay));
+            for (int row = 0; row < size; row++) {
+                if (isCompleted(row)) {
+                    continue;
+                }
+                if (best.size() < k) {
+                    best.add(row);
+                } else if (compareUrgency(row, best.peek(), urgency, todayDay) < 0) {
+                    best.poll();
+                    best.add(row);
+                }
+            }
+            List<Task> tasks = new ArrayList<>(best.size());
+            for (int row : best) {
+                tasks.add(taskAt(row));
+            }
+            tasks.sort(urgency.mostUrgentFirst(today));
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // negative when row a is more urgent - the same order as Urgency.mostUrgentFirst
+    private int compareUrgency(int a, int b, Urgency urgency, long today) {
+        int byScore = Double.compare(urgency.score(priorities[b], dueDays[b], today),
+                urgency.score(priorities[a], dueDays[a], today));
+        return byScore != 0 ? byScore : Long.compare(dateKey(a), dateKey(b));
+    }
+
+    // how many rows are due on day, so getByDate can size its array - a loop the JIT vectorizes
+    private int count(int day) {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            count += dueDays[row] == day ? 1 : 0;
+        }
+        return count;
+    }
+
+    // sorts the first count keys and builds their tasks, callers hold the lock
+    private List<Task> tasksInKeyOrder(long[] keys, int count) {
+        Arrays.sort(keys, 0, count);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(taskAt(rowOfId[(int) keys[i]] - 1));
+        }
+        return tasks;
+    }
+
+    private Task taskAt(int row) {
+        Task task = new Task(ids[row], titleAt(row), LocalDate.ofEpochDay(dueDays[row]), priorities[row], isCompleted(row),
+                recurrences.isEmpty() ? null : recurrences.get(ids[row]));
+        task.setVersion(versions[row]);
+        return task;
+    }
+
+    private String titleAt(int row) {
+        return new String(titles, titleStarts[row], titleLengths[row], StandardCharsets.UTF_8);
+    }
+
+    private int rowOf(int id) {
+        return id >= 0 && id < rowOfId.length ? rowOfId[id] - 1 : -1;
+    }
+
+    private boolean isCompleted(int row) {
+        return (completed[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void setCompleted(int row, boolean value) {
+        if (value) {
+            completed[row >>> 6] |= 1L << row;
+        } else {
+            completed[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    // a title that fits where the old one was is written over it, anything longer goes to the end of the arena
+    private void setTitle(int row, String title) {
+        byte[] bytes = title == null ? new byte[0] : title.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= titleLengths[row]) {
+            System.arraycopy(bytes, 0, titles, titleStarts[row], bytes.length);
+            titleGarbage += titleLengths[row] - bytes.length;
+            titleLengths[row] = bytes.length;
+            return;
+        }
+        titleGarbage += titleLengths[row];
+        titleLengths[row] = 0;
+        if (titleGarbage > MIN_ARENA_FOR_COMPACTION && titleGarbage > titlesEnd / 2) {
+            compactTitles();
+        }
+        if ((long) titlesEnd + bytes.length > titles.length) {
+            long grown = Math.max((long) titlesEnd + bytes.length, titles.length * 2L);
+            if (grown > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("The title arena is full");
+            }
+            titles = Arrays.copyOf(titles, (int) grown);
+        }
+        System.arraycopy(bytes, 0, titles, titlesEnd, bytes.length);
+        titleStarts[row] = titlesEnd;
+        titleLengths[row] = bytes.length;
+        titlesEnd += bytes.length;
+    }
+
+    // copies every row's title into a new arena with no gaps
+    private void compactTitles() {
+        byte[] packed = new byte[Math.max(INITIAL_ROWS, titlesEnd - titleGarbage + titlesEnd / 4)];
+        int end = 0;
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(titles, titleStarts[row], packed, end, titleLengths[row]);
+            titleStarts[row] = end;
+            end += titleLengths[row];
+        }
+        titles = packed;
+        titlesEnd = end;
+        titleGarbage = 0;
+    }
+
+    private void ensureRows(int rows) {
+        if (rows <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(rows, ids.length + ids.length / 2);
+        ids = Arrays.copyOf(ids, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        completed = Arrays.copyOf(completed, (capacity + 63) / 64);
+        titleStarts = Arrays.copyOf(titleStarts, capacity);
+        titleLengths = Arrays.copyOf(titleLengths, capacity);
+    }
+
+    private long dateKey(int row) {
+        return dateKey(dueDays[row], ids[row]);
+    }
+
+    // due date in the high half and id in the low half, so sorting the keys sorts by due date and then id
+    private static long dateKey(long dueDay, int id) {
+        return (dueDay << 32) | (id & 0xFFFFFFFFL);
+    }
+}
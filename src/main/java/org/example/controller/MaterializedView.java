@@ -0,0 +1,93 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+// the result of one TaskQuery, kept up to date from TaskManager's change events instead of running the query again
+// each time a screen is opened. A change costs a hash lookup and at most one removal and one insert in a sorted set,
+// O(log n). Every task matching the filters is kept even when the query has a limit, so a task leaving the first
+// limit rows can be replaced by the next one; the limit is applied when the tasks are read.
+// Get one with TaskManager.view(query) - views are shared by everyone asking for the same query.
+public class MaterializedView implements TaskChangeListener {
+    private final TaskQuery query;
+    private final NavigableSet<Task> tasks;
+    private final Map<Integer, Task> byId = new HashMap<>();
+
+    MaterializedView(TaskQuery query) {
+        this.query = new TaskQuery(query);
+        // every order ends with the id, so two different tasks never compare as equal
+        this.tasks = new TreeSet<>(query.getOrder().comparator());
+    }
+
+    synchronized void load(Collection<Task> matching) {
+        tasks.clear();
+        byId.clear();
+        for (Task task : matching) {
+            insert(new Task(task));
+        }
+    }
+
+    @Override
+    public synchronized void taskChanged(TaskChange change) {
+        // an archived task is still there for a query that looks in the archive too
+        if (change.getKind() == TaskChange.Kind.ARCHIVE && query.isIncludeArchived()) {
+            return;
+        }
+        // the old version is removed by id, so this doesn't depend on the before image
+        Task old = byId.remove(change.getId());
+        if (old != null) {
+            tasks.remove(old);
+        }
+        Task after = change.getAfter();
+        if (after != null && query.matches(after)) {
+            insert(new Task(after));
+        }
+    }
+
+    public TaskQuery getQuery() {
+        return new TaskQuery(query);
+    }
+
+    // copies of the matching tasks in the query's order, at most limit of them
+    public synchronized List<Task> getTasks() {
+        int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+        List<Task> copies = new ArrayList<>(Math.min(limit, tasks.size()));
+        for (Task task : tasks) {
+            if (copies.size() == limit) {
+                break;
+            }
+            copies.add(new Task(task));
+        }
+        return copies;
+    }
+
+    // copies of at most limit tasks that come after the task after in the query's order (null for the first ones),
+    // for paging - only the tasks on the page are looked at
+    public synchronized List<Task> page(Task after, int limit) {
+        List<Task> copies = new ArrayList<>(limit);
+        for (Task task : after == null ? tasks : tasks.tailSet(after, false)) {
+            if (copies.size() == limit) {
+                break;
+            }
+            copies.add(new Task(task));
+        }
+        return copies;
+    }
+
+    public synchronized int size() {
+        return query.getLimit() > 0 ? Math.min(query.getLimit(), tasks.size()) : tasks.size();
+    }
+
+    private void insert(Task task) {
+        byId.put(task.getId(), task);
+        tasks.add(task);
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.controller;
+
+import org.example.model.Recurrence;
+import org.example.model.Task;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// the recurring tasks, kept in memory so TaskManager can put their occurrences into a listing without asking the
+// storage again. A recurring task is stored once (see Recurrence); a listing leaves that row out and gets one Task per
+// occurrence in the dates it covers instead - occurrences nobody looks at are never made. Only the occurrences that
+// were marked completed are remembered, by task id. TaskManager calls put and remove after every write, the same way
+// it keeps its TaskStore and TitleIndex up to date.
+public class RecurringTasks {
+    // how far ahead a listing without dates of its own (e.g. view all tasks) shows the occurrences, from today - see
+    // occurrencesWithOverdue for the ones before today
+    public static final int HORIZON_DAYS = Integer.getInteger("tasktracker.recurrence.horizonDays", 31);
+
+    private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<LocalDate>> completed = new ConcurrentHashMap<>();
+
+    // replaces everything with the recurring tasks as they are stored, and their completed occurrences
+    public void load(Collection<Task> recurring, Map<Integer, Set<LocalDate>> completedOccurrences) {
+        tasks.clear();
+        completed.clear();
+        for (Task task : recurring) {
+            put(task);
+        }
+        completedOccurrences.forEach((id, dates) -> {
+            if (tasks.containsKey(id)) {
+                Set<LocalDate> copy = ConcurrentHashMap.newKeySet();
+                copy.addAll(dates);
+                completed.put(id, copy);
+            }
+        });
+    }
+
+    // a task that doesn't repeat (any more) is taken out
+    public void put(Task task) {
+        if (task.isRecurring()) {
+            tasks.put(task.getId(), new Task(task));
+        } else {
+            remove(task.getId());
+        }
+    }
+
+    public void remove(int id) {
+        if (tasks.remove(id) != null) {
+            completed.remove(id);
+        }
+    }
+
+    // the whole recurring task was marked completed, which counts for every occurrence
+    public void setCompleted(int id, boolean done) {
+        tasks.computeIfPresent(id, (key, task) -> {
+            Task changed = new Task(task);
+            changed.setCompleted(done);
+            return changed;
+        });
+    }
+
+    public void setOccurrenceCompleted(int id, LocalDate date, boolean done) {
+        if (done) {
+            completed.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(date);
+        } else {
+            Set<LocalDate> dates = completed.get(id);
+            if (dates != null) {
+                dates.remove(date);
+            }
+        }
+    }
+
+    // the occurrences of id that were marked completed, in date order
+    public List<LocalDate> completedOccurrences(int id) {
+        List<LocalDate> dates = new ArrayList<>(completed.getOrDefault(id, Set.of()));
+        dates.sort(null);
+        return dates;
+    }
+
+    public boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    // a copy of the recurring task with this id as it is stored, null if it isn't one
+    public Task get(int id) {
+        Task task = tasks.get(id);
+        return task == null ? null : new Task(task);
+    }
+
+    // true for the stored row of a recurring task, which listings replace with its occurrences
+    public boolean isRecurring(Task task) {
+        return task.isRecurring() && tasks.containsKey(task.getId());
+    }
+
+    // true if id is a recurring task that has an occurrence on date
+    public boolean occursOn(int id, LocalDate date) {
+        Task task = tasks.get(id);
+        return task != null && task.getRecurrence().occursOn(task.getDueDate(), date);
+    }
+
+    // the occurrences between from and to (both included) that pass filter, in no particular order - at most perTask
+    // of each task, the earliest ones (0 for all of them). from can be null to start at each task's first occurrence.
+    public List<Task> occurrences(LocalDate from, LocalDate to, Predicate<Task> filter, int perTask) {
+        List<Task> occurrences = new ArrayList<>();
+        if (from != null && to.isBefore(from)) {
+            return occurrences;
+        }
+        for (Task task : tasks.values()) {
+            addOccurrences(task, from == null ? task.getDueDate() : from, to, filter, perTask, occurrences);
+        }
+        return occurrences;
+    }
+
+    // like occurrences from today, except that a task with an open (not completed) occurrence before today starts at
+    // the first one of those instead, so the ones that were missed still show up. Nothing before after is included
+    // (null for no limit), for paging.
+    public List<Task> occurrencesWithOverdue(LocalDate today, LocalDate after, LocalDate to, Predicate<Task> filter,
+                                             int perTask) {
+        List<Task> occurrences = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            LocalDate from = firstOpenBefore(task, today);
+            if (from == null) {
+                from = today;
+            }
+            if (after != null && after.isAfter(from)) {
+                from = after;
+            }
+            if (!to.isBefore(from)) {
+                addOccurrences(task, from, to, filter, perTask, occurrences);
+            }
+        }
+        return occurrences;
+    }
+
+    private void addOccurrences(Task task, LocalDate from, LocalDate to, Predicate<Task> filter, int perTask,
+                                List<Task> occurrences) {
+        LocalDate start = task.getDueDate();
+        if (start.isAfter(to)) {
+            return;
+        }
+        Set<LocalDate> done = completed.getOrDefault(task.getId(), Set.of());
+        int taken = 0;
+        for (LocalDate date : task.getRecurrence().occurrencesBetween(start, from, to)) {
+            Task occurrence = task.occurrence(date, task.isCompleted() || done.contains(date));
+            if (filter.test(occurrence)) {
+                occurrences.add(occurrence);
+                if (++taken == perTask) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // the first occurrence of task that isn't completed, if it comes before date. Only completed occurrences can come
+    // before it, so this takes at most one step more than there are completed ones.
+    private LocalDate firstOpenBefore(Task task, LocalDate date) {
+        if (task.isCompleted()) {
+            return null;
+        }
+        Recurrence recurrence = task.getRecurrence();
+        Set<LocalDate> done = completed.getOrDefault(task.getId(), Set.of());
+        for (long step = 0; ; step++) {
+            LocalDate occurrence = recurrence.nth(task.getDueDate(), step);
+            if (!occurrence.isBefore(date)
+                    || (recurrence.getUntil() != null && occurrence.isAfter(recurrence.getUntil()))) {
+                return null;
+            }
+            if (!done.contains(occurrence)) {
+                return occurrence;
+            }
+        }
+    }
+}
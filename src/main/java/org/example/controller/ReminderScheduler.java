@@ -0,0 +1,206 @@
+package org.example.controller;
+
+import org.example.model.Task;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// tells a callback when an open task becomes due (the start of its due date) and when it becomes overdue (the start of
+// the day after), without querying the database again and again. The open tasks are loaded once; after that the
+// scheduler is kept up to date by TaskManager's change events, like the materialized views.
+// Due dates are whole days, so the reminders are kept by the day they go off, in a sorted map - the next one is always
+// the first key, and one timer waits for exactly that moment. Adding, moving or removing a task's reminder is O(log n).
+// Tasks that are already due or overdue when the scheduler is loaded don't go off, only what happens while it runs.
+// Get one with TaskManager.enableReminders.
+public class ReminderScheduler implements TaskChangeListener, AutoCloseable {
+
+    public enum Kind { DUE, OVERDUE }
+
+    public interface Callback {
+        // called on the scheduler's own thread, with a copy of the task
+        void remind(Kind kind, Task task);
+    }
+
+    // the timer checks at least this often, so a clock that jumps (or a computer that sleeps) only delays a reminder
+    private static final long MAX_WAIT_SECONDS = 3600;
+
+    private final Callback callback;
+    private final Clock clock;
+    private final ScheduledExecutorService timer;
+
+    // everything below is guarded by this
+    private final Map<Integer, Task> tasks = new HashMap<>(); // the open tasks that still have a reminder coming
+    private final NavigableMap<Long, Set<Integer>> byDay = new TreeMap<>(); // ids by the epoch day of their next reminder
+    private ScheduledFuture<?> next;
+    private long nextDay = Long.MAX_VALUE;
+
+    public ReminderScheduler(Callback callback) {
+        this(callback, Clock.systemDefaultZone());
+    }
+
+    // with a clock of its own, for tests
+    public ReminderScheduler(Callback callback, Clock clock) {
+        this.callback = callback;
+        this.clock = clock;
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // the open tasks as they are now - replaces whatever was scheduled before
+    public synchronized void load(Collection<Task> openTasks) {
+        tasks.clear();
+        byDay.clear();
+        long today = today();
+        for (Task task : openTasks) {
+            long due = task.getDueDate().toEpochDay();
+            if (!task.isCompleted() && due >= today) {
+                // a task due today is already due, so only its overdue reminder is still to come
+                schedule(new Task(task), due > today ? due : due + 1);
+            }
+        }
+        rescheduleTimer();
+    }
+
+    @Override
+    public void taskChanged(TaskChange change) {
+        synchronized (this) {
+            Task before = change.getBefore();
+            Task after = change.getAfter();
+            // an open task that stays open with the same due date keeps its reminders as they were, so e.g. renaming
+            // an overdue task doesn't remind about it again
+            if (before != null && after != null && !before.isCompleted() && !after.isCompleted()
+                    && before.getDueDate().equals(after.getDueDate())) {
+                if (tasks.containsKey(after.getId())) {
+                    tasks.put(after.getId(), new Task(after));
+                }
+                return;
+            }
+            unschedule(change.getId());
+            if (after != null && !after.isCompleted()) {
+                // a new or moved task goes off right away if its day has already come
+                long due = after.getDueDate().toEpochDay();
+                schedule(new Task(after), due >= today() ? due : due + 1);
+            }
+            rescheduleTimer();
+        }
+    }
+
+    // how many tasks still have a reminder coming
+    public synchronized int size() {
+        return tasks.size();
+    }
+
+    // sends every reminder whose day has come, returns how many were sent. The timer calls this, tests can too.
+    public int fireDue() {
+        List<Task> due = new ArrayList<>();
+        List<Task> overdue = new ArrayList<>();
+        synchronized (this) {
+            long today = today();
+            while (!byDay.isEmpty() && byDay.firstKey() <= today) {
+                Map.Entry<Long, Set<Integer>> first = byDay.pollFirstEntry();
+                for (int id : first.getValue()) {
+                    Task task = tasks.remove(id);
+                    long dueDay = task.getDueDate().toEpochDay();
+                    if (first.getKey() == dueDay) {
+                        due.add(task);
+                        // the overdue reminder comes next - right away if that day has passed as well
+                        schedule(task, dueDay + 1);
+                    } else {
+                        overdue.add(task);
+                    }
+                }
+            }
+            rescheduleTimer();
+        }
+        // outside the lock, so a slow callback doesn't hold up the writes that keep this up to date
+        for (Task task : due) {
+            notify(Kind.DUE, task);
+        }
+        for (Task task : overdue) {
+            notify(Kind.OVERDUE, task);
+        }
+        return due.size() + overdue.size();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private void onTimer() {
+        synchronized (this) {
+            next = null; // this run is over as far as rescheduleTimer is concerned
+        }
+        fireDue();
+    }
+
+    private void notify(Kind kind, Task task) {
+        try {
+            callback.remind(kind, new Task(task));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void schedule(Task task, long day) {
+        tasks.put(task.getId(), task);
+        byDay.computeIfAbsent(day, d -> new LinkedHashSet<>()).add(task.getId());
+    }
+
+    private void unschedule(int id) {
+        Task task = tasks.remove(id);
+        if (task == null) {
+            return;
+        }
+        long dueDay = task.getDueDate().toEpochDay();
+        // it is waiting for either its due or its overdue reminder
+        for (long day = dueDay; day <= dueDay + 1; day++) {
+            Set<Integer> ids = byDay.get(day);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                byDay.remove(day);
+            }
+        }
+    }
+
+    // points the timer at the start of the first day with a reminder, only replacing it if that day changed
+    private void rescheduleTimer() {
+        long first = byDay.isEmpty() ? Long.MAX_VALUE : byDay.firstKey();
+        if (next != null && first == nextDay) {
+            return;
+        }
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+        nextDay = first;
+        if (first == Long.MAX_VALUE || timer.isShutdown()) {
+            return;
+        }
+        ZonedDateTime start = LocalDate.ofEpochDay(first).atStartOfDay(clock.getZone());
+        long millis = Duration.between(ZonedDateTime.now(clock), start).toMillis();
+        long wait = Math.max(0, Math.min(millis, TimeUnit.SECONDS.toMillis(MAX_WAIT_SECONDS)));
+        next = timer.schedule(this::onTimer, wait, TimeUnit.MILLISECONDS);
+    }
+
+    private long today() {
+        return LocalDate.now(clock).toEpochDay();
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TaskSummary;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+// the TaskSummary counts kept up to date as tasks change, so the dashboard costs nothing to show. TaskManager calls
+// put and remove after every write, the same way it keeps its TaskStore and TitleIndex up to date.
+// To know what a change takes away from the counts, the priority, completion status and due date of every task are
+// kept by id - 5 bytes a task. The overdue and due-this-week counts move with the date, so open tasks are counted per
+// due day and those are added up when a summary is asked for.
+public class SummaryCounters {
+    private static final byte PRESENT = (byte) 0x80;
+    private static final byte COMPLETED = 0x40;
+    private static final int PRIORITY_BITS = 0x03;
+
+    // by task id: PRESENT, COMPLETED and the priority in the low bits
+    private byte[] states = new byte[1024];
+    private int[] dueDays = new int[1024];
+    private final int[] open = new int[4];
+    private final int[] completed = new int[4];
+    // open tasks per due date, as epoch days
+    private final TreeMap<Integer, Integer> openByDay = new TreeMap<>();
+
+    public synchronized void load(Iterable<Task> tasks) {
+        Arrays.fill(states, (byte) 0);
+        Arrays.fill(open, 0);
+        Arrays.fill(completed, 0);
+        openByDay.clear();
+        for (Task task : tasks) {
+            put(task);
+        }
+    }
+
+    // adds the task, or moves it to its new counts if it was there already
+    public synchronized void put(Task task) {
+        int id = task.getId();
+        remove(id);
+        if (task.getPriority() < 1 || task.getPriority() > 3) {
+            return;
+        }
+        if (id >= states.length) {
+            int length = Math.max(id + 1, states.length * 2);
+            states = Arrays.copyOf(states, length);
+            dueDays = Arrays.copyOf(dueDays, length);
+        }
+        int day = Math.toIntExact(task.getDueDate().toEpochDay());
+        states[id] = (byte) (PRESENT | (task.isCompleted() ? COMPLETED : 0) | task.getPriority());
+        dueDays[id] = day;
+        count(id, 1);
+    }
+
+    public synchronized void remove(int id) {
+        if (id >= 0 && id < states.length && states[id] != 0) {
+            count(id, -1);
+            states[id] = 0;
+        }
+    }
+
+    // for the bulk changes that only know ids - ids it doesn't hold are skipped
+    public synchronized void setCompleted(int id, boolean isCompleted) {
+        if (id >= 0 && id < states.length && states[id] != 0) {
+            count(id, -1);
+            states[id] = (byte) (isCompleted ? states[id] | COMPLETED : states[id] & ~COMPLETED);
+            count(id, 1);
+        }
+    }
+
+    public synchronized TaskSummary summary(LocalDate today) {
+        int todayDay = Math.toIntExact(today.toEpochDay());
+        int weekEnd = Math.toIntExact(TaskSummary.weekEnd(today).toEpochDay());
+        int overdue = 0;
+        for (int count : openByDay.headMap(todayDay).values()) {
+            overdue += count;
+        }
+        int dueThisWeek = 0;
+        for (int count : openByDay.subMap(todayDay, true, weekEnd, true).values()) {
+            dueThisWeek += count;
+        }
+        return new TaskSummary(today, open, completed, overdue, openByDay.getOrDefault(todayDay, 0), dueThisWeek);
+    }
+
+    private void count(int id, int delta) {
+        int priority = states[id] & PRIORITY_BITS;
+        if ((states[id] & COMPLETED) != 0) {
+            completed[priority] += delta;
+        } else {
+            open[priority] += delta;
+            openByDay.merge(dueDays[id], delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.controller;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// moves old completed tasks to the archive in the background, so the tasks every screen reads stay the ones still in
+// use. Every intervalSeconds a background thread archives the tasks completed more than afterDays ago, batchSize at a
+// time - each batch is its own short transaction, so the writes of everyone else go on in between. Then up to
+// vacuumPages of the space that freed are given back to the file system (see TaskManager.reclaimSpace), a little at
+// a time instead of one long full VACUUM.
+public class TaskArchiver implements AutoCloseable {
+
+    public static class Settings {
+        private int afterDays = Integer.getInteger("tasktracker.archive.afterDays", 90);
+        private int batchSize = Integer.getInteger("tasktracker.archive.batchSize", 500);
+        private long intervalSeconds = Long.getLong("tasktracker.archive.intervalSeconds", 3600);
+        private int vacuumPages = Integer.getInteger("tasktracker.archive.vacuumPages", 1000);
+
+        public int getAfterDays() { return afterDays; }
+
+        public Settings setAfterDays(int afterDays) { this.afterDays = Math.max(0, afterDays); return this; }
+
+        public int getBatchSize() { return batchSize; }
+
+        public Settings setBatchSize(int batchSize) { this.batchSize = Math.max(1, batchSize); return this; }
+
+        public long getIntervalSeconds() { return intervalSeconds; }
+
+        public Settings setIntervalSeconds(long intervalSeconds) { this.intervalSeconds = Math.max(1, intervalSeconds); return this; }
+
+        public int getVacuumPages() { return vacuumPages; }
+
+        // 0 leaves the freed space in the file, where SQLite reuses it for new rows
+        public Settings setVacuumPages(int vacuumPages) { this.vacuumPages = Math.max(0, vacuumPages); return this; }
+    }
+
+    private final TaskManager taskManager;
+    private final Settings settings;
+    private final ScheduledExecutorService executor;
+    private boolean started; // guarded by this
+
+    public TaskArchiver(TaskManager taskManager, Settings settings) {
+        this.taskManager = taskManager;
+        this.settings = settings;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // starts the background runs, see TaskManager.enableArchiving. Not done by the constructor, so the background
+    // thread never sees an archiver that is still being built.
+    public synchronized void start() {
+        if (!started) {
+            // the first run is right away, to catch up on whatever piled up while the program wasn't running
+            executor.scheduleWithFixedDelay(this::runSafely, 0, settings.getIntervalSeconds(), TimeUnit.SECONDS);
+            started = true;
+        }
+    }
+
+    // archives every task that is due for it, returns how many there were
+    public int run() {
+        LocalDate completedBefore = LocalDate.now().minusDays(settings.getAfterDays());
+        int archived = 0;
+        int batch;
+        do {
+            batch = taskManager.archiveCompleted(completedBefore, settings.getBatchSize());
+            archived += batch;
+        } while (batch == settings.getBatchSize() && !Thread.currentThread().isInterrupted());
+        if (archived > 0 && settings.getVacuumPages() > 0) {
+            taskManager.reclaimSpace(settings.getVacuumPages());
+        }
+        return archived;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // tried again next time, an exception would stop the schedule
+        }
+    }
+
+    // stops the background thread, waiting for a batch that is being written
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
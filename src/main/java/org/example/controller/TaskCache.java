@@ -0,0 +1,274 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.example.model.Urgency;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// the TaskStore with a Task object per task and an index for every filter the view menu offers, so those screens don't
+// need to go to the database at all. TaskManager keeps it up to date as it writes to the database.
+// Tasks are copied on the way in and on the way out, so nobody outside can change a cached task by accident.
+public class TaskCache implements TaskStore {
+    // same order as getAllTasks in TaskDao - soonest due date first, then by id
+    private static final Comparator<Task> DATE_ORDER =
+            Comparator.comparing(Task::getDueDate).thenComparingInt(Task::getId);
+
+    private final Map<Integer, Task> byId = new HashMap<>();
+    private final NavigableSet<Task> byDate = new TreeSet<>(DATE_ORDER);
+    private final Map<Integer, NavigableSet<Task>> byPriority = new HashMap<>();
+    // one bit per task id - which ids exist, and which of those are completed
+    private final BitSet present = new BitSet();
+    private final BitSet completed = new BitSet();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void load(Collection<Task> tasks) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Task task : tasks) {
+                insert(new Task(task));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // adds the task, or replaces the cached task with the same id
+    @Override
+    public void put(Task task) {
+        lock.writeLock().lock();
+        try {
+            unlink(task.getId());
+            insert(new Task(task));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            unlink(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Task get(int id) {
+        lock.readLock().lock();
+        try {
+            Task task = byId.get(id);
+            return task == null ? null : new Task(task);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getAll() {
+        lock.readLock().lock();
+        try {
+            return copyOf(byDate);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // same as TaskDao.getTasksPage - up to limit tasks in date order, starting after the given due date and id
+    @Override
+    public List<Task> getPage(LocalDate afterDueDate, int afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Task> rest = byDate;
+            if (afterDueDate != null) {
+                rest = byDate.tailSet(new Task(afterId, null, afterDueDate, 0, false), false);
+            }
+            List<Task> page = new ArrayList<>();
+            for (Task task : rest) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(new Task(task));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getByDate(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            // every task on that date sits between these two made-up tasks in the date order
+            Task from = new Task(Integer.MIN_VALUE, null, date, 0, false);
+            Task to = new Task(Integer.MAX_VALUE, null, date, 0, false);
+            return copyOf(byDate.subSet(from, true, to, true));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getByPriority(int priority) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Task> bucket = byPriority.get(priority);
+            return bucket == null ? new ArrayList<>() : copyOf(bucket);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getByCompletionStatus(boolean isCompleted) {
+        lock.readLock().lock();
+        try {
+            BitSet matching = completed;
+            if (!isCompleted) {
+                matching = (BitSet) present.clone();
+                matching.andNot(completed);
+            }
+            List<Task> tasks = new ArrayList<>(matching.cardinality());
+            for (int id = matching.nextSetBit(0); id >= 0; id = matching.nextSetBit(id + 1)) {
+                tasks.add(new Task(byId.get(id)));
+            }
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // same as TaskDao.query - the date range narrows the walk through the date order, the other filters are checked
+    // on each task in it. In date order the walk can stop at the limit, other orders sort the matches afterwards.
+    @Override
+    public List<Task> query(TaskQuery query) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Task> range = byDate;
+            if (query.getDueFrom() != null && !range.isEmpty()) {
+                range = range.tailSet(new Task(Integer.MIN_VALUE, null, query.getDueFrom(), 0, false), true);
+            }
+            if (query.getAfterDueDate() != null && !range.isEmpty()) {
+                range = range.tailSet(new Task(query.getAfterId(), null, query.getAfterDueDate(), 0, false), false);
+            }
+            if (query.getDueTo() != null && !range.isEmpty()) {
+                range = range.headSet(new Task(Integer.MAX_VALUE, null, query.getDueTo(), 0, false), true);
+            }
+            boolean dateOrder = query.getOrder() == TaskQuery.Order.DUE_DATE;
+            int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+            List<Task> tasks = new ArrayList<>();
+            for (Task task : range) {
+                if (dateOrder && tasks.size() == limit) {
+                    break;
+                }
+                if (query.matches(task)) {
+                    tasks.add(new Task(task));
+                }
+            }
+            if (!dateOrder) {
+                tasks.sort(query.getOrder().comparator());
+                if (tasks.size() > limit) {
+                    tasks = new ArrayList<>(tasks.subList(0, limit));
+                }
+            }
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // same as TaskDao.topUrgent - a heap of the k best tasks seen so far, with the weakest on top so it can be
+    // swapped out, so this costs n log k instead of sorting every open task
+    @Override
+    public List<Task> topUrgent(int k, Urgency urgency, LocalDate today) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<Task> order = urgency.mostUrgentFirst(today);
+        PriorityQueue<Task> best = new PriorityQueue<>(k + 1, order.reversed());
+        lock.readLock().lock();
+        try {
+            BitSet open = (BitSet) present.clone();
+            open.andNot(completed);
+            for (int id = open.nextSetBit(0); id >= 0; id = open.nextSetBit(id + 1)) {
+                Task task = byId.get(id);
+                if (best.size() < k) {
+                    best.add(task);
+                } else if (order.compare(task, best.peek()) < 0) {
+                    best.poll();
+                    best.add(task);
+                }
+            }
+            List<Task> tasks = copyOf(best);
+            tasks.sort(order);
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(Task task) {
+        byId.put(task.getId(), task);
+        byDate.add(task);
+        byPriority.computeIfAbsent(task.getPriority(), p -> new TreeSet<>(DATE_ORDER)).add(task);
+        present.set(task.getId());
+        completed.set(task.getId(), task.isCompleted());
+    }
+
+    private void unlink(int id) {
+        Task old = byId.remove(id);
+        if (old == null) {
+            return;
+        }
+        byDate.remove(old);
+        NavigableSet<Task> bucket = byPriority.get(old.getPriority());
+        bucket.remove(old);
+        if (bucket.isEmpty()) {
+            byPriority.remove(old.getPriority());
+        }
+        present.clear(id);
+        completed.clear(id);
+    }
+
+    private void clear() {
+        byId.clear();
+        byDate.clear();
+        byPriority.clear();
+        present.clear();
+        completed.clear();
+    }
+
+    private static List<Task> copyOf(Collection<Task> tasks) {
+        List<Task> copies = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            copies.add(new Task(task));
+        }
+        return copies;
+    }
+}
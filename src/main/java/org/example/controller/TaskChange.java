@@ -0,0 +1,38 @@
+package org.example.controller;
+
+import org.example.model.Task;
+
+// one change TaskManager has written, with the task as it was before and as it is after:
+//   ADD has no before, DELETE has no after, and neither has ARCHIVE - the task was moved to the archive as it was
+// The before image of an update or delete is only looked up while someone is listening, and can still be null if
+// the task could not be found - listeners that keep their own copy of the tasks, like MaterializedView, go by the id.
+// Both images are copies, so listeners can keep them.
+public class TaskChange {
+
+    public enum Kind { ADD, UPDATE, DELETE, ARCHIVE }
+
+    private final Kind kind;
+    private final int id;
+    private final Task before;
+    private final Task after;
+
+    public TaskChange(Kind kind, int id, Task before, Task after) {
+        this.kind = kind;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    public Kind getKind() { return kind; }
+
+    public int getId() { return id; }
+
+    public Task getBefore() { return before; }
+
+    public Task getAfter() { return after; }
+
+    @Override
+    public String toString() {
+        return kind + " " + id;
+    }
+}
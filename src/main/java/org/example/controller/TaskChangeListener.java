@@ -0,0 +1,8 @@
+package org.example.controller;
+
+// told about every change TaskManager writes, see TaskManager.addChangeListener. Called on the writing thread while
+// TaskManager holds its lock, in the order the changes were written - so it should be quick, and hand anything slow
+// (an export, a network call) to another thread.
+public interface TaskChangeListener {
+    void taskChanged(TaskChange change);
+}
@@ -1,51 +1,872 @@
 package org.example.controller;
 
+import org.example.model.Metrics;
+import org.example.model.Recurrence;
 import org.example.model.Task;
-import org.example.model.TaskDao;
+import org.example.model.TaskRepository;
+import org.example.model.TaskQuery;
+import org.example.model.TaskSummary;
+import org.example.model.Urgency;
+import org.example.model.WriteResult;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class TaskManager {
-    private final TaskDao taskDao;
+    private static final int STRIPES = 64;
 
-    public TaskManager(TaskDao taskDao) {
-        this.taskDao = taskDao;
+    private final TaskRepository repository;
+    // only set in cache mode - then every read is answered from memory and every write goes to the database first
+    private final TaskStore cache;
+    // only set in cache mode or when the database can't search titles itself (no FTS5), see TitleIndex
+    private final TitleIndex titleIndex;
+    // every recurring task, whose occurrences the date listings put in place of its row, see RecurringTasks
+    private final RecurringTasks recurring = new RecurringTasks();
+    private volatile Urgency urgency = new Urgency();
+    // only set in write-behind mode, see enableWriteBehind
+    private volatile WriteBehindQueue writeBehind;
+    // only set once enableSummaryCounters was called, then summary() is answered from memory
+    private volatile SummaryCounters summaryCounters;
+    // only set once enableArchiving was called
+    private TaskArchiver archiver;
+    // only set once enableReminders was called
+    private volatile ReminderScheduler reminders;
+    // told about every change after it is written, see addChangeListener - the materialized views are among them
+    private final List<TaskChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<TaskQuery, MaterializedView> views = new ConcurrentHashMap<>();
+    // writes to different tasks run side by side: each one holds the read side of writes and the stripe of its task id,
+    // so two writes to the same task still happen one after the other, in the same order in the database and in memory.
+    // Adds only need the read side. The bulk changes, inTransaction and the write-behind groups take the write side
+    // and run alone.
+    private final ReentrantReadWriteLock writes = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public TaskManager(TaskRepository repository) {
+        this(repository, false);
+    }
+
+    // with useCache the whole table is loaded into memory once, see TaskCache
+    public TaskManager(TaskRepository repository, boolean useCache) {
+        this(repository, useCache ? new TaskCache() : null);
+    }
+
+    // cache mode with the given store, e.g. a ColumnarTaskStore for very large task sets - null turns cache mode off
+    public TaskManager(TaskRepository repository, TaskStore store) {
+        this.repository = repository;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        cache = store;
+        if (cache != null) {
+            cache.load(repository.getAllTasks());
+        }
+        if (cache != null || !repository.isTitleSearchAvailable()) {
+            titleIndex = new TitleIndex();
+            titleIndex.load(cache != null ? cache.getAll() : repository.getAllTasks());
+        } else {
+            titleIndex = null;
+        }
+        recurring.load(repository.getRecurringTasks(), repository.getCompletedOccurrences());
+    }
+
+    public boolean isCacheEnabled() {
+        return cache != null;
+    }
+
+    // listener is told about every add, update and delete from now on, with the task before and after the change.
+    // Bulk changes send one event per task. While anyone is listening, an update or delete outside cache mode reads
+    // the task before writing it, to have the before image.
+    public void addChangeListener(TaskChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(TaskChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // the tasks matching query, kept up to date as tasks change instead of queried again - see MaterializedView.
+    // The query runs once, the first time it is asked for; later calls with an equal query get the same view.
+    public MaterializedView view(TaskQuery query) {
+        MaterializedView view = views.get(query);
+        if (view != null) {
+            return view;
+        }
+        awaitWrites();
+        // loaded and subscribed while no write can run, so no change can slip in between the two
+        return alone(() -> views.computeIfAbsent(new TaskQuery(query), key -> {
+            MaterializedView created = new MaterializedView(key);
+            TaskQuery everything = new TaskQuery(key).limit(0);
+            created.load(cache != null && !key.isIncludeArchived() ? cache.query(everything) : repository.query(everything));
+            listeners.add(created);
+            return created;
+        }));
+    }
+
+    // stops keeping the view for query up to date
+    public void dropView(TaskQuery query) {
+        MaterializedView view = views.remove(query);
+        if (view != null) {
+            listeners.remove(view);
+        }
+    }
+
+    // from now on addTask, updateTask and deleteTask only queue the change and return straight away, and a background
+    // thread commits the queued changes in groups, see WriteBehindQueue. Reads and the bulk changes wait for the queue
+    // to be written first, so they always see every earlier change. A queued add gets its id once it is written, so
+    // call flush() first if the id is needed. updateTask and deleteTask return true once the change is queued.
+    public synchronized void enableWriteBehind(WriteBehindQueue.Settings settings) {
+        if (writeBehind == null) {
+            writeBehind = new WriteBehindQueue(this::writeGroup, settings);
+        }
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return writeBehind != null;
+    }
+
+    // waits until every queued change is committed - does nothing if write-behind is off
+    public void flush() {
+        awaitWrites();
+    }
+
+    // writes what is still queued and goes back to writing straight away
+    public void disableWriteBehind() {
+        WriteBehindQueue queue;
+        synchronized (this) {
+            queue = writeBehind;
+            writeBehind = null;
+        }
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    // from now on the dashboard counts are kept up to date on every write instead of being counted by the repository
+    // each time summary() is called, see SummaryCounters. Costs one pass over the tasks now and 5 bytes per task.
+    public void enableSummaryCounters() {
+        // changes still in the write-behind queue can't be written while this runs alone, and are counted when they are
+        alone(() -> {
+            if (summaryCounters == null) {
+                SummaryCounters counters = new SummaryCounters();
+                counters.load(cache != null ? cache.getAll() : repository.getAllTasks());
+                summaryCounters = counters;
+            }
+            return null;
+        });
+    }
+
+    // from now on callback is told when an open task becomes due or overdue, see ReminderScheduler. The open tasks are
+    // read once now, after that the change events keep the reminders up to date - nothing is queried again.
+    public void enableReminders(ReminderScheduler.Callback callback) {
+        awaitWrites();
+        // loaded and subscribed while no write can run, like a view
+        alone(() -> {
+            if (reminders == null) {
+                ReminderScheduler scheduler = new ReminderScheduler(callback);
+                TaskQuery open = new TaskQuery().completed(false);
+                scheduler.load(cache != null ? cache.query(open) : repository.query(open));
+                listeners.add(scheduler);
+                reminders = scheduler;
+            }
+            return null;
+        });
+    }
+
+    // from now on old completed tasks are moved to the archive in the background, see TaskArchiver
+    public synchronized void enableArchiving(TaskArchiver.Settings settings) {
+        if (archiver == null) {
+            archiver = new TaskArchiver(this, settings);
+            archiver.start();
+        }
+    }
+
+    // moves up to limit tasks completed before completedBefore to the archive, see TaskRepository.archiveCompleted.
+    // They leave the cache and the indexes like deleted tasks, and listeners get an ARCHIVE change. Returns how many
+    // were moved.
+    public int archiveCompleted(LocalDate completedBefore, int limit) {
+        awaitWrites();
+        return timed("TaskManager.archiveCompleted", () -> alone(() -> {
+            List<Task> archived = repository.archiveCompleted(completedBefore, limit);
+            for (Task task : archived) {
+                unindexLocally(task.getId());
+                changed(TaskChange.Kind.ARCHIVE, task.getId(), task, null);
+            }
+            return archived.size();
+        }));
     }
 
-    public void addTask(String title, LocalDate dueDate, int priority) {
+    // gives up to pages of the space freed by deletes and archiving back to the file system, returns how many
+    public int reclaimSpace(int pages) {
+        return timed("TaskManager.reclaimSpace", () -> repository.reclaimSpace(pages));
+    }
+
+    public boolean isSummaryCountersEnabled() {
+        return summaryCounters != null;
+    }
+
+    // task counts by priority and completion status, and how many open tasks are overdue, due today and this week
+    public TaskSummary summary() {
+        LocalDate today = LocalDate.now();
+        return read("TaskManager.summary", () -> {
+            SummaryCounters counters = summaryCounters;
+            return counters != null ? counters.summary(today) : repository.summary(today);
+        });
+    }
+
+    // returns the new task with its id set (the id stays 0 if it could not be saved)
+    public Task addTask(String title, LocalDate dueDate, int priority) {
+        return addTask(title, dueDate, priority, null);
+    }
+
+    // a task that repeats, with dueDate as its first occurrence - null adds one that happens once
+    public Task addTask(String title, LocalDate dueDate, int priority, Recurrence recurrence) {
         // Create a Task object using the input values
-        Task task = new Task(title, dueDate, priority, false);
+        Task task = new Task(0, title, dueDate, priority, false, recurrence);
 
-        // Call TaskDao to insert the task into the database
-        taskDao.addTask(task);
+        // Call the repository to insert the task into the database
+        return timed("TaskManager.addTask", () -> {
+            WriteBehindQueue queue = writeBehind;
+            if (queue != null && !isWriting()) {
+                queue.add(task);
+                return task;
+            }
+            return shared(() -> {
+                repository.addTask(task);
+                if (task.getId() > 0) {
+                    indexLocally(task);
+                    changed(null, task);
+                }
+                return task;
+            });
+        });
     }
 
+    // adds a whole group of tasks at once, used by the bulk import - much faster than calling addTask in a loop
+    public int addTasks(Collection<Task> tasks) {
+        awaitWrites();
+        return timed("TaskManager.addTasks", () -> shared(() -> {
+            int inserted = repository.addTasks(tasks);
+            for (Task task : tasks) {
+                if (task.getId() > 0) {
+                    indexLocally(task);
+                    changed(null, task);
+                }
+            }
+            return inserted;
+        }));
+    }
+
+    // runs a group of changes as one database transaction, see TaskRepository.inTransaction. False if it was rolled
+    // back; the in-memory copies had already taken the changes made before the failure, so they are loaded again.
+    public boolean inTransaction(Runnable work) {
+        // queued changes go first, and the changes made inside work are written straight away, not queued,
+        // since the caller expects them to be one transaction
+        awaitWrites();
+        return alone(() -> {
+            if (repository.inTransaction(work)) {
+                return true;
+            }
+            reloadLocally();
+            return false;
+        });
+    }
+
+    // loads every in-memory copy from the repository again, after a rollback took back changes they already had
+    private void reloadLocally() {
+        if (cache != null) {
+            cache.load(repository.getAllTasks());
+        }
+        if (titleIndex != null) {
+            titleIndex.load(cache != null ? cache.getAll() : repository.getAllTasks());
+        }
+        recurring.load(repository.getRecurringTasks(), repository.getCompletedOccurrences());
+        if (summaryCounters != null) {
+            summaryCounters.load(cache != null ? cache.getAll() : repository.getAllTasks());
+        }
+        views.forEach((query, view) -> {
+            TaskQuery everything = new TaskQuery(query).limit(0);
+            view.load(cache != null && !query.isIncludeArchived() ? cache.query(everything) : repository.query(everything));
+        });
+        ReminderScheduler scheduler = reminders;
+        if (scheduler != null) {
+            TaskQuery open = new TaskQuery().completed(false);
+            scheduler.load(cache != null ? cache.query(open) : repository.query(open));
+        }
+    }
+
+    // a recurring task shows up as its occurrences until RecurringTasks.HORIZON_DAYS ahead, from today or from its
+    // first occurrence that is still open if that is overdue
     public List<Task> viewAllTasks() {
-        return taskDao.getAllTasks();
+        LocalDate today = LocalDate.now();
+        return read("TaskManager.viewAllTasks", () -> withOccurrences(
+                cache != null ? cache.getAll() : repository.getAllTasks(),
+                today.plusDays(RecurringTasks.HORIZON_DAYS), TaskQuery.Order.DUE_DATE, 0,
+                (to, perTask) -> recurring.occurrencesWithOverdue(today, null, to, task -> true, perTask)));
+    }
+
+    // one page of all tasks in due date order - pass null for the first page, then the last task of the previous page.
+    // The recurring tasks show up as in viewAllTasks, each occurrence is a page key of its own.
+    public List<Task> viewTasksPage(Task after, int pageSize) {
+        LocalDate afterDueDate = after == null ? null : after.getDueDate();
+        int afterId = after == null ? 0 : after.getId();
+        LocalDate today = LocalDate.now();
+        return read("TaskManager.viewTasksPage", () -> {
+            if (recurring.isEmpty()) {
+                return cache != null
+                        ? cache.getPage(afterDueDate, afterId, pageSize)
+                        : repository.getTasksPage(afterDueDate, afterId, pageSize);
+            }
+            // the same page without the recurring tasks' rows, so they don't take up places in it
+            TaskQuery page = new TaskQuery().after(afterDueDate, afterId).limit(pageSize);
+            return withOccurrences(queryStored(new TaskQuery(page).recurring(false)),
+                    today.plusDays(RecurringTasks.HORIZON_DAYS), TaskQuery.Order.DUE_DATE, pageSize,
+                    (to, perTask) -> recurring.occurrencesWithOverdue(today, afterDueDate, to, page::matches, perTask));
+        });
+    }
+
+    // goes over every task in due date order without loading them all at once, returns how many there were
+    public long forEachTask(Consumer<? super Task> action) {
+        awaitWrites();
+        long start = Metrics.start();
+        long count;
+        if (cache != null) {
+            List<Task> tasks = cache.getAll();
+            tasks.forEach(action);
+            count = tasks.size();
+        } else {
+            count = repository.forEachTask(action);
+        }
+        Metrics.record("TaskManager.forEachTask", start, (int) Math.min(count, Integer.MAX_VALUE), false);
+        return count;
+    }
+
+    // writes anything still queued and closes the storage - call it once, when the program is done with the tasks
+    public void close() {
+        TaskArchiver stopping;
+        synchronized (this) {
+            stopping = archiver;
+            archiver = null;
+        }
+        if (stopping != null) {
+            stopping.close();
+        }
+        ReminderScheduler scheduler = reminders;
+        if (scheduler != null) {
+            listeners.remove(scheduler);
+            scheduler.close();
+        }
+        disableWriteBehind();
+        repository.close();
+    }
+
+    // writes every task to file as CSV or JSON lines, streaming from the database, see TaskTransfer
+    public long exportTasks(Path file, TaskTransfer.Format format, TaskTransfer.Progress progress) throws IOException {
+        return TaskTransfer.export(this, file, format, progress);
+    }
+
+    // reads tasks from file and adds them chunkSize at a time with addTasks, see TaskTransfer
+    public long importTasks(Path file, TaskTransfer.Format format, int chunkSize, TaskTransfer.Progress progress)
+            throws IOException {
+        return TaskTransfer.importFile(this, file, format, chunkSize, progress);
     }
 
     public List<Task> filterByDate(LocalDate date) {
-        return taskDao.filterTasksByDate(date);
+        return read("TaskManager.filterByDate", () -> withOccurrences(
+                cache != null ? cache.getByDate(date) : repository.filterTasksByDate(date),
+                date, TaskQuery.Order.DUE_DATE, 0, (to, perTask) -> recurring.occurrences(date, to, task -> true, perTask)));
     }
 
     public List<Task> filterByPriority(int priority) {
-        return taskDao.filterTasksByPriority(priority);
+        return read("TaskManager.filterByPriority", () -> cache != null ? cache.getByPriority(priority) : repository.filterTasksByPriority(priority));
     }
 
     public List<Task> filterTasksByCompletionStatus(boolean isCompleted) {
-        return taskDao.filterTasksByCompletionStatus(isCompleted);
+        return read("TaskManager.filterTasksByCompletionStatus", () -> cache != null
+                ? cache.getByCompletionStatus(isCompleted)
+                : repository.filterTasksByCompletionStatus(isCompleted));
+    }
+
+    // several filters at once, see TaskQuery. Unless the query asks for recurring tasks or not, the recurring tasks
+    // show up as their occurrences in the query's due date range; without an end date the range goes
+    // RecurringTasks.HORIZON_DAYS past its start (or today).
+    public List<Task> query(TaskQuery query) {
+        return read("TaskManager.query", () -> {
+            if (recurring.isEmpty() || query.getRecurring() != null) {
+                return queryStored(query);
+            }
+            LocalDate from = query.getDueFrom() != null || query.getDueTo() != null ? query.getDueFrom() : LocalDate.now();
+            LocalDate to = query.getDueTo() != null ? query.getDueTo() : from.plusDays(RecurringTasks.HORIZON_DAYS);
+            return withOccurrences(queryStored(new TaskQuery(query).recurring(false)), to, query.getOrder(),
+                    query.getLimit(), (end, perTask) -> recurring.occurrences(from, end, query::matches, perTask));
+        });
+    }
+
+    // the cache doesn't hold the archive, so a query that includes it always goes to the repository
+    private List<Task> queryStored(TaskQuery query) {
+        return cache != null && !query.isIncludeArchived() ? cache.query(query) : repository.query(query);
+    }
+
+    // marks one occurrence of a recurring task completed or open again - only the occurrences that were marked are
+    // stored. False if id isn't a recurring task or has no occurrence on date.
+    public boolean setOccurrenceCompleted(int id, LocalDate date, boolean completed) {
+        awaitWrites();
+        return timed("TaskManager.setOccurrenceCompleted", () -> perTask(id, () -> {
+            if (!recurring.occursOn(id, date) || !repository.setOccurrenceCompleted(id, date, completed)) {
+                return false;
+            }
+            recurring.setOccurrenceCompleted(id, date, completed);
+            return true;
+        }));
+    }
+
+    public Urgency getUrgency() {
+        return urgency;
+    }
+
+    // changes the weights topUrgent uses
+    public void setUrgency(Urgency urgency) {
+        this.urgency = urgency;
+    }
+
+    // the k open tasks to work on next, most urgent first - see Urgency for how they are ranked
+    public List<Task> topUrgent(int k) {
+        LocalDate today = LocalDate.now();
+        return read("TaskManager.topUrgent", () -> cache != null
+                ? cache.topUrgent(k, urgency, today)
+                : repository.topUrgent(k, urgency, today));
+    }
+
+    // tasks with a title word starting with each word of text, best matches first
+    public List<Task> searchByTitle(String text, int limit) {
+        return read("TaskManager.searchByTitle", () -> {
+            if (titleIndex == null) {
+                return repository.searchByTitle(text, limit);
+            }
+            List<Task> tasks = new ArrayList<>();
+            for (int id : titleIndex.search(text, limit)) {
+                Task task = cache != null ? cache.get(id) : repository.filterTasksById(id);
+                if (task != null) {
+                    tasks.add(task);
+                }
+            }
+            return tasks;
+        });
     }
 
     public Task getTaskById(int id) {
-        return taskDao.filterTasksById(id);
+        return read("TaskManager.getTaskById", () -> cache != null ? cache.get(id) : repository.filterTasksById(id));
+    }
+
+    // the cache is only changed once the database has accepted the change, so the two can't drift apart.
+    // Writes to the same task are done one at a time so the cache ends up in the same order as the database.
+    // both return false if there was no task with that id, and updateTask also if the task was changed by someone else
+    // since updatedTask was read (see Task.getVersion)
+    public boolean updateTask(Task updatedTask) {
+        return timed("TaskManager.updateTask", () -> {
+            WriteBehindQueue queue = writeBehind;
+            if (queue != null && !isWriting()) {
+                queue.update(updatedTask);
+                return true;
+            }
+            return perTask(updatedTask.getId(), () -> update(updatedTask)) == WriteResult.DONE;
+        });
+    }
+
+    // updateTask that says why nothing was written, so the caller can read the task again after a CONFLICT and retry.
+    // It is never queued - in write-behind mode the queue is written first and then the update straight away.
+    public WriteResult compareAndUpdate(Task updatedTask) {
+        awaitWrites();
+        return timed("TaskManager.compareAndUpdate", () -> perTask(updatedTask.getId(), () -> update(updatedTask)));
+    }
+
+    private WriteResult update(Task updatedTask) {
+        Set<Task.Field> fields = updatedTask.hasChanges() ? updatedTask.getChangedFields() : null;
+        Task before = beforeUpdate(updatedTask.getId(), fields);
+        WriteResult result = repository.compareAndUpdate(updatedTask);
+        if (result == WriteResult.DONE) {
+            changedLocally(before, updatedTask, fields);
+        }
+        return result;
+    }
+
+    // the task before an update of fields (null for the whole task), for the listeners and for the in-memory copies
+    // that need a whole task when only some fields changed. Taken from memory when it is there - the cache, or
+    // RecurringTasks for a recurring task - and only read from the storage when a listener or the summary counters
+    // need it, or the task may become recurring. A plain updateTask outside cache mode costs no extra read.
+    private Task beforeUpdate(int id, Set<Task.Field> fields) {
+        if (cache != null) {
+            return cache.get(id);
+        }
+        Task task = recurring.get(id);
+        if (task != null) {
+            return task;
+        }
+        boolean needed = !listeners.isEmpty()
+                || (fields != null && (summaryCounters != null || fields.contains(Task.Field.RECURRENCE)));
+        return needed ? repository.filterTasksById(id) : null;
+    }
+
+    // only the changed columns are written, so when the task before the change is known only those are copied onto
+    // it - otherwise updatedTask is taken as the whole task
+    private void changedLocally(Task before, Task updatedTask, Set<Task.Field> fields) {
+        if (before == null && fields != null && listeners.isEmpty()) {
+            // nothing in memory holds this task as a whole (see beforeUpdate), only the title index may have to change
+            if (titleIndex != null && fields.contains(Task.Field.TITLE)) {
+                titleIndex.put(updatedTask);
+            }
+            return;
+        }
+        Task after = fields != null && before != null
+                ? applyFields(new Task(before), updatedTask, fields)
+                : new Task(updatedTask);
+        after.setVersion(updatedTask.getVersion());
+        indexLocally(after);
+        changed(TaskChange.Kind.UPDATE, after.getId(), before, after);
+    }
+
+    private static Task applyFields(Task target, Task source, Set<Task.Field> fields) {
+        for (Task.Field field : fields) {
+            switch (field) {
+                case TITLE -> target.setTitle(source.getTitle());
+                case DUE_DATE -> target.setDueDate(source.getDueDate());
+                case PRIORITY -> target.setPriority(source.getPriority());
+                case COMPLETED -> target.setCompleted(source.isCompleted());
+                case RECURRENCE -> target.setRecurrence(source.getRecurrence());
+            }
+        }
+        return target;
+    }
+
+    // the bulk changes below each run as one batched transaction or one UPDATE, see TaskDao. They return how many
+    // tasks were changed.
+    public int markCompleted(Collection<Integer> ids) {
+        awaitWrites();
+        return timed("TaskManager.markCompleted", () -> alone(() -> {
+            Map<Integer, Task> before = beforeAll(ids);
+            int changed = repository.markCompleted(ids, true);
+            if (changed > 0) {
+                for (int id : ids) {
+                    Task task = before.containsKey(id) ? before.get(id) : cache != null ? cache.get(id) : null;
+                    if (task != null) {
+                        Task after = new Task(task);
+                        after.setCompleted(true);
+                        after.setVersion(task.getVersion() + 1);
+                        if (cache != null) {
+                            cache.put(after);
+                        }
+                        changed(task, after);
+                    }
+                    if (summaryCounters != null) {
+                        summaryCounters.setCompleted(id, true);
+                    }
+                    recurring.setCompleted(id, true);
+                }
+            }
+            return changed;
+        }));
+    }
+
+    public int reprioritize(TaskQuery query, int newPriority) {
+        if (newPriority < 1 || newPriority > 3) {
+            throw new IllegalArgumentException("Priority must be between 1 and 3");
+        }
+        awaitWrites();
+        return timed("TaskManager.reprioritize", () -> alone(() -> {
+            // the cache holds the same rows as the database, so it can say which tasks the update is going to hit.
+            // Without one they are only looked up when the summary counters or listeners need them.
+            List<Task> matching = cache != null ? cache.query(query)
+                    : summaryCounters != null || !listeners.isEmpty() ? repository.query(query) : List.of();
+            int changed = repository.reprioritize(query, newPriority);
+            if (changed > 0) {
+                for (Task task : matching) {
+                    Task after = new Task(task);
+                    after.setPriority(newPriority);
+                    after.setVersion(task.getVersion() + 1);
+                    indexLocally(after);
+                    changed(task, after);
+                }
+            }
+            return changed;
+        }));
+    }
+
+    public int deleteTasks(Collection<Integer> ids) {
+        awaitWrites();
+        return timed("TaskManager.deleteTasks", () -> alone(() -> {
+            Map<Integer, Task> before = beforeAll(ids);
+            int deleted = repository.deleteTasks(ids);
+            if (deleted > 0) {
+                for (int id : ids) {
+                    unindexLocally(id);
+                    if (before.containsKey(id)) {
+                        changed(before.get(id), null);
+                    }
+                }
+            }
+            return deleted;
+        }));
+    }
+
+    public boolean deleteTask(int id) {
+        return timed("TaskManager.deleteTask", () -> {
+            WriteBehindQueue queue = writeBehind;
+            if (queue != null && !isWriting()) {
+                queue.delete(id);
+                return true;
+            }
+            return perTask(id, () -> delete(id, 0)) == WriteResult.DONE;
+        });
+    }
+
+    // deletes the task only if it still has expectedVersion (0 skips the check), never queued like compareAndUpdate
+    public WriteResult compareAndDelete(int id, int expectedVersion) {
+        awaitWrites();
+        return timed("TaskManager.compareAndDelete", () -> perTask(id, () -> delete(id, expectedVersion)));
+    }
+
+    private WriteResult delete(int id, int expectedVersion) {
+        Task before = listeners.isEmpty() ? null : before(id);
+        WriteResult result = repository.compareAndDelete(id, expectedVersion);
+        if (result == WriteResult.DONE) {
+            unindexLocally(id);
+            changed(TaskChange.Kind.DELETE, id, before, null);
+        }
+        return result;
+    }
+
+    // called by the WriteBehindQueue thread with one group of changes, which are written in one transaction. The
+    // in-memory copies are only changed once the transaction is committed, like for every other write. If it is
+    // rolled back nothing changes and the adds get id 0 again, as for an add that failed on its own.
+    private void writeGroup(List<Task> adds, List<Task> updates, List<Integer> deletes) {
+        long start = Metrics.start();
+        boolean committed = alone(() -> {
+            List<Task> updated = new ArrayList<>(updates.size());
+            List<Set<Task.Field>> updatedFields = new ArrayList<>(updates.size());
+            List<Task> updatedBefore = new ArrayList<>(updates.size());
+            Map<Integer, Task> deletedBefore = beforeAll(deletes);
+            boolean done = repository.inTransaction(() -> {
+                if (!adds.isEmpty()) {
+                    repository.addTasks(adds);
+                }
+                for (Task task : updates) {
+                    Set<Task.Field> fields = task.hasChanges() ? task.getChangedFields() : null;
+                    Task before = beforeUpdate(task.getId(), fields);
+                    if (repository.updateTask(task)) {
+                        updated.add(task);
+                        updatedFields.add(fields);
+                        updatedBefore.add(before);
+                    }
+                }
+                if (!deletes.isEmpty()) {
+                    repository.deleteTasks(deletes);
+                }
+            });
+            if (!done) {
+                for (Task task : adds) {
+                    task.setId(0);
+                    task.setVersion(0);
+                }
+                return false;
+            }
+
+            for (Task task : adds) {
+                if (task.getId() > 0) {
+                    indexLocally(task);
+                    changed(null, task);
+                }
+            }
+            for (int i = 0; i < updated.size(); i++) {
+                changedLocally(updatedBefore.get(i), updated.get(i), updatedFields.get(i));
+            }
+            for (int id : deletes) {
+                unindexLocally(id);
+                changed(TaskChange.Kind.DELETE, id, deletedBefore.get(id), null);
+            }
+            return true;
+        });
+        Metrics.record("TaskManager.writeGroup", start, adds.size() + updates.size() + deletes.size(), !committed);
+    }
+
+    private void awaitWrites() {
+        WriteBehindQueue queue = writeBehind;
+        // inside inTransaction the queue was flushed on the way in, and waiting here while holding the lock
+        // would stop the queue thread from ever writing
+        if (queue != null && !isWriting()) {
+            queue.flush();
+        }
+    }
+
+    // true inside any write - there a nested write is done straight away instead of being queued
+    private boolean isWriting() {
+        return writes.isWriteLockedByCurrentThread() || writes.getReadHoldCount() > 0;
+    }
+
+    private <T> T shared(Supplier<T> work) {
+        writes.readLock().lock();
+        try {
+            return work.get();
+        } finally {
+            writes.readLock().unlock();
+        }
+    }
+
+    private <T> T perTask(int id, Supplier<T> work) {
+        ReentrantLock stripe = stripes[Math.floorMod(id, STRIPES)];
+        writes.readLock().lock();
+        stripe.lock();
+        try {
+            return work.get();
+        } finally {
+            stripe.unlock();
+            writes.readLock().unlock();
+        }
+    }
+
+    private <T> T alone(Supplier<T> work) {
+        // the read side can't be swapped for the write side, that would wait for itself forever
+        if (writes.getReadHoldCount() > 0 && !writes.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("Bulk changes can't be made from inside a single-task write");
+        }
+        writes.writeLock().lock();
+        try {
+            return work.get();
+        } finally {
+            writes.writeLock().unlock();
+        }
+    }
+
+    // the occurrences of a recurring task that were marked completed, in date order - empty for any other task
+    public List<LocalDate> getCompletedOccurrences(int id) {
+        return recurring.completedOccurrences(id);
+    }
+
+    // reads wait for queued writes first, so they see them
+    private <T> T read(String operation, Supplier<T> work) {
+        awaitWrites();
+        return timed(operation, work);
+    }
+
+    // keeps the in-memory copies up to date after the database accepted a new or changed task
+    private void indexLocally(Task task) {
+        if (cache != null) {
+            cache.put(task);
+        }
+        if (titleIndex != null) {
+            titleIndex.put(task);
+        }
+        if (summaryCounters != null) {
+            summaryCounters.put(task);
+        }
+        recurring.put(task);
+    }
+
+    // the task as it is now, before a change to it is written - from the cache when there is one
+    private Task before(int id) {
+        return cache != null ? cache.get(id) : repository.filterTasksById(id);
+    }
+
+    // the before images for a bulk change, only looked up while someone is listening
+    private Map<Integer, Task> beforeAll(Collection<Integer> ids) {
+        if (listeners.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, Task> tasks = new HashMap<>();
+        for (int id : ids) {
+            Task task = before(id);
+            if (task != null) {
+                tasks.put(id, task);
+            }
+        }
+        return tasks;
+    }
+
+    private void changed(Task before, Task after) {
+        changed(before == null ? TaskChange.Kind.ADD : TaskChange.Kind.UPDATE, after.getId(), before, after);
+    }
+
+    // a listener that throws doesn't stop the others, and doesn't undo the change that was already written
+    private void changed(TaskChange.Kind kind, int id, Task before, Task after) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        TaskChange change = new TaskChange(kind, id, before == null ? null : new Task(before),
+                after == null ? null : new Task(after));
+        for (TaskChangeListener listener : listeners) {
+            try {
+                listener.taskChanged(change);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void unindexLocally(int id) {
+        if (cache != null) {
+            cache.remove(id);
+        }
+        if (titleIndex != null) {
+            titleIndex.remove(id);
+        }
+        if (summaryCounters != null) {
+            summaryCounters.remove(id);
+        }
+        recurring.remove(id);
     }
 
-    public void updateTask(Task updatedTask) {
-        taskDao.updateTask(updatedTask);
+    // a recurring task is stored once, with its first occurrence as due date. A date listing leaves that row out of
+    // tasks and has the task's occurrences up to to in its place, as occurrences makes them (given to and how many of
+    // each task are needed), sorted into order and cut at limit (0 for all). tasks has to be the first limit tasks in
+    // order already.
+    private List<Task> withOccurrences(List<Task> tasks, LocalDate to, TaskQuery.Order order, int limit,
+                                       BiFunction<LocalDate, Integer, List<Task>> occurrences) {
+        if (recurring.isEmpty()) {
+            return tasks;
+        }
+        List<Task> merged = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (!recurring.isRecurring(task)) {
+                merged.add(task);
+            }
+        }
+        // in date order with a full page, nothing due after its last task can make it in, and no more than limit
+        // occurrences of one task can - so a short page doesn't make every occurrence up to the horizon
+        int perTask = 0;
+        if (order == TaskQuery.Order.DUE_DATE && limit > 0) {
+            perTask = limit;
+            if (merged.size() >= limit && merged.get(limit - 1).getDueDate().isBefore(to)) {
+                to = merged.get(limit - 1).getDueDate();
+            }
+        }
+        merged.addAll(occurrences.apply(to, perTask));
+        merged.sort(order.comparator());
+        return limit > 0 && merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
     }
 
-    public void deleteTask(int id) {
-        taskDao.deleteTask(id);
+    // records the call in Metrics - this includes the time spent waiting for the lock, the DAO entries don't
+    private <T> T timed(String operation, Supplier<T> work) {
+        long start = Metrics.start();
+        boolean failed = true;
+        T result = null;
+        try {
+            result = work.get();
+            failed = false;
+            return result;
+        } finally {
+            Metrics.record(operation, start, Metrics.rowsOf(result), failed);
+        }
     }
 }
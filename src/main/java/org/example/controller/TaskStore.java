@@ -0,0 +1,44 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.example.model.Urgency;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+// an in-memory copy of every task that TaskManager answers reads from in cache mode. TaskCache keeps a Task object per
+// task with an index for every filter, ColumnarTaskStore keeps the fields in primitive arrays for very large task sets.
+// Both hand out copies, so nobody outside can change a stored task by accident, and both return their lists in the
+// same order.
+public interface TaskStore {
+
+    // replaces everything stored with tasks
+    void load(Collection<Task> tasks);
+
+    // adds the task, or replaces the stored task with the same id
+    void put(Task task);
+
+    void remove(int id);
+
+    // null if there is no task with that id
+    Task get(int id);
+
+    int size();
+
+    List<Task> getAll();
+
+    // same as TaskRepository.getTasksPage - up to limit tasks in date order, starting after the given due date and id
+    List<Task> getPage(LocalDate afterDueDate, int afterId, int limit);
+
+    List<Task> getByDate(LocalDate date);
+
+    List<Task> getByPriority(int priority);
+
+    List<Task> getByCompletionStatus(boolean isCompleted);
+
+    List<Task> query(TaskQuery query);
+
+    List<Task> topUrgent(int k, Urgency urgency, LocalDate today);
+}
@@ -0,0 +1,572 @@
+package org.example.controller;
+
+import org.example.model.Recurrence;
+import org.example.model.Task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+// moves tasks between tasks.db and a file without ever holding more than one chunk of tasks in memory. Export reads
+// the tasks through the streaming cursor and import hands them to TaskManager.addTasks a chunk at a time. Both go
+// through a FileChannel with one large direct buffer, encoding and decoding UTF-8 straight into and out of it.
+//
+// CSV:  a header line, then title,due_date,priority,completed,recurrence,completed_occurrences - the title is quoted
+//       when it has commas, quotes or line breaks in it. The last two are empty for a task that happens once.
+//       Files with only the first four columns (the old --import format without a header or quotes, and exports
+//       from before recurring tasks) are read too.
+// JSON: one object per line (JSON Lines), e.g. {"id":1,"title":"Buy milk","dueDate":"2025-04-22","priority":1,"completed":false}
+//       and a recurring task has "recurrence":"WEEKLY/1" and "completedOccurrences":["2025-04-29"] as well.
+// A recurrence is written as Recurrence.toString, completed occurrences as dates (separated by spaces in CSV).
+// Ids are written out but not read back in - imported tasks get new ids.
+public class TaskTransfer {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String CSV_HEADER = "title,due_date,priority,completed,recurrence,completed_occurrences";
+    private static final String OLD_CSV_HEADER = "title,due_date,priority,completed";
+    static final int CSV_COLUMNS = 6;
+    static final int OLD_CSV_COLUMNS = 4;
+    // how often the progress is reported
+    private static final long PROGRESS_EVERY = 100_000;
+
+    public enum Format {
+        CSV, JSON;
+
+        // .json and .jsonl files are JSON, everything else is CSV
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".json") || name.endsWith(".jsonl") ? JSON : CSV;
+        }
+    }
+
+    // told how far an export or import has got, every PROGRESS_EVERY rows and once at the end
+    public interface Progress {
+        void update(long rows, long elapsedNanos, boolean done);
+
+        // a line that could not be imported, it is skipped
+        default void skipped(long lineNumber, String line) {
+        }
+
+        static Progress none() {
+            return (rows, elapsedNanos, done) -> { };
+        }
+    }
+
+    // a task read from a file, with the occurrences to mark completed once it has its id
+    record Entry(Task task, List<LocalDate> completedOccurrences) {
+    }
+
+    private TaskTransfer() {
+    }
+
+    public static long export(TaskManager taskManager, Path file, Format format, Progress progress) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelWriter writer = new ChannelWriter(channel);
+            StringBuilder line = new StringBuilder(256);
+            if (format == Format.CSV) {
+                writer.write(line.append(CSV_HEADER).append('\n'));
+            }
+            long[] rows = {0};
+            try {
+                taskManager.forEachTask(task -> {
+                    line.setLength(0);
+                    List<LocalDate> completedOccurrences = task.isRecurring()
+                            ? taskManager.getCompletedOccurrences(task.getId()) : List.of();
+                    if (format == Format.CSV) {
+                        appendCsv(task, completedOccurrences, line);
+                    } else {
+                        appendJson(task, completedOccurrences, line);
+                    }
+                    line.append('\n');
+                    writer.write(line);
+                    if (++rows[0] % PROGRESS_EVERY == 0) {
+                        progress.update(rows[0], System.nanoTime() - start, false);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish();
+            progress.update(rows[0], System.nanoTime() - start, true);
+            return rows[0];
+        }
+    }
+
+    // returns the number of tasks imported, lines that can't be read are passed to progress.skipped
+    public static long importFile(TaskManager taskManager, Path file, Format format, int chunkSize, Progress progress)
+            throws IOException {
+        long start = System.nanoTime();
+        List<Entry> chunk = new ArrayList<>(chunkSize);
+        long imported = 0;
+        long nextReport = PROGRESS_EVERY;
+        long lineNumber = 0;
+        int columns = OLD_CSV_COLUMNS; // until a header says otherwise
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LineReader reader = new LineReader(channel, format == Format.CSV);
+            CharSequence text;
+            while ((text = reader.next()) != null) {
+                lineNumber++;
+                String line = text.toString();
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (lineNumber == 1 && format == Format.CSV && (line.equals(CSV_HEADER) || line.equals(OLD_CSV_HEADER))) {
+                    columns = line.equals(CSV_HEADER) ? CSV_COLUMNS : OLD_CSV_COLUMNS;
+                    continue;
+                }
+                Entry entry = format == Format.CSV ? parseCsv(line, columns) : parseJson(line);
+                if (entry == null) {
+                    progress.skipped(lineNumber, line);
+                    continue;
+                }
+                chunk.add(entry);
+                if (chunk.size() == chunkSize) {
+                    imported += addChunk(taskManager, chunk);
+                    chunk.clear();
+                    if (imported >= nextReport) {
+                        progress.update(imported, System.nanoTime() - start, false);
+                        nextReport = (imported / PROGRESS_EVERY + 1) * PROGRESS_EVERY;
+                    }
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += addChunk(taskManager, chunk);
+        }
+        progress.update(imported, System.nanoTime() - start, true);
+        return imported;
+    }
+
+    // the completed occurrences can only be marked once the tasks are added and have their ids
+    private static int addChunk(TaskManager taskManager, List<Entry> chunk) {
+        List<Task> tasks = new ArrayList<>(chunk.size());
+        for (Entry entry : chunk) {
+            tasks.add(entry.task());
+        }
+        int added = taskManager.addTasks(tasks);
+        for (Entry entry : chunk) {
+            int id = entry.task().getId();
+            for (LocalDate date : entry.completedOccurrences()) {
+                if (id > 0) {
+                    taskManager.setOccurrenceCompleted(id, date, true);
+                }
+            }
+        }
+        return added;
+    }
+
+    static void appendCsv(Task task, List<LocalDate> completedOccurrences, StringBuilder sb) {
+        String title = task.getTitle();
+        boolean quote = title.indexOf(',') >= 0 || title.indexOf('"') >= 0 || title.indexOf('\n') >= 0
+                || title.indexOf('\r') >= 0 || title.startsWith(" ") || title.endsWith(" ");
+        if (quote) {
+            sb.append('"');
+            for (int i = 0; i < title.length(); i++) {
+                char c = title.charAt(i);
+                if (c == '"') {
+                    sb.append('"');
+                }
+                sb.append(c);
+            }
+            sb.append('"');
+        } else {
+            sb.append(title);
+        }
+        sb.append(',').append(task.getDueDate()).append(',').append(task.getPriority()).append(',').append(task.isCompleted());
+        sb.append(',');
+        if (task.isRecurring()) {
+            sb.append(task.getRecurrence());
+        }
+        sb.append(',');
+        for (int i = 0; i < completedOccurrences.size(); i++) {
+            sb.append(i == 0 ? "" : " ").append(completedOccurrences.get(i));
+        }
+    }
+
+    // a line with columns fields (CSV_COLUMNS or OLD_CSV_COLUMNS). The fields after the title are split off from the
+    // right, none of them has a comma in it, so an unquoted title may still have commas in it.
+    static Entry parseCsv(String line, int columns) {
+        String title;
+        String rest;
+        if (line.startsWith("\"")) {
+            StringBuilder sb = new StringBuilder();
+            int i = 1;
+            while (true) {
+                if (i >= line.length()) {
+                    return null; // the quote was never closed
+                }
+                char c = line.charAt(i);
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                sb.append(c);
+                i++;
+            }
+            if (i + 1 >= line.length() || line.charAt(i + 1) != ',') {
+                return null;
+            }
+            title = sb.toString();
+            rest = line.substring(i + 2);
+            String[] fields = rest.split(",", -1);
+            if (fields.length != columns - 1) {
+                return null;
+            }
+            return toEntry(title, fields);
+        }
+
+        String[] fields = new String[columns - 1];
+        int end = line.length();
+        for (int i = fields.length - 1; i >= 0; i--) {
+            int comma = end > 0 ? line.lastIndexOf(',', end - 1) : -1;
+            if (comma < 0) {
+                return null;
+            }
+            fields[i] = line.substring(comma + 1, end);
+            end = comma;
+        }
+        return toEntry(line.substring(0, end).trim(), fields);
+    }
+
+    // fields are due date, priority, completed and, if there are five, the recurrence and the completed occurrences
+    // separated by spaces - both may be empty
+    private static Entry toEntry(String title, String... fields) {
+        try {
+            int priorityValue = Integer.parseInt(fields[1].trim());
+            if (title.isEmpty() || priorityValue < 1 || priorityValue > 3) {
+                return null;
+            }
+            Recurrence recurrence = fields.length > 3 && !fields[3].isBlank() ? Recurrence.parse(fields[3]) : null;
+            List<LocalDate> completedOccurrences = new ArrayList<>();
+            if (fields.length > 4 && !fields[4].isBlank()) {
+                for (String date : fields[4].trim().split("\\s+")) {
+                    completedOccurrences.add(LocalDate.parse(date));
+                }
+            }
+            Task task = new Task(0, title, LocalDate.parse(fields[0].trim()), priorityValue,
+                    Boolean.parseBoolean(fields[2].trim()), recurrence);
+            return new Entry(task, completedOccurrences);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return null; // NumberFormatException is an IllegalArgumentException too
+        }
+    }
+
+    static void appendJson(Task task, List<LocalDate> completedOccurrences, StringBuilder sb) {
+        sb.append("{\"id\":").append(task.getId()).append(",\"title\":\"");
+        String title = task.getTitle();
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append("\",\"dueDate\":\"").append(task.getDueDate())
+                .append("\",\"priority\":").append(task.getPriority())
+                .append(",\"completed\":").append(task.isCompleted());
+        if (task.isRecurring()) {
+            sb.append(",\"recurrence\":\"").append(task.getRecurrence()).append('"');
+        }
+        if (!completedOccurrences.isEmpty()) {
+            sb.append(",\"completedOccurrences\":[");
+            for (int i = 0; i < completedOccurrences.size(); i++) {
+                sb.append(i == 0 ? "\"" : ",\"").append(completedOccurrences.get(i)).append('"');
+            }
+            sb.append(']');
+        }
+        sb.append('}');
+    }
+
+    // reads one flat object - string, number, true/false values and arrays of strings only, which is all a task has
+    static Entry parseJson(String line) {
+        String title = null;
+        String dueDate = null;
+        String priority = null;
+        String completed = "false";
+        String recurrence = "";
+        String completedOccurrences = "";
+        JsonCursor json = new JsonCursor(line);
+        try {
+            json.expect('{');
+            if (!json.consume('}')) {
+                do {
+                    String key = json.string();
+                    json.expect(':');
+                    String value = switch (json.peek()) {
+                        case '"' -> json.string();
+                        case '[' -> json.strings();
+                        default -> json.literal();
+                    };
+                    switch (key) {
+                        case "title" -> title = value;
+                        case "dueDate" -> dueDate = value;
+                        case "priority" -> priority = value;
+                        case "completed" -> completed = value;
+                        case "recurrence" -> recurrence = value;
+                        case "completedOccurrences" -> completedOccurrences = value;
+                        default -> { } // e.g. id, which isn't imported
+                    }
+                } while (json.consume(','));
+                json.expect('}');
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (title == null || dueDate == null || priority == null) {
+            return null;
+        }
+        return toEntry(title, dueDate, priority, completed, recurrence, completedOccurrences);
+    }
+
+    private static class JsonCursor {
+        private final String text;
+        private int pos;
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        char peek() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException("unexpected end");
+            }
+            return text.charAt(pos);
+        }
+
+        void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("expected " + c);
+            }
+            pos++;
+        }
+
+        boolean consume(char c) {
+            if (pos < text.length() && peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("bad escape");
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(escaped); // \" \\ and \/
+                }
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+
+        // an array of strings, handed back separated by spaces
+        String strings() {
+            expect('[');
+            StringBuilder sb = new StringBuilder();
+            if (!consume(']')) {
+                do {
+                    sb.append(sb.isEmpty() ? "" : " ").append(string());
+                } while (consume(','));
+                expect(']');
+            }
+            return sb.toString();
+        }
+
+        // a number, true or false
+        String literal() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && text.charAt(pos) != ',' && text.charAt(pos) != '}'
+                    && !Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("missing value");
+            }
+            return text.substring(start, pos);
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+
+    // encodes text into the direct buffer and writes the buffer to the channel whenever it fills up
+    private static class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(CharSequence text) {
+            CharBuffer chars = CharBuffer.wrap(text);
+            try {
+                while (true) {
+                    CoderResult result = encoder.encode(chars, buffer, false);
+                    if (result.isOverflow()) {
+                        drain();
+                    } else if (result.isError()) {
+                        result.throwException();
+                    } else {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            encoder.encode(CharBuffer.allocate(0), buffer, true);
+            while (encoder.flush(buffer).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // decodes the channel a buffer at a time and hands out one line at a time. For CSV a line break inside a quoted
+    // title doesn't end the line.
+    private static class LineReader {
+        private final FileChannel channel;
+        private final boolean csvQuotes;
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final StringBuilder line = new StringBuilder(256);
+        private boolean endOfInput;
+        private boolean inQuotes;
+        private boolean quotedLine;
+
+        LineReader(FileChannel channel, boolean csvQuotes) {
+            this.channel = channel;
+            this.csvQuotes = csvQuotes;
+            chars.flip(); // starts empty
+        }
+
+        // the next line without its line break, or null at the end of the file. The returned text is only valid
+        // until the next call.
+        CharSequence next() throws IOException {
+            line.setLength(0);
+            quotedLine = false;
+            while (true) {
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    // only a title that starts with a quote is quoted, so a stray quote in an old unquoted line is
+                    // just part of the title
+                    if (c == '"' && csvQuotes && (inQuotes || line.length() == 0 || quotedLine)) {
+                        quotedLine = true;
+                        inQuotes = !inQuotes;
+                    } else if (c == '\n' && !inQuotes) {
+                        trimCarriageReturn();
+                        return line;
+                    }
+                    line.append(c);
+                }
+                if (endOfInput) {
+                    if (line.length() == 0) {
+                        return null;
+                    }
+                    inQuotes = false;
+                    trimCarriageReturn();
+                    return line;
+                }
+                fill();
+            }
+        }
+
+        private void trimCarriageReturn() {
+            if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+                line.setLength(line.length() - 1);
+            }
+        }
+
+        private void fill() throws IOException {
+            chars.clear();
+            int read = channel.read(bytes);
+            bytes.flip();
+            boolean last = read == -1;
+            CoderResult result = decoder.decode(bytes, chars, last);
+            if (result.isError()) {
+                throw new CharacterCodingException();
+            }
+            if (last && !bytes.hasRemaining()) {
+                decoder.flush(chars);
+                endOfInput = true;
+            }
+            bytes.compact();
+            chars.flip();
+        }
+    }
+}
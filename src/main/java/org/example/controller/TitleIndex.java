@@ -0,0 +1,216 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TitleWords;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// an in-memory title search for when SQLite has no FTS5 (and for cache mode, so searches stay in memory too).
+// Every word of a title is cut into 3-letter pieces with a space in front of the word, e.g. "milk" gives " mi", "mil"
+// and "ilk", and each piece keeps a sorted list of the task ids that have it. A search only has to intersect the lists
+// for the pieces of the words it is looking for, starting from the shortest, so it doesn't get slower as the table
+// grows - only as the searched words get more common. The matches are then checked against the real words.
+public class TitleIndex {
+    private final Map<String, IdList> grams = new HashMap<>();
+    private final Map<Integer, String[]> wordsById = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void load(Collection<Task> tasks) {
+        lock.writeLock().lock();
+        try {
+            grams.clear();
+            wordsById.clear();
+            for (Task task : tasks) {
+                insert(task.getId(), task.getTitle());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // adds the task's title, or replaces the title indexed for the same id
+    public void put(Task task) {
+        lock.writeLock().lock();
+        try {
+            unlink(task.getId());
+            insert(task.getId(), task.getTitle());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            unlink(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ids of the tasks whose title has a word starting with every word of text. Titles with fewer words come first,
+    // the closest thing to FTS5's ranking this index can offer, then the lowest id.
+    public List<Integer> search(String text, int limit) {
+        List<String> queryWords = TitleWords.split(text);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<String> queryGrams = new HashSet<>();
+            for (String word : queryWords) {
+                addGrams(word, queryGrams);
+            }
+            List<IdList> lists = new ArrayList<>(queryGrams.size());
+            for (String gram : queryGrams) {
+                IdList ids = grams.get(gram);
+                if (ids == null) {
+                    return new ArrayList<>(); // some piece isn't in any title, so nothing can match
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            List<Integer> matches = new ArrayList<>();
+            IdList shortest = lists.get(0);
+            for (int i = 0; i < shortest.size; i++) {
+                int id = shortest.ids[i];
+                if (inAll(id, lists) && matchesAll(wordsById.get(id), queryWords)) {
+                    matches.add(id);
+                }
+            }
+            matches.sort(Comparator.<Integer>comparingInt(id -> wordsById.get(id).length).thenComparingInt(id -> id));
+            return new ArrayList<>(matches.subList(0, Math.min(limit, matches.size())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return wordsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // callers must hold the write lock
+    private void insert(int id, String title) {
+        List<String> words = TitleWords.split(title);
+        wordsById.put(id, words.toArray(new String[0]));
+        Set<String> titleGrams = new HashSet<>();
+        for (String word : words) {
+            addGrams(word, titleGrams);
+        }
+        for (String gram : titleGrams) {
+            grams.computeIfAbsent(gram, key -> new IdList()).add(id);
+        }
+    }
+
+    private void unlink(int id) {
+        String[] words = wordsById.remove(id);
+        if (words == null) {
+            return;
+        }
+        Set<String> titleGrams = new HashSet<>();
+        for (String word : words) {
+            addGrams(word, titleGrams);
+        }
+        for (String gram : titleGrams) {
+            IdList ids = grams.get(gram);
+            ids.remove(id);
+            if (ids.size == 0) {
+                grams.remove(gram);
+            }
+        }
+    }
+
+    // the pieces of one word - a one letter word only has " x", longer ones every 3 letters of " word"
+    private static void addGrams(String word, Set<String> into) {
+        String padded = " " + word;
+        if (padded.length() < 3) {
+            into.add(padded);
+            return;
+        }
+        into.add(padded.substring(0, 2)); // so one letter searches find longer words too
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            into.add(padded.substring(i, i + 3));
+        }
+    }
+
+    private static boolean inAll(int id, List<IdList> lists) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the pieces can match across a word, e.g. "ilk" in "silky", so check each searched word really starts a title word
+    private static boolean matchesAll(String[] titleWords, List<String> queryWords) {
+        for (String query : queryWords) {
+            boolean found = false;
+            for (String word : titleWords) {
+                if (word.startsWith(query)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a sorted list of ids without boxing - new tasks have the highest id so adding is almost always an append
+    private static class IdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insertAt(-index - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void insertAt(int index, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+    }
+}
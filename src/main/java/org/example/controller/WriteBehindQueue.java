@@ -0,0 +1,256 @@
+package org.example.controller;
+
+import org.example.model.Task;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// write-behind for TaskManager: adds, updates and deletes are queued and return straight away, and a background thread
+// writes them in groups - one transaction per group instead of one per change. A group is committed once it has
+// maxGroup changes or maxDelayMillis have passed since its first change, whichever comes first. Within a group,
+// repeated updates to the same task are merged into one and an update followed by a delete becomes just the delete.
+// The queue holds at most capacity changes; when it is full the callers wait (backpressure) instead of using up memory.
+// flush() waits until everything queued so far is committed.
+public class WriteBehindQueue implements AutoCloseable {
+
+    // writes one group inside one transaction - TaskManager does the actual database and cache work
+    public interface GroupWriter {
+        void write(List<Task> adds, List<Task> updates, List<Integer> deletes);
+    }
+
+    public static class Settings {
+        private int capacity = Integer.getInteger("tasktracker.writeBehind.capacity", 10_000);
+        private int maxGroup = Integer.getInteger("tasktracker.writeBehind.maxGroup", 1000);
+        private long maxDelayMillis = Long.getLong("tasktracker.writeBehind.maxDelayMillis", 10);
+
+        public int getCapacity() { return capacity; }
+
+        public Settings setCapacity(int capacity) { this.capacity = Math.max(1, capacity); return this; }
+
+        public int getMaxGroup() { return maxGroup; }
+
+        public Settings setMaxGroup(int maxGroup) { this.maxGroup = Math.max(1, maxGroup); return this; }
+
+        public long getMaxDelayMillis() { return maxDelayMillis; }
+
+        public Settings setMaxDelayMillis(long maxDelayMillis) { this.maxDelayMillis = Math.max(0, maxDelayMillis); return this; }
+    }
+
+    private enum Kind { ADD, UPDATE, DELETE, FLUSH, STOP }
+
+    private record Change(Kind kind, Task task, int id, long sequence) {
+    }
+
+    private final GroupWriter writer;
+    private final Settings settings;
+    private final BlockingQueue<Change> queue;
+    private final AtomicLong lastQueued = new AtomicLong();
+    private final Thread thread;
+    // sequence number of the last change that has been written, guarded by this
+    private long lastWritten;
+    private volatile boolean closed;
+
+    public WriteBehindQueue(GroupWriter writer, Settings settings) {
+        this.writer = writer;
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(settings.getCapacity());
+        // a virtual thread - it spends nearly all its time waiting on the queue, and never keeps the JVM alive
+        thread = Thread.ofVirtual().name("task-write-behind").unstarted(this::run);
+        thread.start();
+    }
+
+    public void add(Task task) {
+        enqueue(Kind.ADD, task, 0);
+    }
+
+    // the task is copied, so changing it again after this call doesn't change what gets written
+    public void update(Task task) {
+        enqueue(Kind.UPDATE, copyWithChanges(task), task.getId());
+    }
+
+    public void delete(int id) {
+        enqueue(Kind.DELETE, null, id);
+    }
+
+    // blocks until every change queued before this call has been committed
+    public void flush() {
+        if (Thread.currentThread() == thread) {
+            return; // called from inside a group, everything before it is being written right now
+        }
+        long target = lastQueued.get();
+        synchronized (this) {
+            if (lastWritten >= target) {
+                return;
+            }
+        }
+        enqueue(Kind.FLUSH, null, 0);
+        waitFor(target);
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    // writes whatever is still queued and stops the background thread
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        enqueue(Kind.STOP, null, 0);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Kind kind, Task task, int id) {
+        if (closed && kind != Kind.STOP) {
+            throw new IllegalStateException("The write-behind queue is closed");
+        }
+        try {
+            // numbering and queueing happen together, so the numbers in the queue are always in order
+            synchronized (queue) {
+                queue.put(new Change(kind, task, id, lastQueued.incrementAndGet()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for room in the write-behind queue", e);
+        }
+    }
+
+    private synchronized void waitFor(long sequence) {
+        while (lastWritten < sequence) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        List<Change> group = new ArrayList<>(settings.getMaxGroup());
+        while (true) {
+            Change first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            group.add(first);
+            boolean stop = first.kind() == Kind.STOP;
+            boolean flush = first.kind() == Kind.FLUSH;
+
+            // keep collecting until the group is full, the time is up, or someone is waiting on flush()
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getMaxDelayMillis());
+            while (!stop && !flush && group.size() < settings.getMaxGroup()) {
+                Change next;
+                try {
+                    next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    stop = true;
+                    break;
+                }
+                if (next == null) {
+                    break;
+                }
+                group.add(next);
+                stop = next.kind() == Kind.STOP;
+                flush = next.kind() == Kind.FLUSH;
+            }
+
+            writeGroup(group);
+            synchronized (this) {
+                lastWritten = group.get(group.size() - 1).sequence();
+                notifyAll();
+            }
+            group.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private void writeGroup(List<Change> group) {
+        List<Task> adds = new ArrayList<>();
+        // by id, in the order each id was first changed - the last update wins, a delete replaces any update
+        Map<Integer, Change> byId = new LinkedHashMap<>();
+        for (Change change : group) {
+            switch (change.kind()) {
+                case ADD -> adds.add(change.task());
+                case UPDATE -> byId.merge(change.id(), change, WriteBehindQueue::merge);
+                case DELETE -> byId.put(change.id(), change);
+                default -> { }
+            }
+        }
+        List<Task> updates = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+        for (Change change : byId.values()) {
+            if (change.kind() == Kind.DELETE) {
+                deletes.add(change.id());
+            } else {
+                updates.add(change.task());
+            }
+        }
+        if (adds.isEmpty() && updates.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+        try {
+            writer.write(adds, updates, deletes);
+        } catch (RuntimeException e) {
+            // the thread has to keep going, or every later flush() would wait forever
+            e.printStackTrace();
+        }
+    }
+
+    // two updates to the same task become one that writes the fields of both, with the newer values
+    private static Change merge(Change older, Change newer) {
+        if (older.kind() == Kind.DELETE) {
+            return older; // the task is already gone, so the update wouldn't change anything
+        }
+        if (!newer.task().hasChanges()) {
+            return newer; // the newer one writes every column anyway
+        }
+        Task merged = copyWithChanges(older.task());
+        for (Task.Field field : newer.task().getChangedFields()) {
+            copyField(newer.task(), merged, field);
+        }
+        if (!older.task().hasChanges()) {
+            merged.clearChanges(); // the older one wrote every column, so the merged one has to as well
+        }
+        return new Change(Kind.UPDATE, merged, newer.id(), newer.sequence());
+    }
+
+    private static Task copyWithChanges(Task task) {
+        Task copy = new Task(task);
+        Set<Task.Field> fields = task.getChangedFields();
+        for (Task.Field field : fields) {
+            copyField(task, copy, field);
+        }
+        // queued updates are merged and written later, so the version they were made from can't be checked
+        copy.setVersion(0);
+        return copy;
+    }
+
+    private static void copyField(Task from, Task to, Task.Field field) {
+        switch (field) {
+            case TITLE -> to.setTitle(from.getTitle());
+            case DUE_DATE -> to.setDueDate(from.getDueDate());
+            case PRIORITY -> to.setPriority(from.getPriority());
+            case COMPLETED -> to.setCompleted(from.isCompleted());
+            case RECURRENCE -> to.setRecurrence(from.getRecurrence());
+        }
+    }
+}
@@ -1,41 +1,311 @@
 package org.example.model;
 
+import org.sqlite.SQLiteConfig;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
-// this handles the connection to a SQLite database through JDBC - creates the connection and closes the connection
+// this handles the connections to a SQLite database through JDBC - creates the connections and closes them.
+// There is one writer connection, and writes take turns on it, plus a small pool of read-only connections so reads
+// from different threads can run at the same time. The database runs in WAL mode so readers never block the writer.
 
 public class DatabaseHelper {
-    private static final String DB_URL = "jdbc:sqlite:tasks.db";
+
+    // work done on a borrowed connection, the StatementCache gives access to the connection and its prepared statements
+    public interface SqlWork<T> {
+        T run(StatementCache statements) throws SQLException;
+    }
+
+    // connection settings, read from system properties (e.g. -Dtasktracker.db.readers=8) so they can be tuned without
+    // changing code. Changes take effect the next time the connections are opened.
+    public static class Settings {
+        private String url = System.getProperty("tasktracker.db.url", "jdbc:sqlite:tasks.db");
+        private int readers = Integer.getInteger("tasktracker.db.readers",
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+        private String synchronous = System.getProperty("tasktracker.db.synchronous", "NORMAL");
+        private int cacheSize = Integer.getInteger("tasktracker.db.cacheSize", -16000); // negative means KiB, so 16 MB
+        private long mmapSize = Long.getLong("tasktracker.db.mmapSize", 64L * 1024 * 1024);
+        private int busyTimeout = Integer.getInteger("tasktracker.db.busyTimeout", 5000);
+
+        public String getUrl() { return url; }
+
+        public Settings setUrl(String url) { this.url = url; return this; }
+
+        public int getReaders() { return readers; }
+
+        // 0 readers sends reads to the writer connection, which is needed for in-memory databases
+        public Settings setReaders(int readers) { this.readers = Math.max(0, readers); return this; }
+
+        public String getSynchronous() { return synchronous; }
+
+        public Settings setSynchronous(String synchronous) { this.synchronous = synchronous; return this; }
+
+        public int getCacheSize() { return cacheSize; }
+
+        public Settings setCacheSize(int cacheSize) { this.cacheSize = cacheSize; return this; }
+
+        public long getMmapSize() { return mmapSize; }
+
+        public Settings setMmapSize(long mmapSize) { this.mmapSize = mmapSize; return this; }
+
+        public int getBusyTimeout() { return busyTimeout; }
+
+        public Settings setBusyTimeout(int busyTimeout) { this.busyTimeout = busyTimeout; return this; }
+    }
+
+    private static Settings settings = new Settings();
 
     private static Connection conn;
+    private static final StatementCache writer = new StatementCache(DatabaseHelper::getConnection);
+    // only one thread writes at a time - SQLite only allows one writer anyway, this makes the others wait in Java
+    private static final ReentrantLock writeLock = new ReentrantLock();
+
+    // idle readers, used like a stack so the most recently used reader (with warm statements) is handed out first
+    private static final BlockingDeque<StatementCache> idleReaders = new LinkedBlockingDeque<>();
+    private static final List<StatementCache> allReaders = new ArrayList<>();
 
-    // Singleton pattern for connection management
-    public static Connection getConnection() {
-        if (conn == null) {
+    public static void configure(Settings newSettings) {
+        closeConnection();
+        synchronized (DatabaseHelper.class) {
+            settings = newSettings;
+        }
+    }
+
+    public static synchronized Settings getSettings() {
+        return settings;
+    }
+
+    // Singleton pattern for the writer connection - it is reopened if it was closed
+    public static synchronized Connection getConnection() {
+        if (conn == null || isClosed(conn)) {
             try {
-                // Load SQLite JDBC driver
-                Class.forName("org.sqlite.JDBC");
-                conn = DriverManager.getConnection(DB_URL);
-                System.out.println("Connection established!");
-            } catch (SQLException | ClassNotFoundException e) {
-                e.printStackTrace();
+                conn = open(false);
+                System.err.println("Connection established!"); // stderr, so it never mixes into scripted output
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not open the database at " + settings.getUrl(), e);
             }
         }
         return conn;
     }
 
-    // Close the connection if it's open
-    public static void closeConnection() {
-        if (conn != null) {
+    private static Connection open(boolean readOnly) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(readOnly);
+        config.setBusyTimeout(settings.getBusyTimeout());
+        Connection connection = DriverManager.getConnection(settings.getUrl(), config.toProperties());
+
+        try (Statement stmt = connection.createStatement()) {
+            if (!readOnly) {
+                // only takes effect on a new database, before its first table - see TaskDao.enableIncrementalVacuum for old ones
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                // WAL is remembered in the database file, so only the writer has to turn it on
+                stmt.execute("PRAGMA journal_mode = WAL");
+                stmt.execute("PRAGMA synchronous = " + settings.getSynchronous());
+            }
+            stmt.execute("PRAGMA cache_size = " + settings.getCacheSize());
+            stmt.execute("PRAGMA mmap_size = " + settings.getMmapSize());
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    // runs work on the writer connection, one thread at a time
+    public static <T> T write(SqlWork<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            return work.run(writer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // runs work on the writer connection inside one transaction - it is committed when work returns and rolled back
+    // if it throws. Calling this again from inside work just joins the transaction that is already open.
+    public static <T> T transaction(SqlWork<T> work) throws SQLException {
+        return write(statements -> {
+            Connection connection = statements.connection();
+            if (!connection.getAutoCommit()) {
+                return work.run(statements);
+            }
+
+            connection.setAutoCommit(false);
             try {
-                conn.close();
-                conn = null; // Set to null after closing to avoid reuse
-                System.out.println("Connection closed!");
-            } catch (SQLException e) {
-                e.printStackTrace();
+                T result = work.run(statements);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    // runs work on a read-only connection from the pool, waiting if every reader is busy
+    public static <T> T read(SqlWork<T> work) throws SQLException {
+        try (Lease lease = openReader()) {
+            return work.run(lease.statements());
+        }
+    }
+
+    // a read-only connection that stays borrowed until close() is called, for results that are read bit by bit
+    // after the method that started the query has returned. It must be closed by the thread that opened it.
+    public static Lease openReader() throws SQLException {
+        // inside a write or transaction the reader has to see the changes that aren't committed yet
+        if (writeLock.isHeldByCurrentThread()) {
+            writeLock.lock();
+            return new Lease(writer, true);
+        }
+        StatementCache reader = borrowReader();
+        if (reader == null) {
+            writeLock.lock();
+            return new Lease(writer, true);
+        }
+        return new Lease(reader, false);
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final StatementCache statements;
+        private final boolean onWriter;
+        private boolean closed;
+
+        private Lease(StatementCache statements, boolean onWriter) {
+            this.statements = statements;
+            this.onWriter = onWriter;
+        }
+
+        public StatementCache statements() {
+            return statements;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (onWriter) {
+                writeLock.unlock();
+            } else {
+                returnReader(statements);
+            }
+        }
+    }
+
+    // returns null when the pool is configured without readers
+    private static StatementCache borrowReader() throws SQLException {
+        while (true) {
+            StatementCache reader = idleReaders.pollFirst();
+            if (reader != null) {
+                return reader;
+            }
+
+            synchronized (DatabaseHelper.class) {
+                if (settings.getReaders() == 0) {
+                    return null;
+                }
+                if (allReaders.size() < settings.getReaders()) {
+                    getConnection(); // the writer creates the file and turns on WAL before any reader opens it
+                    Connection readerConn = open(true);
+                    reader = new StatementCache(() -> readerConn);
+                    allReaders.add(reader);
+                    return reader;
+                }
             }
+
+            try {
+                // wait for a reader to come back, then check again in case the pool was closed in the meantime
+                reader = idleReaders.pollFirst(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (reader != null) {
+                return reader;
+            }
+        }
+    }
+
+    private static void returnReader(StatementCache reader) {
+        synchronized (DatabaseHelper.class) {
+            // a reader from before the last closeConnection is no longer part of the pool
+            if (allReaders.contains(reader)) {
+                idleReaders.offerFirst(reader);
+                return;
+            }
+        }
+        closeQuietly(reader);
+    }
+
+    // total hits and misses over the writer's and every reader's prepared statement cache
+    public static synchronized long[] statementCacheCounts() {
+        long hits = writer.getHits();
+        long misses = writer.getMisses();
+        for (StatementCache reader : allReaders) {
+            hits += reader.getHits();
+            misses += reader.getMisses();
+        }
+        return new long[]{hits, misses};
+    }
+
+    // Close the writer and every reader. Readers that are in use are closed when they are given back.
+    public static void closeConnection() {
+        writeLock.lock();
+        try {
+            synchronized (DatabaseHelper.class) {
+                StatementCache reader;
+                while ((reader = idleReaders.pollFirst()) != null) {
+                    closeQuietly(reader);
+                }
+                allReaders.clear();
+
+                writer.invalidate();
+                if (conn != null) {
+                    try {
+                        conn.close();
+                        System.err.println("Connection closed!");
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Could not close the database connection", e);
+                    } finally {
+                        conn = null; // Set to null after closing to avoid reuse
+                    }
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void closeQuietly(StatementCache reader) {
+        try {
+            Connection readerConn = reader.connection();
+            reader.invalidate();
+            readerConn.close();
+        } catch (SQLException e) {
+            // already closed
         }
     }
 
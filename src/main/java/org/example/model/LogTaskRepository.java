@@ -0,0 +1,838 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// a TaskRepository for write-heavy use without SQLite. Tasks are fixed-size records appended to one file that is
+// memory-mapped in 64 MB segments, so a write is a few stores into memory and never a system call:
+//   - an add appends a record, an update appends a new version of the record, a delete appends a tombstone
+//   - an array indexed by task id holds the file offset of each task's latest record, rebuilt by reading the file
+//     once on startup
+//   - the records a later one replaced are dead space; a background thread rewrites the file without them once they
+//     outnumber the live ones (compaction)
+// Layout: record 0 is the header (magic, format version, record size, next id). Each record is
+//   id (int) | due date as epoch day (int) | task version (int) | priority (byte) | flags (byte) |
+//   title length (short) | title (UTF-8) | recurrence, if the task repeats
+// and the id is written last, so a record cut off by a crash still reads as 0 - the end of the log.
+// Format 1 had the due date as a long and no task version; such files are converted in place when opened.
+// Changes reach the disk when the OS writes the pages back; inTransaction, the bulk changes and close() force them.
+// There is no rollback - inTransaction only groups the force.
+// The Recurrence of a recurring task goes in the free bytes after its title - frequency (byte) | interval (short) |
+// until as epoch day (int, NO_END for none) - and the RECURRING flag says it is there, so the files written before
+// are read as they are. Its title has RECURRENCE_BYTES less room. Single occurrences can't be marked completed here.
+public class LogTaskRepository implements TaskRepository {
+    public static final int RECORD_SIZE = 256;
+    private static final int FIXED_BYTES = 16;
+    public static final int MAX_TITLE_BYTES = RECORD_SIZE - FIXED_BYTES;
+    private static final int SEGMENT_SIZE = 64 << 20; // a whole number of records, so no record crosses two segments
+    private static final int MAGIC = 0x5441534B; // "TASK"
+    private static final int VERSION = 2;
+    private static final byte COMPLETED = 1;
+    private static final byte DELETED = 2;
+    private static final byte RECURRING = 4;
+    private static final int RECURRENCE_BYTES = 7;
+    private static final int NO_END = Integer.MIN_VALUE;
+    // compaction starts once there are more dead records than this and than live ones
+    private static final long MIN_DEAD_FOR_COMPACTION = 10_000;
+
+    private final Path file;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactor;
+    private final long compactSeconds;
+    private boolean started; // guarded by this
+
+    // everything below is guarded by lock
+    private FileChannel channel;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long end; // where the next record goes
+    private int nextId;
+    private long[] offsets = new long[1024]; // by task id, 0 means no such task
+    private int live;
+    private long dead;
+    private int firstDirtySegment = Integer.MAX_VALUE;
+
+    public LogTaskRepository(Path file) throws IOException {
+        this(file, Long.getLong("tasktracker.log.compactSeconds", 30));
+    }
+
+    // compactSeconds is how often the background thread checks whether to compact once start() is called, 0 turns it off
+    public LogTaskRepository(Path file, long compactSeconds) throws IOException {
+        this.file = file;
+        this.compactSeconds = compactSeconds;
+        open();
+        if (compactSeconds > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "task-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            compactor = null;
+        }
+    }
+
+    // starts the background compaction, if there is one. Kept out of the constructor so the compactor thread never
+    // sees a repository that is still being built. Returns this, for new LogTaskRepository(file).start().
+    public synchronized LogTaskRepository start() {
+        if (compactor != null && !started) {
+            compactor.scheduleWithFixedDelay(this::compactIfWorthIt, compactSeconds, compactSeconds, TimeUnit.SECONDS);
+            started = true;
+        }
+        return this;
+    }
+
+    // ---- writes ----
+
+    @Override
+    public void addTask(Task task) {
+        lock.writeLock().lock();
+        try {
+            int id = nextId;
+            append(id, 1, task.getTitle(), task.getDueDate(), task.getPriority(), task.isCompleted(),
+                    task.getRecurrence(), false);
+            nextId++;
+            header().putInt(12, nextId);
+            task.setId(id);
+            task.setVersion(1);
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // same as a failed INSERT - the id stays 0
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int addTasks(Collection<Task> tasks) {
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            for (Task task : tasks) {
+                addTask(task);
+                if (task.getId() > 0) {
+                    added++;
+                }
+            }
+            force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean inTransaction(Runnable work) {
+        lock.writeLock().lock();
+        try {
+            work.run();
+            force();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public WriteResult compareAndUpdate(Task task) {
+        lock.writeLock().lock();
+        try {
+            Task current = read(task.getId());
+            if (current == null) {
+                return WriteResult.NOT_FOUND;
+            }
+            if (task.getVersion() != 0 && task.getVersion() != current.getVersion()) {
+                return WriteResult.CONFLICT;
+            }
+            int version = current.getVersion() + 1;
+            // only the changed fields are taken from task, like the UPDATE in TaskDao
+            if (task.hasChanges()) {
+                for (Task.Field field : task.getChangedFields()) {
+                    switch (field) {
+                        case TITLE -> current.setTitle(task.getTitle());
+                        case DUE_DATE -> current.setDueDate(task.getDueDate());
+                        case PRIORITY -> current.setPriority(task.getPriority());
+                        case COMPLETED -> current.setCompleted(task.isCompleted());
+                        case RECURRENCE -> current.setRecurrence(task.getRecurrence());
+                    }
+                }
+            } else {
+                current = task;
+            }
+            append(task.getId(), version, current.getTitle(), current.getDueDate(), current.getPriority(),
+                    current.isCompleted(), current.getRecurrence(), false);
+            task.setVersion(version);
+            task.clearChanges();
+            return WriteResult.DONE;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return WriteResult.FAILED;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public WriteResult compareAndDelete(int id, int expectedVersion) {
+        lock.writeLock().lock();
+        try {
+            long offset = offsetOf(id);
+            if (offset == 0) {
+                return WriteResult.NOT_FOUND;
+            }
+            if (expectedVersion != 0 && expectedVersion != segment(offset).getInt(local(offset) + 8)) {
+                return WriteResult.CONFLICT;
+            }
+            append(id, 0, "", LocalDate.ofEpochDay(0), 0, false, null, true);
+            return WriteResult.DONE;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return WriteResult.FAILED;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int markCompleted(Collection<Integer> ids, boolean completed) {
+        lock.writeLock().lock();
+        try {
+            int changed = 0;
+            for (int id : ids) {
+                Task task = read(id);
+                if (task != null) {
+                    task.setCompleted(completed);
+                    changed += updateTask(task) ? 1 : 0;
+                }
+            }
+            force();
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int reprioritize(TaskQuery query, int newPriority) {
+        lock.writeLock().lock();
+        try {
+            int changed = 0;
+            for (Task task : query(query)) {
+                task.setPriority(newPriority);
+                changed += updateTask(task) ? 1 : 0;
+            }
+            force();
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteTasks(Collection<Integer> ids) {
+        lock.writeLock().lock();
+        try {
+            int deleted = 0;
+            for (int id : ids) {
+                deleted += deleteTask(id) ? 1 : 0;
+            }
+            force();
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- reads ----
+
+    @Override
+    public Task filterTasksById(int id) {
+        lock.readLock().lock();
+        try {
+            return read(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        List<Task> tasks = new ArrayList<>();
+        forEachTask(tasks::add);
+        return tasks;
+    }
+
+    // only the ids and due dates are sorted up front, each task is read from the file as it is handed to action.
+    // The lock isn't held while action runs, so action may change tasks too.
+    @Override
+    public long forEachTask(Consumer<? super Task> action) {
+        long[] keys;
+        lock.readLock().lock();
+        try {
+            keys = new long[live];
+            int count = 0;
+            for (int id = 1; id < nextId; id++) {
+                long offset = offsetOf(id);
+                if (offset != 0) {
+                    keys[count++] = dateKey(segment(offset).getInt(local(offset) + 4), id);
+                }
+            }
+            keys = Arrays.copyOf(keys, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(keys);
+
+        long handed = 0;
+        for (long key : keys) {
+            Task task = filterTasksById((int) key);
+            if (task != null) { // it may have been deleted in the meantime
+                action.accept(task);
+                handed++;
+            }
+        }
+        return handed;
+    }
+
+    @Override
+    public List<Task> getTasksPage(LocalDate afterDueDate, int afterId, int limit) {
+        long after = afterDueDate == null ? Long.MIN_VALUE : dateKey(afterDueDate.toEpochDay(), afterId);
+        // the limit smallest keys after the given one, with the largest on top of the heap so it can be swapped out
+        PriorityQueue<Long> page = new PriorityQueue<>(Math.max(1, limit), Comparator.reverseOrder());
+        lock.readLock().lock();
+        try {
+            for (int id = 1; id < nextId && limit > 0; id++) {
+                long offset = offsetOf(id);
+                if (offset == 0) {
+                    continue;
+                }
+                long key = dateKey(segment(offset).getInt(local(offset) + 4), id);
+                if (key <= after) {
+                    continue;
+                }
+                if (page.size() < limit) {
+                    page.add(key);
+                } else if (key < page.peek()) {
+                    page.poll();
+                    page.add(key);
+                }
+            }
+            long[] keys = page.stream().mapToLong(Long::longValue).sorted().toArray();
+            List<Task> tasks = new ArrayList<>(keys.length);
+            for (long key : keys) {
+                tasks.add(read((int) key));
+            }
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Task> filterTasksByDate(LocalDate date) {
+        return query(new TaskQuery().dueBetween(date, date));
+    }
+
+    @Override
+    public List<Task> filterTasksByPriority(int priority) {
+        return query(new TaskQuery().priorities(priority));
+    }
+
+    @Override
+    public List<Task> filterTasksByCompletionStatus(boolean isCompleted) {
+        return query(new TaskQuery().completed(isCompleted));
+    }
+
+    // every live record is checked - the fixed fields are read straight from the file, and only the matching
+    // records have their title decoded
+    @Override
+    public List<Task> query(TaskQuery query) {
+        List<Task> tasks = new ArrayList<>();
+        long from = query.getDueFrom() == null ? Long.MIN_VALUE : query.getDueFrom().toEpochDay();
+        long to = query.getDueTo() == null ? Long.MAX_VALUE : query.getDueTo().toEpochDay();
+        lock.readLock().lock();
+        try {
+            for (int id = 1; id < nextId; id++) {
+                long offset = offsetOf(id);
+                if (offset == 0) {
+                    continue;
+                }
+                MappedByteBuffer segment = segment(offset);
+                int local = local(offset);
+                int dueDay = segment.getInt(local + 4);
+                int priority = segment.get(local + 12);
+                boolean completed = (segment.get(local + 13) & COMPLETED) != 0;
+                if (dueDay < from || dueDay > to
+                        || (!query.getPriorities().isEmpty() && !query.getPriorities().contains(priority))
+                        || (query.getCompleted() != null && query.getCompleted() != completed)) {
+                    continue;
+                }
+                Task task = decode(id, segment, local);
+                if (query.matches(task)) {
+                    tasks.add(task);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        tasks.sort(query.getOrder().comparator());
+        if (query.getLimit() > 0 && tasks.size() > query.getLimit()) {
+            return new ArrayList<>(tasks.subList(0, query.getLimit()));
+        }
+        return tasks;
+    }
+
+    @Override
+    public List<Task> topUrgent(int k, Urgency urgency, LocalDate today) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<Task> order = urgency.mostUrgentFirst(today);
+        PriorityQueue<Task> best = new PriorityQueue<>(k + 1, order.reversed());
+        for (Task task : filterTasksByCompletionStatus(false)) {
+            if (best.size() < k) {
+                best.add(task);
+            } else if (order.compare(task, best.peek()) < 0) {
+                best.poll();
+                best.add(task);
+            }
+        }
+        List<Task> tasks = new ArrayList<>(best);
+        tasks.sort(order);
+        return tasks;
+    }
+
+    // one pass over the fixed fields of every live record, no title is decoded
+    @Override
+    public TaskSummary summary(LocalDate today) {
+        long todayDay = today.toEpochDay();
+        long weekEnd = TaskSummary.weekEnd(today).toEpochDay();
+        int[] open = new int[4];
+        int[] completed = new int[4];
+        int overdue = 0;
+        int dueToday = 0;
+        int dueThisWeek = 0;
+        lock.readLock().lock();
+        try {
+            for (int id = 1; id < nextId; id++) {
+                long offset = offsetOf(id);
+                if (offset == 0) {
+                    continue;
+                }
+                MappedByteBuffer segment = segment(offset);
+                int local = local(offset);
+                int priority = segment.get(local + 12);
+                if (priority < 1 || priority > 3) {
+                    continue;
+                }
+                if ((segment.get(local + 13) & COMPLETED) != 0) {
+                    completed[priority]++;
+                    continue;
+                }
+                open[priority]++;
+                int dueDay = segment.getInt(local + 4);
+                if (dueDay < todayDay) {
+                    overdue++;
+                } else if (dueDay <= weekEnd) {
+                    dueThisWeek++;
+                    dueToday += dueDay == todayDay ? 1 : 0;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new TaskSummary(today, open, completed, overdue, dueToday, dueThisWeek);
+    }
+
+    // only the flags are checked, the few recurring tasks are decoded
+    @Override
+    public List<Task> getRecurringTasks() {
+        List<Task> tasks = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int id = 1; id < nextId; id++) {
+                long offset = offsetOf(id);
+                if (offset != 0 && (segment(offset).get(local(offset) + 13) & RECURRING) != 0) {
+                    tasks.add(decode(id, segment(offset), local(offset)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return tasks;
+    }
+
+    // there is no full-text index in the log, TaskManager uses its TitleIndex instead
+    @Override
+    public boolean isTitleSearchAvailable() {
+        return false;
+    }
+
+    @Override
+    public List<Task> searchByTitle(String text, int limit) {
+        return new ArrayList<>();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // records that were replaced or deleted and are only waiting for compaction
+    public long deadRecords() {
+        lock.readLock().lock();
+        try {
+            return dead;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---- compaction ----
+
+    private void compactIfWorthIt() {
+        boolean worthIt;
+        lock.readLock().lock();
+        try {
+            worthIt = dead > MIN_DEAD_FOR_COMPACTION && dead > live;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (worthIt) {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace(); // the old file is still complete, so it is just used as it is
+            }
+        }
+    }
+
+    // rewrites the file with only the latest record of every task. Records are never changed once written, so the
+    // live ones are copied without holding the lock - writers only have to wait while the few records appended
+    // during the copy are carried over and the new file replaces the old one.
+    public synchronized void compact() throws IOException {
+        long[] snapshot;
+        long snapshotEnd;
+        MappedByteBuffer[] snapshotSegments;
+        lock.readLock().lock();
+        try {
+            snapshot = Arrays.copyOf(offsets, nextId);
+            snapshotEnd = end;
+            snapshotSegments = segments;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            buffer.put(new byte[RECORD_SIZE]); // the header, written at the end
+            long[] newOffsets = new long[offsets.length];
+            long position = RECORD_SIZE;
+            for (int id = 1; id < snapshot.length; id++) {
+                if (snapshot[id] != 0) {
+                    copyRecord(snapshotSegments, snapshot[id], buffer, out);
+                    newOffsets[id] = position;
+                    position += RECORD_SIZE;
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                // the records written since the snapshot go across as they are, in order
+                long[] tailOffsets = new long[Math.max(newOffsets.length, offsets.length)];
+                System.arraycopy(newOffsets, 0, tailOffsets, 0, newOffsets.length);
+                int newLive = 0;
+                for (long offset : newOffsets) {
+                    newLive += offset != 0 ? 1 : 0;
+                }
+                long newDead = 0;
+                for (long offset = snapshotEnd; offset < end; offset += RECORD_SIZE) {
+                    copyRecord(segments, offset, buffer, out);
+                    int id = segment(offset).getInt(local(offset));
+                    if ((segment(offset).get(local(offset) + 13) & DELETED) != 0) {
+                        if (tailOffsets[id] != 0) {
+                            newLive--;
+                            newDead++;
+                        }
+                        tailOffsets[id] = 0;
+                        newDead++;
+                    } else {
+                        if (tailOffsets[id] != 0) {
+                            newDead++;
+                        } else {
+                            newLive++;
+                        }
+                        tailOffsets[id] = position;
+                    }
+                    position += RECORD_SIZE;
+                }
+                drain(buffer, out);
+                ByteBuffer header = ByteBuffer.allocate(16);
+                header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(nextId).flip();
+                out.write(header, 0);
+                out.force(true);
+
+                force();
+                channel.close();
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                segments = new MappedByteBuffer[0];
+                mapUpTo(Math.max(channel.size(), position));
+                end = position;
+                offsets = tailOffsets;
+                live = newLive;
+                dead = newDead;
+                firstDirtySegment = Integer.MAX_VALUE;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void copyRecord(MappedByteBuffer[] from, long offset, ByteBuffer buffer, FileChannel out) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            drain(buffer, out);
+        }
+        MappedByteBuffer segment = from[(int) (offset / SEGMENT_SIZE)];
+        buffer.put(segment.slice(local(offset), RECORD_SIZE));
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            force();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- file access, callers hold the lock ----
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean isNew = channel.size() == 0;
+        mapUpTo(Math.max(channel.size(), RECORD_SIZE));
+        MappedByteBuffer header = header();
+        if (isNew) {
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, 1);
+        } else if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException(file + " is not a task log");
+        } else if (header.getInt(4) == 1) {
+            convertFromFormat1();
+        }
+        nextId = header.getInt(12);
+
+        // replay the log - the last record of every id wins
+        long offset = RECORD_SIZE;
+        long capacity = (long) segments.length * SEGMENT_SIZE;
+        while (offset < capacity) {
+            int id = segment(offset).getInt(local(offset));
+            if (id == 0) {
+                break;
+            }
+            ensureIndex(id);
+            boolean deleted = (segment(offset).get(local(offset) + 13) & DELETED) != 0;
+            if (offsets[id] != 0) {
+                dead++;
+                if (deleted) {
+                    live--;
+                }
+            } else if (!deleted) {
+                live++;
+            }
+            if (deleted) {
+                dead++;
+                offsets[id] = 0;
+            } else {
+                offsets[id] = offset;
+            }
+            nextId = Math.max(nextId, id + 1);
+            offset += RECORD_SIZE;
+        }
+        end = offset;
+    }
+
+    // format 1 records had the due date as a long at 4 - it always fits in an int, which leaves room for the task
+    // version at 8. Every task starts at version 1.
+    private void convertFromFormat1() {
+        long capacity = (long) segments.length * SEGMENT_SIZE;
+        for (long offset = RECORD_SIZE; offset < capacity; offset += RECORD_SIZE) {
+            MappedByteBuffer segment = segment(offset);
+            int local = local(offset);
+            if (segment.getInt(local) == 0) {
+                break;
+            }
+            int dueDay = Math.toIntExact(segment.getLong(local + 4));
+            segment.putInt(local + 4, dueDay).putInt(local + 8, 1);
+        }
+        header().putInt(4, VERSION);
+        firstDirtySegment = 0;
+        force();
+    }
+
+    private void append(int id, int version, String title, LocalDate dueDate, int priority, boolean completed,
+                        Recurrence recurrence, boolean deleted) {
+        byte[] titleBytes = title.getBytes(StandardCharsets.UTF_8);
+        int maxTitleBytes = recurrence == null ? MAX_TITLE_BYTES : MAX_TITLE_BYTES - RECURRENCE_BYTES;
+        if (titleBytes.length > maxTitleBytes) {
+            throw new IllegalArgumentException("Titles are limited to " + maxTitleBytes + " bytes in the task log"
+                    + (recurrence == null ? "" : " for a recurring task"));
+        }
+        if (recurrence != null && recurrence.getInterval() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Intervals are limited to " + Short.MAX_VALUE + " in the task log");
+        }
+        try {
+            mapUpTo(end + RECORD_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MappedByteBuffer segment = segment(end);
+        int local = local(end);
+        segment.putInt(local + 4, Math.toIntExact(dueDate.toEpochDay()));
+        segment.putInt(local + 8, version);
+        segment.put(local + 12, (byte) priority);
+        segment.put(local + 13, (byte) ((completed ? COMPLETED : 0) | (deleted ? DELETED : 0)
+                | (recurrence != null ? RECURRING : 0)));
+        segment.putShort(local + 14, (short) titleBytes.length);
+        segment.put(local + FIXED_BYTES, titleBytes);
+        if (recurrence != null) {
+            int at = local + FIXED_BYTES + titleBytes.length;
+            segment.put(at, (byte) recurrence.getFrequency().ordinal());
+            segment.putShort(at + 1, (short) recurrence.getInterval());
+            segment.putInt(at + 3, recurrence.getUntil() == null ? NO_END : Math.toIntExact(recurrence.getUntil().toEpochDay()));
+        }
+        segment.putInt(local, id); // last, so the record only counts once it is complete
+        firstDirtySegment = Math.min(firstDirtySegment, (int) (end / SEGMENT_SIZE));
+
+        ensureIndex(id);
+        if (offsets[id] != 0) {
+            dead++;
+            if (deleted) {
+                live--;
+            }
+        } else if (!deleted) {
+            live++;
+        }
+        if (deleted) {
+            dead++;
+        }
+        offsets[id] = deleted ? 0 : end;
+        end += RECORD_SIZE;
+    }
+
+    private Task read(int id) {
+        long offset = offsetOf(id);
+        return offset == 0 ? null : decode(id, segment(offset), local(offset));
+    }
+
+    private static Task decode(int id, MappedByteBuffer segment, int local) {
+        int dueDay = segment.getInt(local + 4);
+        int priority = segment.get(local + 12);
+        byte flags = segment.get(local + 13);
+        byte[] title = new byte[segment.getShort(local + 14)];
+        segment.get(local + FIXED_BYTES, title);
+        Recurrence recurrence = null;
+        if ((flags & RECURRING) != 0) {
+            int at = local + FIXED_BYTES + title.length;
+            int until = segment.getInt(at + 3);
+            recurrence = new Recurrence(Recurrence.Frequency.values()[segment.get(at)], segment.getShort(at + 1),
+                    until == NO_END ? null : LocalDate.ofEpochDay(until));
+        }
+        Task task = new Task(id, new String(title, StandardCharsets.UTF_8), LocalDate.ofEpochDay(dueDay), priority,
+                (flags & COMPLETED) != 0, recurrence);
+        task.setVersion(segment.getInt(local + 8));
+        return task;
+    }
+
+    private long offsetOf(int id) {
+        return id > 0 && id < offsets.length ? offsets[id] : 0;
+    }
+
+    private void ensureIndex(int id) {
+        if (id >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(id + 1, offsets.length * 2));
+        }
+    }
+
+    private void mapUpTo(long size) throws IOException {
+        int needed = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        if (needed <= segments.length) {
+            return;
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, needed);
+        for (int i = segments.length; i < needed; i++) {
+            // mapping past the end of the file makes the file that long - the unwritten part reads as zeros
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, SEGMENT_SIZE);
+        }
+        segments = grown;
+    }
+
+    private void force() {
+        for (int i = firstDirtySegment; i < segments.length; i++) {
+            segments[i].force();
+        }
+        if (firstDirtySegment != Integer.MAX_VALUE) {
+            header().force();
+        }
+        firstDirtySegment = Integer.MAX_VALUE;
+    }
+
+    private MappedByteBuffer header() {
+        return segments[0];
+    }
+
+    private MappedByteBuffer segment(long offset) {
+        return segments[(int) (offset / SEGMENT_SIZE)];
+    }
+
+    private static int local(long offset) {
+        return (int) (offset % SEGMENT_SIZE);
+    }
+
+    // due date in the high half and id in the low half, so sorting the keys sorts by due date and then id
+    private static long dateKey(long dueDay, int id) {
+        return (dueDay << 32) | (id & 0xFFFFFFFFL);
+    }
+}
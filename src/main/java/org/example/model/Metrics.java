@@ -0,0 +1,133 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// call counts, rows, errors and latencies for every TaskDao and TaskManager operation. It is off unless the program
+// is started with -Dtasktracker.metrics=true (or it is turned on from the Statistics menu); while it is off,
+// start() returns 0 and record() returns straight away, so the only cost is reading one boolean.
+//
+// Usage:  long start = Metrics.start();  ...  Metrics.record("TaskDao.getAllTasks", start, rows, failed);
+public class Metrics {
+    private static volatile boolean enabled = Boolean.getBoolean("tasktracker.metrics");
+    private static final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void record(String operation, long start, int rows, boolean failed) {
+        if (start == 0) {
+            return; // metrics were off when the call started
+        }
+        long nanos = System.nanoTime() - start;
+        operations.computeIfAbsent(operation, OperationStats::new).record(nanos, rows, failed);
+
+        TaskOperationEvent event = new TaskOperationEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.elapsedNanos = nanos;
+            event.rows = rows;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    // rows for a result - list sizes, 1 or 0 for a single task, 1 or 0 for true/false
+    public static int rowsOf(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Integer count) {
+            return count;
+        }
+        if (result instanceof Boolean changed) {
+            return changed ? 1 : 0;
+        }
+        return result == null ? 0 : 1;
+    }
+
+    // every operation seen so far, sorted by name
+    public static List<OperationStats> snapshot() {
+        return new ArrayList<>(new TreeMap<>(operations).values());
+    }
+
+    public static void reset() {
+        operations.values().forEach(OperationStats::reset);
+    }
+
+    // the statistics as a text table, used by the Statistics menu and the dump file
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-42s %10s %12s %8s %10s %10s %10s %10s%n",
+                "Operation", "Calls", "Rows", "Errors", "Avg us", "p50 us", "p99 us", "Max us"));
+        for (OperationStats stats : snapshot()) {
+            if (stats.getCalls() == 0) {
+                continue;
+            }
+            sb.append(String.format("%-42s %10d %12d %8d %10.1f %10.1f %10.1f %10.1f%n",
+                    stats.getName(), stats.getCalls(), stats.getRows(), stats.getErrors(),
+                    stats.getAverageNanos() / 1000.0, stats.getPercentileNanos(50) / 1000.0,
+                    stats.getPercentileNanos(99) / 1000.0, stats.getMaxNanos() / 1000.0));
+        }
+        long[] cache = DatabaseHelper.statementCacheCounts();
+        sb.append(String.format("Prepared statement cache: %d hits, %d misses%n", cache[0], cache[1]));
+        return sb.toString();
+    }
+
+    // writes report() to file every interval, replacing the previous dump. Turns metrics on.
+    public static synchronized void startDumping(Path file, long intervalSeconds) {
+        stopDumping();
+        enabled = true;
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopDumping() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    private static void dump(Path file) {
+        try {
+            // written next to the target and then moved over it, so a reader never sees half a file
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, "Task Tracker statistics at " + LocalDateTime.now() + "\n" + report(),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write statistics to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// counters for one operation: calls, rows, errors and a latency histogram. The histogram has one bucket per power of
+// two nanoseconds, which is coarse but costs one array increment per call and never needs resizing.
+public class OperationStats {
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    public OperationStats(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos, int rowCount, boolean failed) {
+        calls.increment();
+        rows.add(rowCount);
+        if (failed) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+    }
+
+    public String getName() { return name; }
+
+    public long getCalls() { return calls.sum(); }
+
+    public long getRows() { return rows.sum(); }
+
+    public long getErrors() { return errors.sum(); }
+
+    public long getMaxNanos() { return maxNanos.get(); }
+
+    public long getAverageNanos() {
+        long count = calls.sum();
+        return count == 0 ? 0 : totalNanos.sum() / count;
+    }
+
+    // an upper bound for the given percentile (0-100), taken from the histogram bucket it falls into
+    public long getPercentileNanos(double percentile) {
+        long count = 0;
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = histogram.get(i);
+            count += buckets[i];
+        }
+        long target = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= target && buckets[i] > 0) {
+                return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return 0;
+    }
+
+    void reset() {
+        calls.reset();
+        rows.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+// how a recurring task repeats: every interval days, weeks or months, starting on the task's due date and going on
+// until the until date (included), or forever if it is null. A recurring task is stored as one row however often it
+// repeats - its occurrences are only worked out for the dates a listing asks for, see occurrencesBetween.
+// Stored as text like "WEEKLY/2" or "MONTHLY/1/2025-12-31", see toString and parse.
+public final class Recurrence {
+
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    private final Frequency frequency;
+    private final int interval;
+    private final LocalDate until;
+
+    public Recurrence(Frequency frequency, int interval, LocalDate until) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1");
+        }
+        this.frequency = Objects.requireNonNull(frequency);
+        this.interval = interval;
+        this.until = until;
+    }
+
+    public Recurrence(Frequency frequency) {
+        this(frequency, 1, null);
+    }
+
+    public Frequency getFrequency() { return frequency; }
+
+    public int getInterval() { return interval; }
+
+    public LocalDate getUntil() { return until; }
+
+    // the occurrences between from and to (both included) of a task whose first occurrence is start, in date order.
+    // It jumps straight to the first one on or after from, so the cost only depends on how many are in the range.
+    // A monthly task started on the 31st falls on the last day of the shorter months.
+    public List<LocalDate> occurrencesBetween(LocalDate start, LocalDate from, LocalDate to) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate last = until != null && until.isBefore(to) ? until : to;
+        if (from.isBefore(start)) {
+            from = start;
+        }
+        if (last.isBefore(from)) {
+            return dates;
+        }
+        // every step is counted from start instead of from the one before, so the months don't drift to the 28th
+        long step = unit().between(start, from) / interval;
+        for (LocalDate date = nth(start, step); !date.isAfter(last); date = nth(start, ++step)) {
+            if (!date.isBefore(from)) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    // true if a task whose first occurrence is start has one on date
+    public boolean occursOn(LocalDate start, LocalDate date) {
+        return !occurrencesBetween(start, date, date).isEmpty();
+    }
+
+    // the step-th occurrence of a task whose first occurrence is start (0 is start itself) - past until or not
+    public LocalDate nth(LocalDate start, long step) {
+        return start.plus(step * interval, unit());
+    }
+
+    private ChronoUnit unit() {
+        return switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS;
+            case WEEKLY -> ChronoUnit.WEEKS;
+            case MONTHLY -> ChronoUnit.MONTHS;
+        };
+    }
+
+    // the other way round from toString - the interval and until can be left out, e.g. "weekly" or "daily/3"
+    public static Recurrence parse(String text) {
+        String[] parts = text.trim().split("/");
+        if (parts.length > 3) {
+            throw new IllegalArgumentException("Not a recurrence: " + text);
+        }
+        try {
+            Frequency frequency = Frequency.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            int interval = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            LocalDate until = parts.length > 2 ? LocalDate.parse(parts[2].trim()) : null;
+            return new Recurrence(frequency, interval, until);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Not a recurrence: " + text, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return frequency + "/" + interval + (until == null ? "" : "/" + until);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Recurrence other)) {
+            return false;
+        }
+        return frequency == other.frequency && interval == other.interval && Objects.equals(until, other.until);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(frequency, interval, until);
+    }
+}
@@ -0,0 +1,245 @@
+package org.example.model;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// this keeps the database layout up to date. Every change to the tasks table is a numbered migration, and the
+// schema_version table remembers which ones have already run, so an old tasks.db is upgraded in place on startup.
+public class SchemaMigrator {
+
+    // one step of the upgrade - each runs in its own transaction together with its schema_version row
+    private interface Migration {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    // today as an epoch day in SQL, in local time like LocalDate.now()
+    private static final String TODAY_SQL = "CAST(julianday('now', 'localtime') - 2440587.5 AS INTEGER)";
+
+    // the order of this list is the version number, never reorder or edit a migration that has been released
+    private static final List<Migration> MIGRATIONS = List.of(
+            // 1: the original table, due dates stored as ISO text
+            stmt -> stmt.execute("CREATE TABLE IF NOT EXISTS tasks (id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "title TEXT NOT NULL," +
+                    "due_date TEXT NOT NULL," +
+                    "priority INTEGER NOT NULL," +
+                    "isCompleted BOOLEAN NOT NULL)"),
+            // 2: due dates become whole days since 1970-01-01 so they compare and sort as plain integers
+            SchemaMigrator::convertDueDateToEpochDay,
+            // 3: indexes for the filters and the date ordering used by the view menu
+            stmt -> {
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_due_date ON tasks (due_date, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_priority ON tasks (priority, due_date)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_completed ON tasks (isCompleted, due_date)");
+                // partial index - only the open tasks, which is what almost every screen asks for
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_open_due ON tasks (due_date, priority) WHERE isCompleted = 0");
+            },
+            // 4: full-text index on the titles, kept in sync by triggers. Skipped if this SQLite was built without
+            // FTS5 - TaskManager then searches with its own in-memory index instead
+            SchemaMigrator::createTitleSearch,
+            // 5: a version per task, bumped by every write, so updates and deletes can check nobody else changed the
+            // task since it was read (optimistic locking). Existing tasks start at 1 like new ones
+            stmt -> stmt.execute("ALTER TABLE tasks ADD COLUMN version INTEGER NOT NULL DEFAULT 1"),
+            // 6: old completed tasks can be moved out of tasks into tasks_archive, see TaskDao.archiveCompleted
+            SchemaMigrator::createArchive,
+            // 7: recurring tasks - one row each however often they repeat, with the occurrences that were marked
+            // completed in task_occurrences, see TaskDao.setOccurrenceCompleted
+            SchemaMigrator::createRecurrence
+    );
+
+
+    private final Connection conn;
+
+    public SchemaMigrator(Connection conn) {
+        this.conn = conn;
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    // runs every migration newer than the stored version, returns the version the database ends up at. Throws if a
+    // migration fails (it is rolled back, the ones before it stay) or if the database isn't what its version says.
+    public int migrate() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (version INTEGER PRIMARY KEY," +
+                    "applied_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        int version = currentVersion();
+        // every migration needs the tasks table, so a database without it is damaged - better to stop here than to
+        // carry on with part of the schema missing
+        if (version > 0 && !tableExists("tasks")) {
+            throw new SQLException("The database is at schema version " + version + " but has no tasks table");
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            conn.setAutoCommit(false);
+            while (version < MIGRATIONS.size()) {
+                try (Statement stmt = conn.createStatement()) {
+                    MIGRATIONS.get(version).apply(stmt);
+                    version++;
+                    stmt.execute("INSERT INTO schema_version (version) VALUES (" + version + ")");
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Schema migration to version " + (version + 1) + " failed: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return version;
+    }
+
+    // true if migration 4 was able to create the full-text index
+    public boolean hasTitleSearch() throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, "tasks_fts", null)) {
+            return rs.next();
+        }
+    }
+
+    public int currentVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private boolean tableExists(String name) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, name, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    // SQLite can't change a column's type, so the table is rebuilt and the text dates are converted on the way across
+    private static void convertDueDateToEpochDay(Statement stmt) throws SQLException {
+        // dropping the old table also drops its AUTOINCREMENT counter, so keep it to not hand out old ids again
+        long sequence = 0;
+        try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'tasks'")) {
+            if (rs.next()) {
+                sequence = rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            // sqlite_sequence only exists once something has been inserted into an AUTOINCREMENT table
+        }
+
+        // julianday() is NULL for text that isn't a date, which the NOT NULL column would only report as a constraint
+        // failure - name the task instead, so it can be fixed by hand
+        try (ResultSet rs = stmt.executeQuery("SELECT id, due_date FROM tasks WHERE julianday(due_date) IS NULL LIMIT 1")) {
+            if (rs.next()) {
+                throw new SQLException("Task " + rs.getInt(1) + " has a due date that isn't a date: '" + rs.getString(2) + "'");
+            }
+        }
+
+        stmt.execute("CREATE TABLE tasks_new (id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "title TEXT NOT NULL," +
+                "due_date INTEGER NOT NULL," +
+                "priority INTEGER NOT NULL," +
+                "isCompleted BOOLEAN NOT NULL)");
+        // julianday() of 1970-01-01 is 2440587.5
+        stmt.execute("INSERT INTO tasks_new (id, title, due_date, priority, isCompleted) " +
+                "SELECT id, title, CAST(julianday(due_date) - 2440587.5 AS INTEGER), priority, isCompleted FROM tasks");
+        stmt.execute("DROP TABLE tasks");
+        stmt.execute("ALTER TABLE tasks_new RENAME TO tasks");
+        raiseTasksSequence(stmt, sequence);
+    }
+
+    // makes sure tasks' AUTOINCREMENT counter is at least sequence, so no id up to it is handed out (again)
+    private static void raiseTasksSequence(Statement stmt, long sequence) throws SQLException {
+        if (sequence > 0) {
+            int updated = stmt.executeUpdate("UPDATE sqlite_sequence SET seq = MAX(seq, " + sequence + ") WHERE name = 'tasks'");
+            if (updated == 0) {
+                stmt.execute("INSERT INTO sqlite_sequence (name, seq) VALUES ('tasks', " + sequence + ")");
+            }
+        }
+    }
+
+    // an external content table - the titles aren't stored twice, tasks_fts only holds the index and reads the text
+    // from tasks. A later migration that rebuilds the tasks table has to create these triggers again.
+    private static void createTitleSearch(Statement stmt) throws SQLException {
+        try {
+            stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS tasks_fts USING fts5(title, content='tasks', content_rowid='id')");
+        } catch (SQLException e) {
+            if (e.getMessage() != null && e.getMessage().contains("no such module")) {
+                return;
+            }
+            throw e;
+        }
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_fts_insert AFTER INSERT ON tasks BEGIN " +
+                "INSERT INTO tasks_fts (rowid, title) VALUES (new.id, new.title); END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_fts_delete AFTER DELETE ON tasks BEGIN " +
+                "INSERT INTO tasks_fts (tasks_fts, rowid, title) VALUES ('delete', old.id, old.title); END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_fts_update AFTER UPDATE OF title ON tasks BEGIN " +
+                "INSERT INTO tasks_fts (tasks_fts, rowid, title) VALUES ('delete', old.id, old.title); " +
+                "INSERT INTO tasks_fts (rowid, title) VALUES (new.id, new.title); END");
+        // index the tasks that are already there
+        stmt.execute("INSERT INTO tasks_fts (tasks_fts) VALUES ('rebuild')");
+    }
+
+    // completed_on is the day a task was marked completed. Triggers keep it up to date, so no write has to know about
+    // it - the UPDATE inside a trigger only touches completed_on, so it doesn't bump the version. Tasks that were
+    // completed before this migration count as completed on the day it ran.
+    // tasks_archive has the same columns plus the day the task was archived. Ids stay unique across both tables since
+    // tasks is AUTOINCREMENT and never hands out an id again - as long as its counter is kept. A tasks table that was
+    // dropped and made again starts counting from 0 while the archive is still there, so the counter is raised to the
+    // archive's highest id here.
+    private static void createArchive(Statement stmt) throws SQLException {
+        stmt.execute("ALTER TABLE tasks ADD COLUMN completed_on INTEGER");
+        stmt.execute("UPDATE tasks SET completed_on = " + TODAY_SQL + " WHERE isCompleted = 1");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_completed_insert AFTER INSERT ON tasks " +
+                "WHEN new.isCompleted = 1 BEGIN " +
+                "UPDATE tasks SET completed_on = " + TODAY_SQL + " WHERE id = new.id; END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_completed_update AFTER UPDATE OF isCompleted ON tasks " +
+                "WHEN new.isCompleted <> old.isCompleted BEGIN " +
+                "UPDATE tasks SET completed_on = CASE WHEN new.isCompleted = 1 THEN " + TODAY_SQL + " END " +
+                "WHERE id = new.id; END");
+        // only the completed tasks, which is all the archiving looks at
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_completed_on ON tasks (completed_on) WHERE isCompleted = 1");
+
+        stmt.execute("CREATE TABLE IF NOT EXISTS tasks_archive (id INTEGER PRIMARY KEY," +
+                "title TEXT NOT NULL," +
+                "due_date INTEGER NOT NULL," +
+                "priority INTEGER NOT NULL," +
+                "isCompleted BOOLEAN NOT NULL," +
+                "version INTEGER NOT NULL," +
+                "completed_on INTEGER," +
+                "archived_on INTEGER NOT NULL)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_archive_due_date ON tasks_archive (due_date, id)");
+        try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM tasks_archive")) {
+            raiseTasksSequence(stmt, rs.next() ? rs.getLong(1) : 0);
+        }
+    }
+
+    // recurrence is Recurrence.toString(), NULL for a task that happens once. An occurrence only gets a row in
+    // task_occurrences once it is marked completed, so a daily task that is never ticked off costs nothing more than
+    // its own row. The trigger takes those rows away with the task, whether it is deleted or archived.
+    private static void createRecurrence(Statement stmt) throws SQLException {
+        stmt.execute("ALTER TABLE tasks ADD COLUMN recurrence TEXT");
+        if (!hasColumn(stmt, "tasks_archive", "recurrence")) {
+            stmt.execute("ALTER TABLE tasks_archive ADD COLUMN recurrence TEXT");
+        }
+        // only the recurring tasks, which TaskManager reads once on startup
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_recurring ON tasks (id) WHERE recurrence IS NOT NULL");
+        stmt.execute("CREATE TABLE IF NOT EXISTS task_occurrences (task_id INTEGER NOT NULL," +
+                "due_date INTEGER NOT NULL," +
+                "PRIMARY KEY (task_id, due_date)) WITHOUT ROWID");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_occurrences_delete AFTER DELETE ON tasks " +
+                "WHEN old.recurrence IS NOT NULL BEGIN " +
+                "DELETE FROM task_occurrences WHERE task_id = old.id; END");
+    }
+
+    // tasks_archive outlives a dropped tasks table, so it can already have the column when the migrations run again
+    private static boolean hasColumn(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equals(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
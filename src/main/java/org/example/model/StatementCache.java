@@ -0,0 +1,89 @@
+package org.example.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// keeps prepared statements open so SQLite only has to parse and plan each query once. The statements belong to one
+// connection - when DatabaseHelper closes or replaces that connection the cached statements are thrown away.
+// Callers must not close the statements they get from here, only their ResultSets.
+public class StatementCache {
+    private final Supplier<Connection> connectionSource;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, PreparedStatement> keyStatements = new HashMap<>();
+    private Connection conn;
+    private long hits;
+    private long misses;
+
+    public StatementCache(Supplier<Connection> connectionSource) {
+        this.connectionSource = connectionSource;
+    }
+
+    // the connection the cached statements were prepared on, reopened through DatabaseHelper if it was closed
+    public Connection connection() throws SQLException {
+        Connection current = connectionSource.get();
+        if (current == null) {
+            throw new SQLException("No database connection available");
+        }
+        if (current != conn) {
+            invalidate();
+            conn = current;
+        }
+        return conn;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return lookup(statements, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    // same as prepare, but getGeneratedKeys() can be used on the statement after an insert
+    public PreparedStatement prepareReturningKeys(String sql) throws SQLException {
+        return lookup(keyStatements, sql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    private PreparedStatement lookup(Map<String, PreparedStatement> cache, String sql, int generatedKeys) throws SQLException {
+        Connection current = connection();
+        PreparedStatement stmt = cache.get(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            hits++;
+            return stmt;
+        }
+        misses++;
+        stmt = current.prepareStatement(sql, generatedKeys);
+        cache.put(sql, stmt);
+        return stmt;
+    }
+
+    // closes every cached statement, they will be prepared again the next time they are asked for
+    public void invalidate() {
+        closeAll(statements);
+        closeAll(keyStatements);
+        conn = null;
+    }
+
+    private void closeAll(Map<String, PreparedStatement> cache) {
+        for (PreparedStatement stmt : cache.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                // the connection is most likely closed already, which closed the statement too
+            }
+        }
+        cache.clear();
+    }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public int size() { return statements.size() + keyStatements.size(); }
+
+    @Override
+    public String toString() {
+        return "Statement cache: " + size() + " statements, " + hits + " hits, " + misses + " misses";
+    }
+}
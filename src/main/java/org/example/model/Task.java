@@ -1,13 +1,25 @@
 package org.example.model;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class Task {
+    // the columns a task can change, used to remember which ones the setters touched so TaskDao.updateTask
+    // only has to write those
+    public enum Field { TITLE, DUE_DATE, PRIORITY, COMPLETED, RECURRENCE }
+
     private int id;
     private String title;
     private LocalDate dueDate;
     private int priority; // e.g., 1 = High, 2 = Medium, 3 = Low
     private boolean completed;
+    // bumped by every write, so a write can tell whether the task changed since it was read. 0 for a task that
+    // wasn't read from storage - updates made with it aren't checked
+    private int version;
+    // null for a task that happens once. A recurring task's due date is its first occurrence, see Recurrence
+    private Recurrence recurrence;
+    private final EnumSet<Field> changed = EnumSet.noneOf(Field.class);
 
     public Task() {
         // Default constructor
@@ -29,6 +41,26 @@ public class Task {
         this.completed = completed;
     }
 
+    public Task(int id, String title, LocalDate dueDate, int priority, boolean completed, Recurrence recurrence) {
+        this(id, title, dueDate, priority, completed);
+        this.recurrence = recurrence;
+    }
+
+    // copy constructor, used when a task is handed out of a cache so the caller can't change the cached one
+    public Task(Task other) {
+        this(other.id, other.title, other.dueDate, other.priority, other.completed, other.recurrence);
+        this.version = other.version;
+    }
+
+    // one occurrence of a recurring task, as a listing shows it: a copy with the occurrence's date as due date and its
+    // own completion status. It keeps the id and version, so editing it edits the recurring task itself
+    public Task occurrence(LocalDate date, boolean completed) {
+        Task occurrence = new Task(this);
+        occurrence.dueDate = date;
+        occurrence.completed = completed;
+        return occurrence;
+    }
+
     // Getters and Setters
     public int getId() { return id; }
 
@@ -36,19 +68,38 @@ public class Task {
 
     public String getTitle() { return title; }
 
-    public void setTitle(String title) { this.title = title; }
+    public void setTitle(String title) { this.title = title; changed.add(Field.TITLE); }
 
     public LocalDate getDueDate() { return dueDate; }
 
-    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; }
+    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; changed.add(Field.DUE_DATE); }
 
     public int getPriority() { return priority; }
 
-    public void setPriority(int priority) { this.priority = priority; }
+    public void setPriority(int priority) { this.priority = priority; changed.add(Field.PRIORITY); }
 
     public boolean isCompleted() { return completed; }
 
-    public void setCompleted(boolean completed) { this.completed = completed; }
+    public void setCompleted(boolean completed) { this.completed = completed; changed.add(Field.COMPLETED); }
+
+    public Recurrence getRecurrence() { return recurrence; }
+
+    public void setRecurrence(Recurrence recurrence) { this.recurrence = recurrence; changed.add(Field.RECURRENCE); }
+
+    public boolean isRecurring() { return recurrence != null; }
+
+    public int getVersion() { return version; }
+
+    // not a change of its own, only the storage sets it
+    public void setVersion(int version) { this.version = version; }
+
+    // the fields set since the task was made or last saved - a task straight from a constructor has none
+    public Set<Field> getChangedFields() { return EnumSet.copyOf(changed); }
+
+    public boolean hasChanges() { return !changed.isEmpty(); }
+
+    // called once the changes are saved
+    public void clearChanges() { changed.clear(); }
 
     // this makes sure the printed tasks will be in the same layout to make a cleaner appearance
     @Override
@@ -3,38 +3,80 @@ package org.example.model;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-// this will run the SQL statements and interact with the database
-public class TaskDao {
-    private Connection conn;
+// this will run the SQL statements and interact with the database.
+// Reads go to one of DatabaseHelper's read-only connections and writes to its single writer connection, so a TaskDao
+// can be used from several threads at once. Every fixed query is prepared once per connection, see StatementCache.
+public class TaskDao implements TaskRepository {
+    // how many rows go into one transaction when bulk inserting - SQLite syncs to disk once per commit, not per row
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final String INSERT_SQL = "INSERT INTO tasks (title, due_date, priority, isCompleted, recurrence) VALUES (?, ?, ?, ?, ?)";
+    // what a Task is built from - named where tasks_archive is read too, since it has more columns than tasks
+    private static final String TASK_COLUMNS = "id, title, due_date, priority, isCompleted, version, recurrence";
+
+    // sets the parameters of a query before it runs
+    private interface ParameterSetter {
+        void set(PreparedStatement stmt) throws SQLException;
+    }
+
+    // carries a failed write out of the DAO method inside inTransaction, so DatabaseHelper.transaction rolls the whole
+    // unit back instead of committing the writes around the one that failed
+    private static final class TransactionFailed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TransactionFailed(SQLException cause) {
+            super(cause);
+        }
+    }
+
+    // true on the thread running inTransaction's work
+    private final ThreadLocal<Boolean> grouped = ThreadLocal.withInitial(() -> false);
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int fetchSize = 0; // 0 leaves it to the driver
+    private boolean titleSearch; // whether the database has the tasks_fts index, see SchemaMigrator
 
     public TaskDao(DatabaseHelper dbHelper) {
-        this.conn = dbHelper.getConnection();
         createTable();
     }
 
+    // creates the tasks table on a new database and upgrades an older one, see SchemaMigrator. A database that can't
+    // be brought up to date is an error - every query after that would run against the wrong schema.
     private void createTable() {
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS tasks (id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "title TEXT NOT NULL," +
-                "due_date TEXT NOT NULL," +
-                "priority INTEGER NOT NULL," +
-                "isCompleted BOOLEAN NOT NULL)";
-
-        try (Statement statement = conn.createStatement()) {
-            statement.execute(createTableSQL);
+        try {
+            titleSearch = DatabaseHelper.write(statements -> {
+                SchemaMigrator migrator = new SchemaMigrator(statements.connection());
+                migrator.migrate();
+                return migrator.hasTitleSearch();
+            });
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new IllegalStateException("Could not bring the database up to date: " + e.getMessage(), e);
         }
     }
 
+    @Override
     public void addTask(Task task) {
-        String insertTask = "INSERT INTO tasks (title, due_date, priority, isCompleted) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(insertTask, Statement.RETURN_GENERATED_KEYS)) {
+        write("TaskDao.addTask", statements -> {
+            PreparedStatement stmt = statements.prepareReturningKeys(INSERT_SQL);
             stmt.setString(1, task.getTitle());
-            stmt.setString(2, task.getDueDate().toString());
+            stmt.setLong(2, task.getDueDate().toEpochDay());
             stmt.setInt(3, task.getPriority());
             stmt.setBoolean(4, task.isCompleted());
+            stmt.setString(5, recurrenceOf(task));
 
             int affectedRows = stmt.executeUpdate();
 
@@ -42,121 +84,845 @@ public class TaskDao {
                 try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         task.setId(generatedKeys.getInt(1));  // Set the generated ID
+                        task.setVersion(1);
                     }
                 }
             }
+            return affectedRows;
+        }, () -> 0);
+    }
+
+    // inserts many tasks with one prepared statement, committing every batchSize rows instead of after every row.
+    // The generated IDs are written back to the Task objects. Returns the number of rows inserted.
+    @Override
+    public int addTasks(Collection<Task> tasks) {
+        long start = Metrics.start();
+        List<Task> chunk = new ArrayList<>(Math.min(batchSize, tasks.size()));
+        int inserted = 0;
+        boolean failed = false;
+        try {
+            for (Task task : tasks) {
+                chunk.add(task);
+                if (chunk.size() == batchSize) {
+                    inserted += insertChunk(chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                inserted += insertChunk(chunk);
+            }
+        } catch (SQLException e) {
+            // only the chunk that failed is rolled back, the chunks before it were already committed
+            failed = true;
+            writeFailed(e);
+        }
+        Metrics.record("TaskDao.addTasks", start, inserted, failed);
+        return inserted;
+    }
+
+    // inserts one chunk in its own transaction. Rows inserted by one connection inside one transaction get
+    // consecutive ids, so the ids can be worked out backwards from the last one instead of asking for each key.
+    private int insertChunk(List<Task> chunk) throws SQLException {
+        return DatabaseHelper.transaction(statements -> {
+            PreparedStatement stmt = statements.prepare(INSERT_SQL);
+            try {
+                for (Task task : chunk) {
+                    stmt.setString(1, task.getTitle());
+                    stmt.setLong(2, task.getDueDate().toEpochDay());
+                    stmt.setInt(3, task.getPriority());
+                    stmt.setBoolean(4, task.isCompleted());
+                    stmt.setString(5, recurrenceOf(task));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            } catch (SQLException e) {
+                stmt.clearBatch(); // the statement is cached, so don't leave the failed rows queued on it
+                throw e;
+            }
+
+            int lastId;
+            try (ResultSet rs = statements.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                rs.next();
+                lastId = rs.getInt(1);
+            }
+            int firstId = lastId - chunk.size() + 1;
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setId(firstId + i);
+                chunk.get(i).setVersion(1);
+            }
+            return chunk.size();
+        });
+    }
+
+    // runs work as one transaction, so all the writes it makes are committed together with a single sync to disk.
+    // A write that fails inside work doesn't return its usual fallback but ends work, and everything is rolled back.
+    // Nested in another inTransaction work just runs as part of the outer one, which says whether it was committed.
+    @Override
+    public boolean inTransaction(Runnable work) {
+        if (grouped.get()) {
+            work.run();
+            return true;
+        }
+        long start = Metrics.start();
+        grouped.set(true);
+        try {
+            DatabaseHelper.transaction(statements -> {
+                work.run();
+                return null;
+            });
+            Metrics.record("TaskDao.inTransaction", start, 0, false);
+            return true;
         } catch (SQLException e) {
+            Metrics.record("TaskDao.inTransaction", start, 0, true);
             e.printStackTrace();
+            return false;
+        } catch (TransactionFailed e) {
+            Metrics.record("TaskDao.inTransaction", start, 0, true);
+            e.getCause().printStackTrace();
+            return false;
+        } finally {
+            grouped.remove();
         }
     }
 
+    // a write that failed: inside inTransaction it fails the whole transaction, elsewhere it is only printed
+    private void writeFailed(SQLException e) {
+        if (grouped.get()) {
+            throw new TransactionFailed(e);
+        }
+        e.printStackTrace();
+    }
+
+    public int getBatchSize() { return batchSize; }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getFetchSize() { return fetchSize; }
+
+    // how many rows the driver reads ahead when streaming, see the stream methods below
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("Fetch size can't be negative");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
     public List<Task> getAllTasks() {
-        List<Task> tasks = new ArrayList<>();
-        String selectAllTasks = "SELECT * FROM tasks ORDER BY due_date ASC";
-        try (Statement statement = conn.createStatement(); ResultSet rs = statement.executeQuery(selectAllTasks)) {
+        String selectAllTasks = "SELECT * FROM tasks ORDER BY due_date ASC, id ASC";
+        return read("TaskDao.getAllTasks", statements -> {
+            List<Task> tasks = new ArrayList<>();
+            try (ResultSet rs = statements.prepare(selectAllTasks).executeQuery()) {
                 while (rs.next()) {
                     tasks.add(mapResultSetToTask(rs));
                 }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return tasks;
+            }
+            return tasks;
+        }, ArrayList::new);
     }
 
+    @Override
     public Task filterTasksById(int id) {
         String selectSQL = "SELECT * FROM tasks WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(selectSQL)) {
+        return read("TaskDao.filterTasksById", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
             stmt.setInt(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     return mapResultSetToTask(rs);
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+            return null;
+        }, () -> null);
     }
 
+    @Override
     public List<Task> filterTasksByDate(LocalDate date) {
-        List<Task> tasks = new ArrayList<>();
         String selectSQL = "SELECT * FROM tasks WHERE due_date = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(selectSQL)) {
-            stmt.setString(1, date.toString());
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    tasks.add(mapResultSetToTask(rs));
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return tasks;
+        return read("TaskDao.filterTasksByDate", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
+            stmt.setLong(1, date.toEpochDay());
+            return mapResultSetToTasks(stmt);
+        }, ArrayList::new);
     }
 
+    @Override
     public List<Task> filterTasksByPriority(int priority) {
-        List<Task> tasks = new ArrayList<>();
         String selectSQL = "SELECT * FROM tasks WHERE priority = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(selectSQL)) {
+        return read("TaskDao.filterTasksByPriority", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
             stmt.setInt(1, priority);
+            return mapResultSetToTasks(stmt);
+        }, ArrayList::new);
+    }
+
+    @Override
+    public List<Task> filterTasksByCompletionStatus(boolean isCompleted) {
+        String selectSQL = "SELECT * FROM tasks WHERE isCompleted = ?";
+        return read("TaskDao.filterTasksByCompletionStatus", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
+            stmt.setBoolean(1, isCompleted);
+            return mapResultSetToTasks(stmt);
+        }, ArrayList::new);
+    }
+
+    // compare-and-set in one statement: the version check is part of the WHERE clause, so there is no window between
+    // checking and writing, and RETURNING hands back the new version. Only when no row matched is the task looked up,
+    // to tell a conflict from a missing task.
+    @Override
+    public WriteResult compareAndUpdate(Task task) {
+        // only the columns whose setters were called are written. A task with no recorded changes (e.g. one made with
+        // the full constructor) writes every column, like before. Each combination of columns is its own cached statement.
+        Set<Task.Field> fields = task.hasChanges() ? task.getChangedFields() : EnumSet.allOf(Task.Field.class);
+        boolean checked = task.getVersion() > 0;
+        StringBuilder updateSQL = new StringBuilder("UPDATE tasks SET ");
+        for (Task.Field field : fields) {
+            updateSQL.append(columnOf(field)).append(" = ?, ");
+        }
+        updateSQL.append("version = version + 1 WHERE id = ?");
+        if (checked) {
+            updateSQL.append(" AND version = ?");
+        }
+        updateSQL.append(" RETURNING version");
+        WriteResult result = write("TaskDao.updateTask", statements -> {
+            PreparedStatement stmt = statements.prepare(updateSQL.toString());
+            int index = 1;
+            for (Task.Field field : fields) {
+                switch (field) {
+                    case TITLE -> stmt.setString(index++, task.getTitle());
+                    case DUE_DATE -> stmt.setLong(index++, task.getDueDate().toEpochDay());
+                    case PRIORITY -> stmt.setInt(index++, task.getPriority());
+                    case COMPLETED -> stmt.setBoolean(index++, task.isCompleted());
+                    case RECURRENCE -> stmt.setString(index++, recurrenceOf(task));
+                }
+            }
+            stmt.setInt(index++, task.getId());
+            if (checked) {
+                stmt.setInt(index, task.getVersion());
+            }
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    tasks.add(mapResultSetToTask(rs));
+                if (rs.next()) {
+                    task.setVersion(rs.getInt(1));
+                    return WriteResult.DONE;
                 }
             }
+            return checked && exists(statements, task.getId()) ? WriteResult.CONFLICT : WriteResult.NOT_FOUND;
+        }, () -> WriteResult.FAILED);
+        if (result == WriteResult.DONE) {
+            task.clearChanges();
+        }
+        return result;
+    }
+
+    @Override
+    public WriteResult compareAndDelete(int id, int expectedVersion) {
+        String deleteSQL = expectedVersion > 0
+                ? "DELETE FROM tasks WHERE id = ? AND version = ?"
+                : "DELETE FROM tasks WHERE id = ?";
+        return write("TaskDao.deleteTask", statements -> {
+            PreparedStatement stmt = statements.prepare(deleteSQL);
+            stmt.setInt(1, id);
+            if (expectedVersion > 0) {
+                stmt.setInt(2, expectedVersion);
+            }
+            if (stmt.executeUpdate() > 0) {
+                return WriteResult.DONE;
+            }
+            return expectedVersion > 0 && exists(statements, id) ? WriteResult.CONFLICT : WriteResult.NOT_FOUND;
+        }, () -> WriteResult.FAILED);
+    }
+
+    private static boolean exists(StatementCache statements, int id) throws SQLException {
+        PreparedStatement stmt = statements.prepare("SELECT 1 FROM tasks WHERE id = ?");
+        stmt.setInt(1, id);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    private static String columnOf(Task.Field field) {
+        return switch (field) {
+            case TITLE -> "title";
+            case DUE_DATE -> "due_date";
+            case PRIORITY -> "priority";
+            case COMPLETED -> "isCompleted";
+            case RECURRENCE -> "recurrence";
+        };
+    }
+
+    private static String recurrenceOf(Task task) {
+        return task.getRecurrence() == null ? null : task.getRecurrence().toString();
+    }
+
+    // sets the completion status of every listed task in one transaction with one batched statement, instead of one
+    // auto-committed UPDATE each. Returns how many tasks were changed.
+    @Override
+    public int markCompleted(Collection<Integer> ids, boolean completed) {
+        String updateSQL = "UPDATE tasks SET isCompleted = ?, version = version + 1 WHERE id = ?";
+        return batch("TaskDao.markCompleted", updateSQL, ids, (stmt, id) -> {
+            stmt.setBoolean(1, completed);
+            stmt.setInt(2, id);
+        });
+    }
+
+    // deletes every listed task in one transaction, returns how many there were
+    @Override
+    public int deleteTasks(Collection<Integer> ids) {
+        String deleteSQL = "DELETE FROM tasks WHERE id = ?";
+        return batch("TaskDao.deleteTasks", deleteSQL, ids, (stmt, id) -> stmt.setInt(1, id));
+    }
+
+    // gives every task matching the query the new priority with a single UPDATE. The query's order and limit are
+    // kept, e.g. "the 10 oldest open tasks", by picking the ids in a subquery. Returns how many tasks were changed.
+    @Override
+    public int reprioritize(TaskQuery query, int newPriority) {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(newPriority);
+        String updateSQL;
+        if (query.getLimit() > 0) {
+            updateSQL = "UPDATE tasks SET priority = ?, version = version + 1 WHERE id IN (" + toSql(query, "id", parameters) + ")";
+        } else {
+            StringBuilder sql = new StringBuilder("UPDATE tasks SET priority = ?, version = version + 1");
+            appendWhere(query, sql, parameters);
+            updateSQL = sql.toString();
+        }
+        return write("TaskDao.reprioritize", statements -> {
+            PreparedStatement stmt = statements.prepare(updateSQL);
+            for (int i = 0; i < parameters.size(); i++) {
+                stmt.setObject(i + 1, parameters.get(i));
+            }
+            return stmt.executeUpdate();
+        }, () -> 0);
+    }
+
+    // sets the parameters for one id of a batch
+    private interface IdSetter {
+        void set(PreparedStatement stmt, int id) throws SQLException;
+    }
+
+    private int batch(String operation, String sql, Collection<Integer> ids, IdSetter setter) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        long start = Metrics.start();
+        try {
+            int changed = DatabaseHelper.transaction(statements -> {
+                PreparedStatement stmt = statements.prepare(sql);
+                int count = 0;
+                try {
+                    int queued = 0;
+                    for (int id : ids) {
+                        setter.set(stmt, id);
+                        stmt.addBatch();
+                        if (++queued == batchSize) {
+                            count += sum(stmt.executeBatch());
+                            queued = 0;
+                        }
+                    }
+                    if (queued > 0) {
+                        count += sum(stmt.executeBatch());
+                    }
+                } catch (SQLException e) {
+                    stmt.clearBatch(); // the statement is cached, so don't leave the failed rows queued on it
+                    throw e;
+                }
+                return count;
+            });
+            Metrics.record(operation, start, changed, false);
+            return changed;
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.record(operation, start, 0, true);
+            writeFailed(e);
+            return 0;
         }
-        return tasks;
     }
 
-    public List<Task> filterTasksByCompletionStatus(boolean isCompleted) {
-        List<Task> tasks = new ArrayList<>();
-        String selectSQL = "SELECT * FROM tasks WHERE isCompleted = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(selectSQL)) {
-            stmt.setBoolean(1, isCompleted);
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+
+    // one page of all tasks in due date order, starting right after the given task (keyset pagination). Unlike an
+    // OFFSET this uses the due_date index to jump straight to the start of the page, so late pages are just as fast.
+    // Pass null as afterDueDate for the first page, and the due date and id of the last task shown for the next one.
+    @Override
+    public List<Task> getTasksPage(LocalDate afterDueDate, int afterId, int limit) {
+        String selectSQL = "SELECT * FROM tasks WHERE (due_date, id) > (?, ?) ORDER BY due_date ASC, id ASC LIMIT ?";
+        return read("TaskDao.getTasksPage", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
+            stmt.setLong(1, afterDueDate == null ? Long.MIN_VALUE : afterDueDate.toEpochDay());
+            stmt.setInt(2, afterDueDate == null ? Integer.MIN_VALUE : afterId);
+            stmt.setInt(3, limit);
+            return mapResultSetToTasks(stmt);
+        }, ArrayList::new);
+    }
+
+    // every filter of the query in one statement. The SQL only depends on which filters are set, not on their values,
+    // so each shape is prepared once per connection and reused through the StatementCache.
+    @Override
+    public List<Task> query(TaskQuery query) {
+        List<Object> parameters = new ArrayList<>();
+        String selectSQL = toSql(query, parameters);
+        return read("TaskDao.query", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
+            for (int i = 0; i < parameters.size(); i++) {
+                stmt.setObject(i + 1, parameters.get(i));
+            }
+            return mapResultSetToTasks(stmt);
+        }, ArrayList::new);
+    }
+
+    // package-private so the tests can check what SQL a query turns into
+    static String toSql(TaskQuery query, List<Object> parameters) {
+        return toSql(query, "*", parameters);
+    }
+
+    private static String toSql(TaskQuery query, String columns, List<Object> parameters) {
+        String selected = query.isIncludeArchived() && columns.equals("*") ? TASK_COLUMNS : columns;
+        StringBuilder sql = new StringBuilder("SELECT ").append(selected).append(" FROM tasks");
+        appendWhere(query, sql, parameters);
+        if (query.isIncludeArchived()) {
+            // the same filters on the archive, and the ORDER BY and LIMIT below apply to both together
+            sql.append(" UNION ALL SELECT ").append(selected).append(" FROM tasks_archive");
+            appendWhere(query, sql, parameters);
+        }
+        sql.append(" ORDER BY ").append(query.getOrder().sql());
+        if (query.getLimit() > 0) {
+            sql.append(" LIMIT ?");
+            parameters.add(query.getLimit());
+        }
+        return sql.toString();
+    }
+
+    private static void appendWhere(TaskQuery query, StringBuilder sql, List<Object> parameters) {
+        String joiner = " WHERE ";
+        if (query.getDueFrom() != null) {
+            sql.append(joiner).append("due_date >= ?");
+            parameters.add(query.getDueFrom().toEpochDay());
+            joiner = " AND ";
+        }
+        if (query.getDueTo() != null) {
+            sql.append(joiner).append("due_date <= ?");
+            parameters.add(query.getDueTo().toEpochDay());
+            joiner = " AND ";
+        }
+        if (!query.getPriorities().isEmpty()) {
+            sql.append(joiner).append("priority IN (");
+            String comma = "";
+            for (int priority : query.getPriorities()) {
+                sql.append(comma).append('?');
+                parameters.add(priority);
+                comma = ", ";
+            }
+            sql.append(')');
+            joiner = " AND ";
+        }
+        if (query.getCompleted() != null) {
+            // written out instead of bound - SQLite only uses the partial index on open tasks for a literal 0
+            sql.append(joiner).append("isCompleted = ").append(query.getCompleted() ? 1 : 0);
+            joiner = " AND ";
+        }
+        if (query.getRecurring() != null) {
+            sql.append(joiner).append(query.getRecurring() ? "recurrence IS NOT NULL" : "recurrence IS NULL");
+            joiner = " AND ";
+        }
+        if (query.getAfterDueDate() != null) {
+            sql.append(joiner).append("(due_date, id) > (?, ?)");
+            parameters.add(query.getAfterDueDate().toEpochDay());
+            parameters.add(query.getAfterId());
+            joiner = " AND ";
+        }
+        if (query.getTitleContains() != null) {
+            sql.append(joiner).append("title LIKE ? ESCAPE '\\'");
+            parameters.add("%" + escapeLike(query.getTitleContains()) + "%");
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // the k most urgent open tasks, see Urgency. SQLite keeps only the best k rows while it sorts when there is a LIMIT,
+    // and the partial index on open tasks means completed ones are never read, so the table is never sorted as a whole.
+    // The weights and today's date are parameters, so the statement stays the same and is prepared only once.
+    @Override
+    public List<Task> topUrgent(int k, Urgency urgency, LocalDate today) {
+        String selectSQL = "SELECT * FROM tasks WHERE isCompleted = 0 " +
+                "ORDER BY ? * (4 - priority) + ? * (? - due_date) + CASE WHEN due_date < ? THEN ? ELSE 0 END DESC, " +
+                "due_date ASC, id ASC LIMIT ?";
+        return read("TaskDao.topUrgent", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
+            stmt.setDouble(1, urgency.getPriorityWeight());
+            stmt.setDouble(2, urgency.getDayWeight());
+            stmt.setLong(3, today.toEpochDay());
+            stmt.setLong(4, today.toEpochDay());
+            stmt.setDouble(5, urgency.getOverdueWeight());
+            stmt.setInt(6, k);
+            return mapResultSetToTasks(stmt);
+        }, ArrayList::new);
+    }
+
+    // three aggregate queries that SQLite answers from indexes alone, without reading the table:
+    //   tasks per priority from idx_tasks_priority, open tasks per priority from the partial index on open tasks
+    //   (named, since the planner would otherwise pick idx_tasks_completed and look up every row for its priority),
+    //   and the overdue / due today / due this week counts from a range of idx_tasks_completed
+    // completed per priority is the difference of the first two.
+    @Override
+    public TaskSummary summary(LocalDate today) {
+        String byPrioritySQL = "SELECT priority, COUNT(*) FROM tasks GROUP BY priority";
+        String openByPrioritySQL = "SELECT priority, COUNT(*) FROM tasks INDEXED BY idx_tasks_open_due " +
+                "WHERE isCompleted = 0 GROUP BY priority";
+        String dueSQL = "SELECT COUNT(*), COALESCE(SUM(due_date < ?), 0), COALESCE(SUM(due_date = ?), 0) " +
+                "FROM tasks WHERE isCompleted = 0 AND due_date <= ?";
+        return read("TaskDao.summary", statements -> {
+            int[] total = countByPriority(statements.prepare(byPrioritySQL));
+            int[] open = countByPriority(statements.prepare(openByPrioritySQL));
+            int[] completed = new int[4];
+            for (int priority = 1; priority <= 3; priority++) {
+                completed[priority] = total[priority] - open[priority];
+            }
+            PreparedStatement stmt = statements.prepare(dueSQL);
+            stmt.setLong(1, today.toEpochDay());
+            stmt.setLong(2, today.toEpochDay());
+            stmt.setLong(3, TaskSummary.weekEnd(today).toEpochDay());
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    tasks.add(mapResultSetToTask(rs));
+                rs.next();
+                int overdue = rs.getInt(2);
+                return new TaskSummary(today, open, completed, overdue, rs.getInt(3), rs.getInt(1) - overdue);
+            }
+        }, () -> new TaskSummary(today, new int[4], new int[4], 0, 0, 0));
+    }
+
+    private static int[] countByPriority(PreparedStatement stmt) throws SQLException {
+        int[] counts = new int[4];
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int priority = rs.getInt(1);
+                if (priority >= 1 && priority <= 3) {
+                    counts[priority] = rs.getInt(2);
                 }
             }
+        }
+        return counts;
+    }
+
+    // false if this SQLite has no FTS5, then searchByTitle always returns nothing and TaskManager uses TitleIndex
+    @Override
+    public boolean isTitleSearchAvailable() {
+        return titleSearch;
+    }
+
+    // tasks whose title has words starting with every word of text, best matches first (FTS5's bm25 ranking)
+    @Override
+    public List<Task> searchByTitle(String text, int limit) {
+        String match = toMatchQuery(text);
+        if (!titleSearch || match == null) {
+            return new ArrayList<>();
+        }
+        String selectSQL = "SELECT tasks.* FROM tasks_fts JOIN tasks ON tasks.id = tasks_fts.rowid " +
+                "WHERE tasks_fts MATCH ? ORDER BY bm25(tasks_fts), tasks.id LIMIT ?";
+        return read("TaskDao.searchByTitle", statements -> {
+            PreparedStatement stmt = statements.prepare(selectSQL);
+            stmt.setString(1, match);
+            stmt.setInt(2, limit);
+            return mapResultSetToTasks(stmt);
+        }, ArrayList::new);
+    }
+
+    // turns what the user typed into an FTS5 query: every word becomes a quoted prefix search, so punctuation and FTS
+    // keywords like OR or NEAR in a title are taken literally. Returns null if there are no words at all.
+    static String toMatchQuery(String text) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : TitleWords.split(text)) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append('"').append(word.replace("\"", "\"\"")).append("\"*");
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    // the stream versions below read rows from the database as they are used instead of loading the whole result
+    // into a list first. Each stream keeps a database connection until it is closed, so always use them in a
+    // try-with-resources block, on the thread that opened them.
+    public Stream<Task> streamAllTasks() {
+        return streamQuery("TaskDao.streamAllTasks", "SELECT * FROM tasks ORDER BY due_date ASC, id ASC", stmt -> { });
+    }
+
+    public Stream<Task> streamTasksByDate(LocalDate date) {
+        return streamQuery("TaskDao.streamTasksByDate", "SELECT * FROM tasks WHERE due_date = ?", stmt -> stmt.setLong(1, date.toEpochDay()));
+    }
+
+    public Stream<Task> streamTasksByPriority(int priority) {
+        return streamQuery("TaskDao.streamTasksByPriority", "SELECT * FROM tasks WHERE priority = ?", stmt -> stmt.setInt(1, priority));
+    }
+
+    public Stream<Task> streamTasksByCompletionStatus(boolean isCompleted) {
+        return streamQuery("TaskDao.streamTasksByCompletionStatus", "SELECT * FROM tasks WHERE isCompleted = ?", stmt -> stmt.setBoolean(1, isCompleted));
+    }
+
+    // calls action for every task in due date order without keeping them in memory, returns how many there were
+    @Override
+    public long forEachTask(Consumer<? super Task> action) {
+        long[] count = {0};
+        try (Stream<Task> tasks = streamAllTasks()) {
+            tasks.forEach(task -> {
+                action.accept(task);
+                count[0]++;
+            });
+        }
+        return count[0];
+    }
+
+    // the Metrics entry covers the whole life of the stream, from the query until it is closed
+    private Stream<Task> streamQuery(String operation, String sql, ParameterSetter parameters) {
+        long start = Metrics.start();
+        DatabaseHelper.Lease lease = null;
+        PreparedStatement stmt = null;
+        try {
+            lease = DatabaseHelper.openReader();
+            // not taken from the statement cache - the statement stays busy for as long as the stream is open
+            stmt = lease.statements().connection().prepareStatement(sql);
+            stmt.setFetchSize(fetchSize);
+            parameters.set(stmt);
+            ResultSet rs = stmt.executeQuery();
+
+            DatabaseHelper.Lease streamLease = lease;
+            PreparedStatement streamStmt = stmt;
+            int[] count = {0};
+            Spliterator<Task> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Task> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(mapResultSetToTask(rs));
+                        count[0]++;
+                        return true;
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Reading tasks failed", e);
+                    }
+                }
+            };
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                try {
+                    streamStmt.close(); // also closes the ResultSet
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                } finally {
+                    streamLease.close();
+                    Metrics.record(operation, start, count[0], false);
+                }
+            });
         } catch (SQLException e) {
+            try {
+                if (stmt != null) {
+                    stmt.close();
+                }
+            } catch (SQLException closeError) {
+                e.addSuppressed(closeError);
+            }
+            if (lease != null) {
+                lease.close();
+            }
+            Metrics.record(operation, start, 0, true);
             e.printStackTrace();
+            return Stream.empty();
         }
-        return tasks;
     }
 
-    public void updateTask(Task task) {
-        String updateSQL = "UPDATE tasks SET title = ?, due_date = ?, priority = ?, isCompleted = ? WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(updateSQL)) {
-            stmt.setString(1, task.getTitle());
-            stmt.setString(2, task.getDueDate().toString());
-            stmt.setInt(3, task.getPriority());
-            stmt.setBoolean(4, task.isCompleted());
-            stmt.setInt(5, task.getId());
-            stmt.executeUpdate();
+    // runs work on a reader connection, or on the writer for write(). Any SQLException is printed and the fallback
+    // value returned instead, like the DAO has always done - except for a write inside inTransaction, see writeFailed. Both record the call in Metrics under the given operation name.
+    private <T> T read(String operation, DatabaseHelper.SqlWork<T> work, Supplier<T> fallback) {
+        return timed(operation, false, work, fallback);
+    }
+
+    private <T> T write(String operation, DatabaseHelper.SqlWork<T> work, Supplier<T> fallback) {
+        return timed(operation, true, work, fallback);
+    }
+
+    private <T> T timed(String operation, boolean write, DatabaseHelper.SqlWork<T> work, Supplier<T> fallback) {
+        long start = Metrics.start();
+        try {
+            T result = write ? DatabaseHelper.write(work) : DatabaseHelper.read(work);
+            Metrics.record(operation, start, Metrics.rowsOf(result), false);
+            return result;
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.record(operation, start, 0, true);
+            if (write) {
+                writeFailed(e);
+            } else {
+                e.printStackTrace();
+            }
+            return fallback.get();
         }
     }
 
-    public void deleteTask(int id) {
-        String deleteSQL = "DELETE FROM tasks WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(deleteSQL)) {
+    // runs a query that has its parameters set already and maps every row
+    private List<Task> mapResultSetToTasks(PreparedStatement stmt) throws SQLException {
+        List<Task> tasks = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                tasks.add(mapResultSetToTask(rs));
+            }
+        }
+        return tasks;
+    }
+
+    // moves the tasks completed longest ago first. The DELETE hands back the rows it removed (RETURNING), and they go
+    // into tasks_archive in the same transaction, so a task is always in exactly one of the two tables. Keeping limit
+    // small keeps each transaction short - other writes only ever wait for one batch.
+    @Override
+    public List<Task> archiveCompleted(LocalDate completedBefore, int limit) {
+        // named, since the planner would otherwise pick idx_tasks_completed and sort every completed task
+        String deleteSQL = "DELETE FROM tasks WHERE id IN (SELECT id FROM tasks INDEXED BY idx_tasks_completed_on " +
+                "WHERE isCompleted = 1 AND completed_on < ? ORDER BY completed_on, id LIMIT ?) RETURNING *";
+        String insertSQL = "INSERT INTO tasks_archive (" + TASK_COLUMNS + ", completed_on, archived_on) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        long today = LocalDate.now().toEpochDay();
+        return write("TaskDao.archiveCompleted", writer -> DatabaseHelper.transaction(statements -> {
+            PreparedStatement delete = statements.prepare(deleteSQL);
+            delete.setLong(1, completedBefore.toEpochDay());
+            delete.setInt(2, limit);
+            List<Task> archived = new ArrayList<>();
+            List<Object> completedOn = new ArrayList<>();
+            try (ResultSet rs = delete.executeQuery()) {
+                while (rs.next()) {
+                    archived.add(mapResultSetToTask(rs));
+                    completedOn.add(rs.getObject("completed_on"));
+                }
+            }
+            if (archived.isEmpty()) {
+                return archived;
+            }
+
+            PreparedStatement insert = statements.prepare(insertSQL);
+            try {
+                for (int i = 0; i < archived.size(); i++) {
+                    Task task = archived.get(i);
+                    insert.setInt(1, task.getId());
+                    insert.setString(2, task.getTitle());
+                    insert.setLong(3, task.getDueDate().toEpochDay());
+                    insert.setInt(4, task.getPriority());
+                    insert.setBoolean(5, task.isCompleted());
+                    insert.setInt(6, task.getVersion());
+                    insert.setString(7, recurrenceOf(task));
+                    insert.setObject(8, completedOn.get(i));
+                    insert.setLong(9, today);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } catch (SQLException e) {
+                insert.clearBatch(); // the statement is cached, so don't leave the failed rows queued on it
+                throw e;
+            }
+            return archived;
+        }), ArrayList::new);
+    }
+
+    @Override
+    public List<Task> getRecurringTasks() {
+        String selectSQL = "SELECT * FROM tasks INDEXED BY idx_tasks_recurring WHERE recurrence IS NOT NULL";
+        return read("TaskDao.getRecurringTasks", statements -> mapResultSetToTasks(statements.prepare(selectSQL)),
+                ArrayList::new);
+    }
+
+    @Override
+    public Map<Integer, Set<LocalDate>> getCompletedOccurrences() {
+        String selectSQL = "SELECT task_id, due_date FROM task_occurrences";
+        return read("TaskDao.getCompletedOccurrences", statements -> {
+            Map<Integer, Set<LocalDate>> occurrences = new HashMap<>();
+            try (ResultSet rs = statements.prepare(selectSQL).executeQuery()) {
+                while (rs.next()) {
+                    occurrences.computeIfAbsent(rs.getInt(1), id -> new HashSet<>())
+                            .add(LocalDate.ofEpochDay(rs.getLong(2)));
+                }
+            }
+            return occurrences;
+        }, HashMap::new);
+    }
+
+    // a completed occurrence is one row in task_occurrences, marking it open again deletes the row. The recurring task
+    // itself isn't written, so its version stays the same.
+    @Override
+    public boolean setOccurrenceCompleted(int id, LocalDate date, boolean completed) {
+        String insertSQL = "INSERT OR IGNORE INTO task_occurrences (task_id, due_date) VALUES (?, ?)";
+        String deleteSQL = "DELETE FROM task_occurrences WHERE task_id = ? AND due_date = ?";
+        return write("TaskDao.setOccurrenceCompleted", statements -> {
+            PreparedStatement recurring = statements.prepare("SELECT 1 FROM tasks WHERE id = ? AND recurrence IS NOT NULL");
+            recurring.setInt(1, id);
+            try (ResultSet rs = recurring.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+            }
+            PreparedStatement stmt = statements.prepare(completed ? insertSQL : deleteSQL);
             stmt.setInt(1, id);
+            stmt.setLong(2, date.toEpochDay());
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return true;
+        }, () -> false);
+    }
+
+    // incremental vacuum: gives back up to pages of the pages freed by deletes and archiving, which is quick and only
+    // holds the write lock for as long as that takes, instead of a full VACUUM rebuilding the whole file. A database
+    // created before auto_vacuum was turned on (see DatabaseHelper) gives nothing back until enableIncrementalVacuum
+    // has been run on it once.
+    @Override
+    public int reclaimSpace(int pages) {
+        return write("TaskDao.reclaimSpace", statements -> {
+            try (Statement stmt = statements.connection().createStatement()) {
+                int free = pragma(stmt, "freelist_count");
+                stmt.execute("PRAGMA incremental_vacuum(" + Math.max(1, pages) + ")");
+                return free - pragma(stmt, "freelist_count");
+            }
+        }, () -> 0);
+    }
+
+    // one-off maintenance for a database created before auto_vacuum was turned on: switches it to incremental and
+    // rebuilds the file with a full VACUUM, which blocks every write until it is done - so it only runs when asked
+    // for (Main's --vacuum), never from reclaimSpace. False if the database was incremental already.
+    public boolean enableIncrementalVacuum() {
+        return write("TaskDao.enableIncrementalVacuum", statements -> {
+            try (Statement stmt = statements.connection().createStatement()) {
+                if (pragma(stmt, "auto_vacuum") == 2) { // 2 is INCREMENTAL
+                    return false;
+                }
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+                return true;
+            }
+        }, () -> false);
+    }
+
+    private static int pragma(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getInt(1) : 0;
         }
     }
 
-    private Task mapResultSetToTask(ResultSet rs) throws SQLException {
+    // package-private so TaskDaoBenchmark can measure the row decoding on its own
+    Task mapResultSetToTask(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
         String title = rs.getString("title");
-        LocalDate dueDate = LocalDate.parse(rs.getString("due_date"));
+        LocalDate dueDate = LocalDate.ofEpochDay(rs.getLong("due_date"));
         int priority = rs.getInt("priority");
         boolean isCompleted = rs.getBoolean("isCompleted");
+        String recurrence = rs.getString("recurrence");
 
-        return new Task(id, title, dueDate, priority, isCompleted);
+        Task task = new Task(id, title, dueDate, priority, isCompleted,
+                recurrence == null ? null : Recurrence.parse(recurrence));
+        task.setVersion(rs.getInt("version"));
+        return task;
     }
 }
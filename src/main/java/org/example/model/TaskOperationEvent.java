@@ -0,0 +1,31 @@
+package org.example.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// a Java Flight Recorder event for every timed TaskDao/TaskManager call, so slow calls show up in a JFR recording
+// next to GC and I/O. It is only sent while Metrics is on and a recording with this event enabled is running.
+@Name("org.example.TaskOperation")
+@Label("Task Operation")
+@Category("Task Tracker")
+@Description("One TaskDao or TaskManager call")
+public class TaskOperationEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Failed")
+    public boolean failed;
+
+    // measured by Metrics rather than with begin()/end(), so the event can be created only once the call is over.
+    // Not called duration - every JFR event has that field already, and a second one stops the class from loading.
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    public long elapsedNanos;
+}
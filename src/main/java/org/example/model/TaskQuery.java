@@ -0,0 +1,211 @@
+package org.example.model;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+// several filters at once, e.g. "open priority 1 tasks due this week":
+//   new TaskQuery().dueBetween(monday, sunday).priorities(1).completed(false)
+// TaskDao turns it into one SQL statement, and matches()/order() answer the same question for tasks held in memory.
+// Anything that isn't set doesn't filter.
+public class TaskQuery {
+
+    public enum Order {
+        DUE_DATE(Comparator.comparing(Task::getDueDate).thenComparingInt(Task::getId), "due_date ASC, id ASC"),
+        PRIORITY(Comparator.comparingInt(Task::getPriority).thenComparing(Task::getDueDate).thenComparingInt(Task::getId),
+                "priority ASC, due_date ASC, id ASC"),
+        NEWEST(Comparator.comparingInt(Task::getId).reversed(), "id DESC");
+
+        private final Comparator<Task> comparator;
+        private final String sql;
+
+        Order(Comparator<Task> comparator, String sql) {
+            this.comparator = comparator;
+            this.sql = sql;
+        }
+
+        public Comparator<Task> comparator() { return comparator; }
+
+        String sql() { return sql; }
+    }
+
+    private LocalDate dueFrom;
+    private LocalDate dueTo;
+    private final Set<Integer> priorities = new TreeSet<>();
+    private Boolean completed;
+    private String titleContains;
+    private Order order = Order.DUE_DATE;
+    private int limit; // 0 means no limit
+    private boolean includeArchived;
+    private Boolean recurring;
+    private LocalDate afterDueDate; // with afterId, the last task of the previous page
+    private int afterId;
+
+    public TaskQuery() {
+    }
+
+    public TaskQuery(TaskQuery other) {
+        this.dueFrom = other.dueFrom;
+        this.dueTo = other.dueTo;
+        this.priorities.addAll(other.priorities);
+        this.completed = other.completed;
+        this.titleContains = other.titleContains;
+        this.order = other.order;
+        this.limit = other.limit;
+        this.includeArchived = other.includeArchived;
+        this.recurring = other.recurring;
+        this.afterDueDate = other.afterDueDate;
+        this.afterId = other.afterId;
+    }
+
+    // both ends are included, either can be null for an open range
+    public TaskQuery dueBetween(LocalDate from, LocalDate to) {
+        this.dueFrom = from;
+        this.dueTo = to;
+        return this;
+    }
+
+    public TaskQuery priorities(int... values) {
+        for (int priority : values) {
+            if (priority < 1 || priority > 3) {
+                throw new IllegalArgumentException("Priority must be between 1 and 3");
+            }
+            priorities.add(priority);
+        }
+        return this;
+    }
+
+    public TaskQuery completed(Boolean value) {
+        this.completed = value;
+        return this;
+    }
+
+    // case-insensitive for ASCII letters only (see foldCase), anywhere in the title
+    public TaskQuery titleContains(String text) {
+        this.titleContains = text == null || text.isBlank() ? null : text.trim();
+        return this;
+    }
+
+    public TaskQuery orderBy(Order value) {
+        this.order = value;
+        return this;
+    }
+
+    public TaskQuery limit(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Limit can't be negative");
+        }
+        this.limit = value;
+        return this;
+    }
+
+    // also look in the archive of old completed tasks (see TaskRepository.archiveCompleted), which is left out otherwise
+    public TaskQuery includeArchived(boolean value) {
+        this.includeArchived = value;
+        return this;
+    }
+
+    // true for only the recurring tasks, false for only the ones that happen once. A recurring task matches by its
+    // own row, whose due date is the first occurrence - TaskManager.query puts the occurrences in when this isn't set
+    public TaskQuery recurring(Boolean value) {
+        this.recurring = value;
+        return this;
+    }
+
+    // only the tasks after this due date and id in due date order, to carry on after the last task of a page like
+    // TaskRepository.getTasksPage - a null date starts at the beginning
+    public TaskQuery after(LocalDate dueDate, int id) {
+        this.afterDueDate = dueDate;
+        this.afterId = dueDate == null ? 0 : id;
+        return this;
+    }
+
+    public LocalDate getDueFrom() { return dueFrom; }
+
+    public LocalDate getDueTo() { return dueTo; }
+
+    public Set<Integer> getPriorities() { return priorities; }
+
+    public Boolean getCompleted() { return completed; }
+
+    public String getTitleContains() { return titleContains; }
+
+    public Order getOrder() { return order; }
+
+    public int getLimit() { return limit; }
+
+    public boolean isIncludeArchived() { return includeArchived; }
+
+    public Boolean getRecurring() { return recurring; }
+
+    public LocalDate getAfterDueDate() { return afterDueDate; }
+
+    public int getAfterId() { return afterId; }
+
+    // the same test the SQL does, for tasks that are already in memory
+    public boolean matches(Task task) {
+        if (dueFrom != null && task.getDueDate().isBefore(dueFrom)) {
+            return false;
+        }
+        if (dueTo != null && task.getDueDate().isAfter(dueTo)) {
+            return false;
+        }
+        if (!priorities.isEmpty() && !priorities.contains(task.getPriority())) {
+            return false;
+        }
+        if (completed != null && task.isCompleted() != completed) {
+            return false;
+        }
+        if (recurring != null && task.isRecurring() != recurring) {
+            return false;
+        }
+        if (afterDueDate != null) {
+            int byDate = task.getDueDate().compareTo(afterDueDate);
+            if (byDate < 0 || (byDate == 0 && task.getId() <= afterId)) {
+                return false;
+            }
+        }
+        return titleContains == null || foldCase(task.getTitle()).contains(foldCase(titleContains));
+    }
+
+    // lower-cases the ASCII letters and leaves every other character as it is, the way SQLite's LIKE compares - so a
+    // titleContains finds the same tasks in memory as in the database, "É" and "é" being different in both
+    public static String foldCase(String text) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? text : new String(chars);
+    }
+
+    // two queries are equal when they ask for the same tasks in the same order, so they can be used as map keys -
+    // as long as neither is changed afterwards
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaskQuery other)) {
+            return false;
+        }
+        return Objects.equals(dueFrom, other.dueFrom) && Objects.equals(dueTo, other.dueTo)
+                && priorities.equals(other.priorities) && Objects.equals(completed, other.completed)
+                && Objects.equals(titleContains, other.titleContains) && order == other.order && limit == other.limit
+                && includeArchived == other.includeArchived && Objects.equals(recurring, other.recurring)
+                && Objects.equals(afterDueDate, other.afterDueDate) && afterId == other.afterId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dueFrom, dueTo, priorities, completed, titleContains, order, limit, includeArchived,
+                recurring, afterDueDate, afterId);
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.model;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// where the tasks are stored. TaskDao keeps them in SQLite, LogTaskRepository in an append-only memory-mapped file.
+// TaskManager only talks to this interface, so the storage can be picked when the program starts.
+// Errors are handled the same way everywhere: nothing is thrown, a failed add leaves the id at 0, a failed update or
+// delete returns false (FAILED for the compare-and-set ones), and a failed read returns an empty list.
+// Every write gives the task a new version (see Task.getVersion), and adds set it on the new task.
+public interface TaskRepository extends AutoCloseable {
+
+    // sets the new task's id
+    void addTask(Task task);
+
+    // sets every new task's id, returns how many were added
+    int addTasks(Collection<Task> tasks);
+
+    // runs work as one unit - one SQLite transaction, or one flush to disk for the log. False if it failed and
+    // was rolled back. The log has no rollback - each of its writes succeeds or fails on its own - so it says true.
+    boolean inTransaction(Runnable work);
+
+    // in due date order, then by id
+    List<Task> getAllTasks();
+
+    // null if there is no task with that id
+    Task filterTasksById(int id);
+
+    List<Task> filterTasksByDate(LocalDate date);
+
+    List<Task> filterTasksByPriority(int priority);
+
+    List<Task> filterTasksByCompletionStatus(boolean isCompleted);
+
+    // only writes the changed fields if the task has any (see Task.getChangedFields), returns false if there was no
+    // task with that id or it was changed since task was read
+    default boolean updateTask(Task task) {
+        return compareAndUpdate(task) == WriteResult.DONE;
+    }
+
+    // returns false if there was no task with that id
+    default boolean deleteTask(int id) {
+        return compareAndDelete(id, 0) == WriteResult.DONE;
+    }
+
+    // updateTask that says why nothing was written. If task has a version, the update only happens when the stored
+    // task still has that version (CONFLICT otherwise); version 0 updates whatever is stored. On DONE task gets the
+    // new version.
+    WriteResult compareAndUpdate(Task task);
+
+    // deletes the task only if it still has expectedVersion, or whatever version it has if expectedVersion is 0
+    WriteResult compareAndDelete(int id, int expectedVersion);
+
+    // up to limit tasks in due date order after the given due date and id, pass null for the first page
+    List<Task> getTasksPage(LocalDate afterDueDate, int afterId, int limit);
+
+    // every task in due date order without loading them all at once, returns how many there were
+    long forEachTask(Consumer<? super Task> action);
+
+    List<Task> query(TaskQuery query);
+
+    // the k most urgent open tasks, most urgent first
+    List<Task> topUrgent(int k, Urgency urgency, LocalDate today);
+
+    // counts for the dashboard, worked out without building a Task per row. An empty summary if it fails.
+    TaskSummary summary(LocalDate today);
+
+    // false if searchByTitle can't be used, TaskManager then searches with its own TitleIndex
+    boolean isTitleSearchAvailable();
+
+    List<Task> searchByTitle(String text, int limit);
+
+    // the bulk changes return how many tasks were changed
+    int markCompleted(Collection<Integer> ids, boolean completed);
+
+    int reprioritize(TaskQuery query, int newPriority);
+
+    int deleteTasks(Collection<Integer> ids);
+
+    // moves up to limit tasks that were completed before completedBefore out of the tasks every read looks at, into an
+    // archive that is only read by a TaskQuery with includeArchived. Returns the moved tasks. Stores without an
+    // archive keep every task where it is.
+    default List<Task> archiveCompleted(LocalDate completedBefore, int limit) {
+        return List.of();
+    }
+
+    // gives up to pages unused pages of the file back to the file system, returns how many it gave back
+    default int reclaimSpace(int pages) {
+        return 0;
+    }
+
+    // the tasks with a Recurrence, as they are stored - one each, with their first occurrence as due date. Stores
+    // that can't keep a Recurrence store every task as happening once, and have none.
+    default List<Task> getRecurringTasks() {
+        return List.of();
+    }
+
+    // the dates of the occurrences that were marked completed, by task id - nothing is stored for the others
+    default Map<Integer, Set<LocalDate>> getCompletedOccurrences() {
+        return Map.of();
+    }
+
+    // marks one occurrence of a recurring task completed or open again, false if id isn't a recurring task
+    default boolean setOccurrenceCompleted(int id, LocalDate date, boolean completed) {
+        return false;
+    }
+
+    // nothing to do for SQLite, the connections belong to DatabaseHelper
+    @Override
+    default void close() {
+    }
+}
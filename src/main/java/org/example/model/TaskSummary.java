@@ -0,0 +1,54 @@
+package org.example.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+// the counts behind the dashboard, as of one day:
+//   tasks by priority and completion status, and how many open tasks are overdue, due today and due this week
+// "this week" runs from today to the coming Sunday. The repositories count with aggregate queries instead of loading
+// tasks, see TaskRepository.summary, and SummaryCounters keeps the same numbers up to date as tasks change.
+public class TaskSummary {
+    private final LocalDate today;
+    // indexed by priority 1 to 3, index 0 is unused
+    private final int[] open;
+    private final int[] completed;
+    private final int overdue;
+    private final int dueToday;
+    private final int dueThisWeek;
+
+    public TaskSummary(LocalDate today, int[] open, int[] completed, int overdue, int dueToday, int dueThisWeek) {
+        this.today = today;
+        this.open = open.clone();
+        this.completed = completed.clone();
+        this.overdue = overdue;
+        this.dueToday = dueToday;
+        this.dueThisWeek = dueThisWeek;
+    }
+
+    // the last day that still counts as this week
+    public static LocalDate weekEnd(LocalDate today) {
+        return today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+    }
+
+    public LocalDate getToday() { return today; }
+
+    public int getOpen(int priority) { return open[priority]; }
+
+    public int getCompleted(int priority) { return completed[priority]; }
+
+    public int getTotal(int priority) { return open[priority] + completed[priority]; }
+
+    public int getOpenTotal() { return open[1] + open[2] + open[3]; }
+
+    public int getCompletedTotal() { return completed[1] + completed[2] + completed[3]; }
+
+    public int getTotal() { return getOpenTotal() + getCompletedTotal(); }
+
+    public int getOverdue() { return overdue; }
+
+    public int getDueToday() { return dueToday; }
+
+    // includes the tasks due today
+    public int getDueThisWeek() { return dueThisWeek; }
+}
@@ -0,0 +1,31 @@
+package org.example.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// splits a title (or a search) into lower case words the same way SQLite's FTS5 tokenizer does - runs of letters and
+// digits, everything else separates them - so the database search and TitleIndex agree on what a word is
+public class TitleWords {
+
+    private TitleWords() {
+    }
+
+    public static List<String> split(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
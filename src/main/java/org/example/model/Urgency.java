@@ -0,0 +1,50 @@
+package org.example.model;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+// how urgent an open task is - the higher the score the sooner it should be worked on:
+//   priorityWeight * (4 - priority) + dayWeight * (days since it was due) + overdueWeight if it is overdue
+// "days since it was due" is negative for tasks due in the future, so tasks further away score lower.
+// The weights are read from system properties (e.g. -Dtasktracker.urgency.priorityWeight=5) like DatabaseHelper.Settings.
+public class Urgency {
+    private double priorityWeight = doubleProperty("tasktracker.urgency.priorityWeight", 10);
+    private double dayWeight = doubleProperty("tasktracker.urgency.dayWeight", 1);
+    private double overdueWeight = doubleProperty("tasktracker.urgency.overdueWeight", 20);
+
+    public double getPriorityWeight() { return priorityWeight; }
+
+    public Urgency setPriorityWeight(double priorityWeight) { this.priorityWeight = priorityWeight; return this; }
+
+    public double getDayWeight() { return dayWeight; }
+
+    public Urgency setDayWeight(double dayWeight) { this.dayWeight = dayWeight; return this; }
+
+    public double getOverdueWeight() { return overdueWeight; }
+
+    public Urgency setOverdueWeight(double overdueWeight) { this.overdueWeight = overdueWeight; return this; }
+
+    public double score(Task task, LocalDate today) {
+        return score(task.getPriority(), task.getDueDate().toEpochDay(), today.toEpochDay());
+    }
+
+    // the same score from the bare fields, for stores that don't keep Task objects
+    public double score(int priority, long dueEpochDay, long todayEpochDay) {
+        long daysLate = todayEpochDay - dueEpochDay;
+        return priorityWeight * (4 - priority)
+                + dayWeight * daysLate
+                + (daysLate > 0 ? overdueWeight : 0);
+    }
+
+    // most urgent first, ties go to the sooner due date and then the lower id - the same order as TaskDao.topUrgent
+    public Comparator<Task> mostUrgentFirst(LocalDate today) {
+        return Comparator.<Task>comparingDouble(task -> -score(task, today))
+                .thenComparing(Task::getDueDate)
+                .thenComparingInt(Task::getId);
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.model;
+
+// what a compare-and-set update or delete did, see TaskRepository.compareAndUpdate
+public enum WriteResult {
+    DONE,
+    // there is no task with that id (any more)
+    NOT_FOUND,
+    // someone changed the task since it was read, so nothing was written - read it again and retry
+    CONFLICT,
+    // the storage reported an error, already printed
+    FAILED
+}
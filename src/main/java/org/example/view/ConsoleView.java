@@ -1,20 +1,37 @@
 package org.example.view;
 
+import org.example.controller.MaterializedView;
+import org.example.controller.ReminderScheduler;
 import org.example.controller.TaskManager;
 import org.example.model.DatabaseHelper;
+import org.example.model.Metrics;
+import org.example.model.Recurrence;
 import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.example.model.TaskSummary;
+import org.example.model.WriteResult;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.Function;
 
 // This is what is printed to the user. Since this is a console application, this class wasn't completely necessary, but
 // I added it to show I have an understanding of views and to help keep the logic and UI separate and more readable.
 
 public class ConsoleView {
+    // how many tasks "View all tasks" shows before asking to continue
+    private static final int PAGE_SIZE = 20;
+    // the most results a title search shows
+    private static final int SEARCH_LIMIT = 50;
+
     private final Scanner scanner = new Scanner(System.in);
     private final TaskManager taskManager;
     private final DatabaseHelper dbHelper;
+    private final TaskTableRenderer pagedRenderer = new TaskTableRenderer(System.out, PAGE_SIZE, this::askForNextPage);
+    private final TaskTableRenderer rawRenderer = new TaskTableRenderer(System.out);
 
     public ConsoleView(TaskManager taskManager, DatabaseHelper dbHelper) {
         this.taskManager = taskManager;
@@ -30,6 +47,9 @@ public class ConsoleView {
             System.out.println("2. View Task");
             System.out.println("3. Edit Task");
             System.out.println("4. Delete Task");
+            System.out.println("5. Statistics");
+            System.out.println("6. Most urgent tasks");
+            System.out.println("7. Summary");
             System.out.println("0. Exit");
 
             String choice = scanner.nextLine();
@@ -39,8 +59,12 @@ public class ConsoleView {
                 case "2" -> viewTask();
                 case "3" -> editTask();
                 case "4" -> deleteTask();
+                case "5" -> showStatistics();
+                case "6" -> showMostUrgent();
+                case "7" -> showSummary();
                 case "0" -> {
                     System.out.println("Exiting...");
+                    taskManager.close(); // writes anything still queued
                     dbHelper.closeConnection();
                     return;
                 }
@@ -83,13 +107,39 @@ public class ConsoleView {
             }
         }
 
+        // a repeating task is stored once, the due date is its first occurrence
+        Recurrence recurrence = null;
+        while (true) {
+            System.out.println("Does the task repeat? (e.g. daily, weekly/2, monthly/1/2026-12-31 - blank for no):");
+            String repeat = scanner.nextLine();
+            if (repeat.isBlank()) {
+                break;
+            }
+            try {
+                recurrence = Recurrence.parse(repeat);
+                break;
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid entry, use daily, weekly or monthly, then /interval and /until date if needed.");
+            }
+        }
+
         // Call the TaskManager to add the task
-        taskManager.addTask(title, dueDate, priority);
+        taskManager.addTask(title, dueDate, priority, recurrence);
         System.out.println("Task added successfully.");
     }
 
     // this shows the user the viewing tasks menu.
     private void viewTask() {
+        // the views the filter screens read from - kept up to date while this menu is open, dropped once it is left
+        List<TaskQuery> openViews = new ArrayList<>();
+        try {
+            viewTaskMenu(openViews);
+        } finally {
+            openViews.forEach(taskManager::dropView);
+        }
+    }
+
+    private void viewTaskMenu(List<TaskQuery> openViews) {
         while (true) {
             // the user will choose their filtering option or choose to view all tasks
             System.out.println("\n-- View Task --");
@@ -97,6 +147,8 @@ public class ConsoleView {
             System.out.println("2. Filter by Date");
             System.out.println("3. Filter by priority");
             System.out.println("4. Filter by completion status");
+            System.out.println("5. Search by title");
+            System.out.println("6. Combine filters");
             System.out.println("0. Back");
             System.out.println("Choose an option: ");
 
@@ -104,13 +156,10 @@ public class ConsoleView {
             switch (input) {
                 case "1" -> {
                     // these will be sorted by date in ascending order - the soonest due date will come first.
-                    List<Task> allTasks = taskManager.viewAllTasks();
-                    if (allTasks.isEmpty()) {
+                    // They are shown one page at a time so a big database doesn't have to be loaded all at once.
+                    if (!printPages("\n==== All Tasks ====", after -> taskManager.viewTasksPage(after, PAGE_SIZE))) {
                         System.out.println("There are no tasks in the database.");
                         return;
-                    } else {
-                        System.out.println("\n==== All Tasks ====");
-                        printTasks(allTasks);
                     }
                 }
                 case "2" -> {
@@ -139,12 +188,10 @@ public class ConsoleView {
                     if (priority < 1 || priority > 3) {
                         System.out.println("Invalid entry, please enter a number between 1 and 3.");
                     } else {
-                        List<Task> filteredTasks = taskManager.filterByPriority(priority);
-                        if (filteredTasks.isEmpty()) {
+                        // opening this screen again while the menu is open doesn't query anything, see openView
+                        MaterializedView view = openView(openViews, new TaskQuery().priorities(priority));
+                        if (!printPages("Tasks found for " + priority + ":", after -> view.page(after, PAGE_SIZE))) {
                             System.out.println("No tasks found for " + priority);
-                        } else {
-                            System.out.println("Tasks found for " + priority + ":");
-                            printTasks(filteredTasks);
                         }
                     }
                 }
@@ -152,15 +199,26 @@ public class ConsoleView {
                     // user can sort tasks by completion
                     System.out.println("Enter the completion status (true for completed, false for not completed:");
                     boolean isCompleted = Boolean.parseBoolean(scanner.nextLine());
-                    List<Task> filteredTasks = taskManager.filterTasksByCompletionStatus(isCompleted);
+                    MaterializedView view = openView(openViews, new TaskQuery().completed(isCompleted));
 
-                    if (filteredTasks.isEmpty()) {
+                    if (!printPages("Tasks with completion status " + isCompleted + ":", after -> view.page(after, PAGE_SIZE))) {
                         System.out.println("No " + isCompleted + " completed tasks found.");
+                    }
+                }
+                case "5" -> {
+                    // matches the start of words, so "mil" finds "Buy milk" - the best matches are shown first
+                    System.out.println("Enter the words to search for:");
+                    String query = scanner.nextLine();
+                    List<Task> foundTasks = taskManager.searchByTitle(query, SEARCH_LIMIT);
+
+                    if (foundTasks.isEmpty()) {
+                        System.out.println("No tasks found for \"" + query.trim() + "\"");
                     } else {
-                        System.out.println("Tasks with completion status " + isCompleted + ":");
-                        printTasks(filteredTasks);
+                        System.out.println("Tasks matching \"" + query.trim() + "\":");
+                        printTasks(foundTasks);
                     }
                 }
+                case "6" -> combineFilters();
                 case "0" -> { return; }
                 default -> System.out.println("Invalid input");
             }
@@ -168,6 +226,72 @@ public class ConsoleView {
 
     }
 
+    // asks for each filter in turn, leaving one blank means it doesn't filter. All of them are sent to the
+    // database as one query instead of filtering one list after another.
+    private void combineFilters() {
+        TaskQuery query = new TaskQuery();
+        try {
+            System.out.println("Due on or after (YYYY-MM-DD, blank for any):");
+            LocalDate from = parseOptionalDate(scanner.nextLine());
+            System.out.println("Due on or before (YYYY-MM-DD, blank for any):");
+            LocalDate to = parseOptionalDate(scanner.nextLine());
+            query.dueBetween(from, to);
+
+            System.out.println("Priorities, e.g. 1 or 1,2 (blank for any):");
+            for (String priority : scanner.nextLine().split("[,\\s]+")) {
+                if (!priority.isEmpty()) {
+                    query.priorities(Integer.parseInt(priority));
+                }
+            }
+
+            System.out.println("Completed? (true/false, blank for any):");
+            String completedInput = scanner.nextLine().trim();
+            if (!completedInput.isEmpty()) {
+                if (!completedInput.equalsIgnoreCase("true") && !completedInput.equalsIgnoreCase("false")) {
+                    System.out.println("Invalid entry, please enter 'true' or 'false'.");
+                    return;
+                }
+                query.completed(Boolean.parseBoolean(completedInput));
+            }
+            // only completed tasks are ever archived, see TaskArchiver
+            if (!Boolean.FALSE.equals(query.getCompleted())) {
+                System.out.println("Include archived tasks? (yes/no, blank for no):");
+                query.includeArchived(scanner.nextLine().trim().equalsIgnoreCase("yes"));
+            }
+
+            System.out.println("Title contains (blank for any):");
+            query.titleContains(scanner.nextLine());
+
+            System.out.println("Sort by: 1. Due date  2. Priority  3. Newest first (blank for due date)");
+            switch (scanner.nextLine().trim()) {
+                case "2" -> query.orderBy(TaskQuery.Order.PRIORITY);
+                case "3" -> query.orderBy(TaskQuery.Order.NEWEST);
+                default -> query.orderBy(TaskQuery.Order.DUE_DATE);
+            }
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format. Please try again using YYYY-MM-DD.");
+            return;
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid priority. Please enter numbers between 1 and 3.");
+            return;
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        List<Task> tasks = taskManager.query(query);
+        if (tasks.isEmpty()) {
+            System.out.println("No tasks match those filters.");
+        } else {
+            System.out.println(tasks.size() + " matching tasks:");
+            printTasks(tasks);
+        }
+    }
+
+    private static LocalDate parseOptionalDate(String input) {
+        return input.isBlank() ? null : LocalDate.parse(input.trim());
+    }
+
     // this will run when the user wants to edit a task
     private void editTask() {
         System.out.println("Enter a task ID for the task you would like to edit: ");
@@ -219,7 +343,10 @@ public class ConsoleView {
                     System.out.println("Enter the new title:");
                     String newTitle = scanner.nextLine();
                     taskToEdit.setTitle(newTitle);
-                    taskManager.updateTask(taskToEdit);
+                    taskToEdit = saveEdit(taskToEdit);
+                    if (taskToEdit == null) {
+                        return;
+                    }
                 }
                 case 2 -> {
                     LocalDate newDueDate = null;
@@ -228,7 +355,7 @@ public class ConsoleView {
                         try {
                             newDueDate = LocalDate.parse(scanner.nextLine());
                             taskToEdit.setDueDate(newDueDate);
-                            taskManager.updateTask(taskToEdit);
+                            saveEdit(taskToEdit);
                         } catch (Exception e) {
                             System.out.println("Invalid date format. Please try again.");
                         }
@@ -245,7 +372,7 @@ public class ConsoleView {
                                 System.out.println("Invalid entry, please enter a number between 1 and 3.");
                             } else {
                                 taskToEdit.setPriority(newPriority);
-                                taskManager.updateTask(taskToEdit);
+                                saveEdit(taskToEdit);
                             }
                         } catch (NumberFormatException e) {
                             System.out.println("Invalid priority. Please enter a number.");
@@ -259,9 +386,18 @@ public class ConsoleView {
                         String completedInput = scanner.nextLine().trim();
                         if (completedInput.equalsIgnoreCase("true") || completedInput.equalsIgnoreCase("false")) {
                             boolean newCompleted = Boolean.parseBoolean(completedInput);
+                            if (taskToEdit.isRecurring() && editOccurrence(taskToEdit, newCompleted)) {
+                                break;
+                            }
                             taskToEdit.setCompleted(newCompleted);
-                            taskManager.updateTask(taskToEdit);
-                            System.out.println("Completion status updated.");
+                            Task saved = saveEdit(taskToEdit);
+                            if (saved == null) {
+                                return;
+                            }
+                            if (saved == taskToEdit) {
+                                System.out.println("Completion status updated.");
+                            }
+                            taskToEdit = saved;
                             break;
                         } else {
                             System.out.println("Invalid entry, please enter 'true' or 'false'.");
@@ -272,6 +408,52 @@ public class ConsoleView {
         }
     }
 
+    // a repeating task is completed one occurrence at a time - returns false if the user wants the whole task instead
+    private boolean editOccurrence(Task task, boolean completed) {
+        while (true) {
+            System.out.println("This task repeats (" + task.getRecurrence() + "). Enter the date of the occurrence " +
+                    "(YYYY-MM-DD), or blank for every occurrence:");
+            String input = scanner.nextLine();
+            if (input.isBlank()) {
+                return false;
+            }
+            try {
+                if (taskManager.setOccurrenceCompleted(task.getId(), LocalDate.parse(input.trim()), completed)) {
+                    System.out.println("Completion status updated.");
+                    return true;
+                }
+                System.out.println("The task doesn't repeat on that date. Please try again.");
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date format. Please try again.");
+            }
+        }
+    }
+
+    // saves the edit only if nobody else changed the task since it was shown. Returns the task to keep editing - the
+    // same one if it was saved, the current one if someone else changed it first, null if it was deleted.
+    private Task saveEdit(Task task) {
+        WriteResult result = taskManager.compareAndUpdate(task);
+        if (result == WriteResult.DONE) {
+            return task;
+        }
+        if (result == WriteResult.NOT_FOUND) {
+            System.out.println("This task was deleted in the meantime, the change was not saved.");
+            return null;
+        }
+        if (result == WriteResult.FAILED) {
+            System.out.println("The change could not be saved, please try again.");
+            return task;
+        }
+        Task current = taskManager.getTaskById(task.getId());
+        if (current == null) {
+            System.out.println("This task was deleted in the meantime, the change was not saved.");
+            return null;
+        }
+        System.out.println("Someone else changed this task in the meantime, so your change was not saved. It is now:");
+        System.out.println(current);
+        return current;
+    }
+
     // user can delete a task by the task ID - they use the view tasks menu to find the task ID if they don't know it, this does not show the tasks
     private void deleteTask() {
         System.out.println("Enter a task ID for the task you would like to delete: ");
@@ -299,8 +481,17 @@ public class ConsoleView {
         String confirmation = scanner.nextLine().trim();
 
         if (confirmation.equalsIgnoreCase("yes")) {
-            taskManager.deleteTask(taskId); // Delete the task
-            System.out.println("Task with task ID " + taskId + " deleted.");
+            // only if it is still the task that was shown
+            WriteResult result = taskManager.compareAndDelete(taskId, taskToDelete.getVersion());
+            if (result == WriteResult.DONE) {
+                System.out.println("Task with task ID " + taskId + " deleted.");
+            } else if (result == WriteResult.CONFLICT) {
+                System.out.println("Someone else changed this task in the meantime, it was not deleted.");
+            } else if (result == WriteResult.NOT_FOUND) {
+                System.out.println("Task with task ID " + taskId + " was already deleted.");
+            } else {
+                System.out.println("The task could not be deleted, please try again.");
+            }
         } else if (confirmation.equalsIgnoreCase("no")) {
             System.out.println("Task deletion cancelled.");
         } else {
@@ -308,17 +499,106 @@ public class ConsoleView {
         }
     }
 
+    // the next tasks to work on - overdue and high priority tasks first, see Urgency
+    private void showMostUrgent() {
+        List<Task> tasks = taskManager.topUrgent(PAGE_SIZE);
+        if (tasks.isEmpty()) {
+            System.out.println("There are no open tasks.");
+            return;
+        }
+        System.out.println("\n==== Most Urgent Tasks ====");
+        printTasks(tasks);
+    }
+
+    // called from the reminder thread while the menu waits for input, so it goes on its own lines
+    public void showReminder(ReminderScheduler.Kind kind, Task task) {
+        String when = kind == ReminderScheduler.Kind.DUE ? "is due today" : "is overdue";
+        System.out.println("\n** Reminder: task " + task.getId() + " \"" + task.getTitle() + "\" " + when + " **");
+    }
+
+    // counts only, no task is loaded for this - see TaskManager.summary
+    private void showSummary() {
+        TaskSummary summary = taskManager.summary();
+        System.out.println("\n==== Summary for " + summary.getToday() + " ====");
+        System.out.printf("%-10s %8s %10s %8s%n", "Priority", "Open", "Completed", "Total");
+        for (int priority = 1; priority <= 3; priority++) {
+            System.out.printf("%-10d %8d %10d %8d%n", priority, summary.getOpen(priority),
+                    summary.getCompleted(priority), summary.getTotal(priority));
+        }
+        System.out.printf("%-10s %8d %10d %8d%n", "All", summary.getOpenTotal(), summary.getCompletedTotal(),
+                summary.getTotal());
+        System.out.println("Overdue: " + summary.getOverdue());
+        System.out.println("Due today: " + summary.getDueToday());
+        System.out.println("Due this week: " + summary.getDueThisWeek());
+    }
+
+    // how often each operation has run and how long it took, see Metrics
+    private void showStatistics() {
+        while (true) {
+            System.out.println("\n-- Statistics --");
+            if (Metrics.isEnabled()) {
+                System.out.print(Metrics.report());
+            } else {
+                System.out.println("Statistics are off. Turn them on here or start with -Dtasktracker.metrics=true.");
+            }
+            System.out.println("1. Refresh");
+            System.out.println("2. Turn statistics " + (Metrics.isEnabled() ? "off" : "on"));
+            System.out.println("3. Reset");
+            System.out.println("0. Back");
+
+            switch (scanner.nextLine().trim()) {
+                case "1" -> { }
+                case "2" -> Metrics.setEnabled(!Metrics.isEnabled());
+                case "3" -> Metrics.reset();
+                case "0" -> { return; }
+                default -> System.out.println("Invalid input");
+            }
+        }
+    }
+
+    // on a terminal long lists are shown a page at a time, when the output is piped everything is printed in one go
     public void printTasks(List<Task> tasks) {
-        // Print table header
-        System.out.println("+-------+----------------------|------------+-----------+------------+");
-        System.out.println("| TaskID| Title                | Due Date  | Priority | Completed  |");
-        System.out.println("+-------+----------------------|------------+-----------+------------+");
+        TaskTableRenderer renderer = System.console() != null ? pagedRenderer : rawRenderer;
+        renderer.render(tasks);
+    }
 
-        // Print each task using its custom toString() method
-        tasks.forEach(System.out::println);
+    // prints the heading and the first page, then every next page the user asks for - pageAfter gets the last task
+    // of the page before, or null for the first one. False if there was nothing to print.
+    private boolean printPages(String heading, Function<Task, List<Task>> pageAfter) {
+        List<Task> page = pageAfter.apply(null);
+        if (page.isEmpty()) {
+            return false;
+        }
+        System.out.println(heading);
+        while (true) {
+            printTasks(page);
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            List<Task> nextPage = pageAfter.apply(page.get(page.size() - 1));
+            if (nextPage.isEmpty()) {
+                break;
+            }
+            if (!askForNextPage()) {
+                break;
+            }
+            page = nextPage;
+        }
+        return true;
+    }
+
+    // the view for query, made the first time a screen asks for it and remembered in openViews so viewTask drops it
+    // again - it only takes up memory and keeps up with every change while the menu is open
+    private MaterializedView openView(List<TaskQuery> openViews, TaskQuery query) {
+        if (!openViews.contains(query)) {
+            openViews.add(query);
+        }
+        return taskManager.view(query);
+    }
 
-        // Print table footer
-        System.out.println("+-------+----------------------|------------+-----------+------------+");
+    private boolean askForNextPage() {
+        System.out.println("Press Enter for the next page, or type 'q' to stop:");
+        return !scanner.nextLine().trim().equalsIgnoreCase("q");
     }
 
 }
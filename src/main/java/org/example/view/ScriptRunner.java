@@ -0,0 +1,274 @@
+package org.example.view;
+
+import org.example.controller.TaskManager;
+import org.example.model.Recurrence;
+import org.example.model.Task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// runs commands without the menus, for scripts and automation. One command per line:
+//   add <YYYY-MM-DD> <priority> <title...>
+//   update <id> title <new title...> | update <id> date <YYYY-MM-DD> | update <id> priority <1-3> | update <id> completed <true/false>
+//   update <id> repeat <daily|weekly|monthly[/interval[/until]]|none>
+//   delete <id>
+//   get <id>
+//   list
+//   filter date <YYYY-MM-DD> | filter priority <1-3> | filter completed <true/false>
+//   urgent [k]                 the k (default 20) open tasks to work on next, most urgent first
+//   search <words...>          tasks with title words starting with every word, best matches first (at most 100)
+// Blank lines and lines starting with # are skipped. Output is tab separated, one record per line:
+//   ok <command> <id>          after a successful add, update or delete
+//   task <id> <title> <due date> <priority> <completed>
+//   count <n>                  after the task lines of a get, list, filter, search or urgent
+//   error <line> <message>
+// Writes that follow each other are grouped into one transaction (up to MAX_GROUP of them), a read commits them first.
+// If that transaction fails, an error on the group's first line says so, even after the ok lines of its writes.
+public class ScriptRunner {
+    private static final int MAX_GROUP = 1000;
+    private static final int SEARCH_LIMIT = 100;
+    private static final int DEFAULT_URGENT = 20;
+    private static final Set<String> WRITE_COMMANDS = Set.of("add", "update", "delete");
+    private static final Set<String> COMMANDS = Set.of("add", "update", "delete", "get", "list", "filter", "search", "urgent");
+
+    private final TaskManager taskManager;
+    private final Writer out;
+    private final List<String> pendingWrites = new ArrayList<>();
+    private final List<Integer> pendingLineNumbers = new ArrayList<>();
+    private int errors;
+
+    public ScriptRunner(TaskManager taskManager, OutputStream out) {
+        this.taskManager = taskManager;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    public static boolean isCommand(String word) {
+        return COMMANDS.contains(word);
+    }
+
+    // runs every line from the reader, returns the number of commands that failed
+    public int run(BufferedReader reader) throws IOException {
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            execute(line, lineNumber);
+        }
+        finish();
+        return errors;
+    }
+
+    // runs a single command, e.g. one given on the command line
+    public int runCommand(String command) {
+        execute(command, 1);
+        finish();
+        return errors;
+    }
+
+    private void execute(String line, int lineNumber) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return;
+        }
+        String command = trimmed.split("\\s+", 2)[0].toLowerCase();
+        if (WRITE_COMMANDS.contains(command)) {
+            pendingWrites.add(trimmed);
+            pendingLineNumbers.add(lineNumber);
+            if (pendingWrites.size() == MAX_GROUP) {
+                flushWrites();
+            }
+        } else {
+            // reads use other connections, so the writes before them have to be committed first
+            flushWrites();
+            runOne(trimmed, lineNumber);
+        }
+    }
+
+    private void finish() {
+        flushWrites();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushWrites() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        boolean committed = taskManager.inTransaction(() -> {
+            for (int i = 0; i < pendingWrites.size(); i++) {
+                runOne(pendingWrites.get(i), pendingLineNumbers.get(i));
+            }
+        });
+        if (!committed) {
+            int last = pendingLineNumbers.get(pendingLineNumbers.size() - 1);
+            error(pendingLineNumbers.get(0), "rolled back, none of the writes up to line " + last + " were kept");
+        }
+        pendingWrites.clear();
+        pendingLineNumbers.clear();
+    }
+
+    private void runOne(String line, int lineNumber) {
+        String[] words = line.split("\\s+");
+        try {
+            switch (words[0].toLowerCase()) {
+                case "add" -> {
+                    String[] parts = line.split("\\s+", 4);
+                    requireArguments(parts, 4, "add <YYYY-MM-DD> <priority> <title>");
+                    Task task = taskManager.addTask(parts[3], LocalDate.parse(parts[1]), parsePriority(parts[2]));
+                    if (task.getId() == 0) {
+                        error(lineNumber, "task could not be saved");
+                    } else {
+                        record("ok", "add", String.valueOf(task.getId()));
+                    }
+                }
+                case "update" -> {
+                    String[] parts = line.split("\\s+", 4);
+                    requireArguments(parts, 4, "update <id> <title|date|priority|completed|repeat> <value>");
+                    int id = Integer.parseInt(parts[1]);
+                    Task task = taskManager.getTaskById(id);
+                    if (task == null) {
+                        error(lineNumber, "task " + id + " not found");
+                        return;
+                    }
+                    switch (parts[2].toLowerCase()) {
+                        case "title" -> task.setTitle(parts[3]);
+                        case "date" -> task.setDueDate(LocalDate.parse(parts[3]));
+                        case "priority" -> task.setPriority(parsePriority(parts[3]));
+                        case "completed" -> task.setCompleted(parseBoolean(parts[3]));
+                        case "repeat" -> task.setRecurrence(parts[3].equalsIgnoreCase("none") ? null : Recurrence.parse(parts[3]));
+                        default -> throw new IllegalArgumentException("unknown field " + parts[2]);
+                    }
+                    // a script sets one field and leaves the others as they are, so it doesn't matter if someone else
+                    // changed the task since it was read
+                    task.setVersion(0);
+                    if (taskManager.updateTask(task)) {
+                        record("ok", "update", String.valueOf(id));
+                    } else {
+                        error(lineNumber, "task " + id + " could not be saved");
+                    }
+                }
+                case "delete" -> {
+                    requireArguments(words, 2, "delete <id>");
+                    int id = Integer.parseInt(words[1]);
+                    if (taskManager.deleteTask(id)) {
+                        record("ok", "delete", String.valueOf(id));
+                    } else {
+                        error(lineNumber, "task " + id + " not found");
+                    }
+                }
+                case "get" -> {
+                    requireArguments(words, 2, "get <id>");
+                    Task task = taskManager.getTaskById(Integer.parseInt(words[1]));
+                    printTasks(task == null ? List.of() : List.of(task));
+                }
+                case "list" -> {
+                    long count = taskManager.forEachTask(this::printTask);
+                    record("count", String.valueOf(count));
+                }
+                case "filter" -> {
+                    requireArguments(words, 3, "filter <date|priority|completed> <value>");
+                    switch (words[1].toLowerCase()) {
+                        case "date" -> printTasks(taskManager.filterByDate(LocalDate.parse(words[2])));
+                        case "priority" -> printTasks(taskManager.filterByPriority(parsePriority(words[2])));
+                        case "completed" -> printTasks(taskManager.filterTasksByCompletionStatus(parseBoolean(words[2])));
+                        default -> throw new IllegalArgumentException("unknown filter " + words[1]);
+                    }
+                }
+                case "search" -> {
+                    String[] parts = line.split("\\s+", 2);
+                    requireArguments(parts, 2, "search <words>");
+                    printTasks(taskManager.searchByTitle(parts[1], SEARCH_LIMIT));
+                }
+                case "urgent" -> {
+                    int k = words.length > 1 ? Integer.parseInt(words[1]) : DEFAULT_URGENT;
+                    printTasks(taskManager.topUrgent(k));
+                }
+                default -> error(lineNumber, "unknown command " + words[0]);
+            }
+        } catch (DateTimeParseException e) {
+            error(lineNumber, "invalid date, use YYYY-MM-DD");
+        } catch (NumberFormatException e) {
+            error(lineNumber, "invalid number");
+        } catch (IllegalArgumentException e) {
+            error(lineNumber, e.getMessage());
+        }
+    }
+
+    private void requireArguments(String[] parts, int count, String usage) {
+        if (parts.length < count) {
+            throw new IllegalArgumentException("usage: " + usage);
+        }
+    }
+
+    private int parsePriority(String value) {
+        int priority = Integer.parseInt(value);
+        if (priority < 1 || priority > 3) {
+            throw new IllegalArgumentException("priority must be between 1 and 3");
+        }
+        return priority;
+    }
+
+    private boolean parseBoolean(String value) {
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("expected true or false");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private void printTasks(List<Task> tasks) {
+        tasks.forEach(this::printTask);
+        record("count", String.valueOf(tasks.size()));
+    }
+
+    private void printTask(Task task) {
+        record("task", String.valueOf(task.getId()), task.getTitle(), task.getDueDate().toString(),
+                String.valueOf(task.getPriority()), String.valueOf(task.isCompleted()));
+    }
+
+    private void error(int lineNumber, String message) {
+        errors++;
+        record("error", String.valueOf(lineNumber), message);
+    }
+
+    private void record(String... fields) {
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    out.write('\t');
+                }
+                writeEscaped(fields[i]);
+            }
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // tabs, newlines and backslashes inside a field are escaped so every record stays on one line
+    private void writeEscaped(String field) throws IOException {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\t' -> out.write("\\t");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\\' -> out.write("\\\\");
+                default -> out.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.view;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+// the thin client for TaskServer - sends commands to a running server and copies its answer to out.
+// It never opens the database itself, so it starts much faster than running the commands directly.
+public class TaskClient {
+    private static final byte[] ERROR_PREFIX = "error\t".getBytes(StandardCharsets.US_ASCII);
+
+    private TaskClient() {
+    }
+
+    // sends everything in commands, returns the number of commands the server reported as failed
+    public static int send(String address, InputStream commands, OutputStream out) throws IOException {
+        SocketAddress serverAddress = TaskServer.parseAddress(address);
+        try (SocketChannel channel = serverAddress instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open()) {
+            channel.connect(serverAddress);
+
+            // commands are sent from a second thread while this one reads the answer, so a long script can't fill up
+            // both directions of the connection and leave the client and the server waiting on each other
+            IOException[] sendError = new IOException[1];
+            Thread sender = new Thread(() -> {
+                try {
+                    byte[] bytes = new byte[8192];
+                    int read;
+                    while ((read = commands.read(bytes)) != -1) {
+                        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    }
+                    channel.shutdownOutput();
+                } catch (IOException e) {
+                    sendError[0] = e;
+                }
+            }, "task-client-sender");
+            sender.start();
+
+            int errors = copyAnswer(channel, out);
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (sendError[0] != null) {
+                throw sendError[0];
+            }
+            return errors;
+        }
+    }
+
+    public static int send(String address, String command, OutputStream out) throws IOException {
+        return send(address, new ByteArrayInputStream((command + "\n").getBytes(StandardCharsets.UTF_8)), out);
+    }
+
+    private static int copyAnswer(SocketChannel channel, OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        int errors = 0;
+        int matched = 0; // how much of "error\t" the current line has matched so far, -1 once it can't match
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < buffer.limit(); i++) {
+                byte b = bytes[i];
+                if (b == '\n') {
+                    matched = 0;
+                } else if (matched >= 0 && matched < ERROR_PREFIX.length) {
+                    matched = b == ERROR_PREFIX[matched] ? matched + 1 : -1;
+                    if (matched == ERROR_PREFIX.length) {
+                        errors++;
+                    }
+                }
+            }
+            out.write(bytes, 0, buffer.limit());
+            buffer.clear();
+        }
+        out.flush();
+        return errors;
+    }
+}
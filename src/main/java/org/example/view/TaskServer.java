@@ -0,0 +1,107 @@
+package org.example.view;
+
+import org.example.controller.TaskManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// keeps one TaskManager (and its database connections) running so scripts don't pay for starting the JVM, loading the
+// SQLite driver and opening tasks.db on every call. Each client connection sends commands in the ScriptRunner format,
+// closes its sending side when done, and gets the ScriptRunner output back. Every client is served on its own virtual thread.
+public class TaskServer implements AutoCloseable {
+    // how long close() waits for the clients being served to finish
+    private static final long CLIENT_GRACE_SECONDS = 5;
+
+    private final TaskManager taskManager;
+    private final SocketAddress address;
+    private final ServerSocketChannel server;
+    private final ExecutorService clients;
+
+    // address is either a port number (only reachable from this machine) or the path of a Unix domain socket
+    public TaskServer(TaskManager taskManager, String address) throws IOException {
+        this.taskManager = taskManager;
+        this.address = parseAddress(address);
+        if (this.address instanceof UnixDomainSocketAddress unixAddress) {
+            Files.deleteIfExists(unixAddress.getPath()); // left behind if the last server was killed
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(this.address);
+        // a client mostly waits on its socket, so a virtual thread each costs next to nothing however many connect
+        clients = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    public static SocketAddress parseAddress(String address) {
+        if (address.chars().allMatch(Character::isDigit)) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        return UnixDomainSocketAddress.of(Path.of(address));
+    }
+
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    // accepts clients until stop() or close() is called
+    public void serve() throws IOException {
+        System.err.println("Listening on " + address);
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            clients.execute(() -> handle(client));
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8))) {
+            OutputStream out = Channels.newOutputStream(client);
+            new ScriptRunner(taskManager, out).run(in);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Client failed: " + e);
+        }
+    }
+
+    // stops accepting clients, so serve() returns - the clients already connected are still served until close()
+    public void stop() throws IOException {
+        server.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        clients.shutdown();
+        try {
+            if (!clients.awaitTermination(CLIENT_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Clients still connected after " + CLIENT_GRACE_SECONDS + "s, closing anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (address instanceof UnixDomainSocketAddress unixAddress) {
+            Files.deleteIfExists(unixAddress.getPath());
+        }
+    }
+}
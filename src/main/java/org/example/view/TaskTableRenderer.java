@@ -0,0 +1,146 @@
+package org.example.view;
+
+import org.example.model.Task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.function.BooleanSupplier;
+
+// prints tasks as the same table Task.toString() and ConsoleView always used, but without String.format: the column
+// widths are fixed up front, each row is built in one reused StringBuilder, and the output goes through a big buffer
+// that is only flushed at the end (raw mode) or at the end of each page (page mode).
+public class TaskTableRenderer {
+    private static final String BORDER = "+-------+----------------------|------------+-----------+------------+";
+    private static final String HEADER = "| TaskID| Title                | Due Date  | Priority | Completed  |";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // the column layout, the same as "| %-5d | %-20s | %-10s | %-10d | %-10b |" - values are left aligned and padded
+    private static final int ID_WIDTH = 5;
+    private static final int TITLE_WIDTH = 20;
+    private static final int DATE_WIDTH = 10;
+    private static final int PRIORITY_WIDTH = 10;
+    private static final int COMPLETED_WIDTH = 10;
+
+    private final Writer out;
+    private final int pageSize;
+    private final BooleanSupplier nextPage;
+    private final StringBuilder line = new StringBuilder(128);
+
+    // raw mode - every row in one go, for piping into a file or another program
+    public TaskTableRenderer(OutputStream out) {
+        this(out, 0, () -> true);
+    }
+
+    // page mode - after pageSize rows the page is flushed and nextPage is asked whether to carry on
+    public TaskTableRenderer(OutputStream out, int pageSize, BooleanSupplier nextPage) {
+        // the stream isn't ours (usually System.out), so it is only ever flushed, never closed
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.pageSize = pageSize;
+        this.nextPage = nextPage;
+    }
+
+    // prints the whole table and returns how many rows were printed
+    public long render(Iterable<Task> tasks) {
+        long rows = 0;
+        try {
+            Iterator<Task> iterator = tasks.iterator();
+            writeHeader();
+            int rowsOnPage = 0;
+            while (iterator.hasNext()) {
+                writeRow(iterator.next());
+                rows++;
+                rowsOnPage++;
+                if (pageSize > 0 && rowsOnPage == pageSize && iterator.hasNext()) {
+                    out.write(BORDER);
+                    out.write('\n');
+                    out.flush();
+                    if (!nextPage.getAsBoolean()) {
+                        return rows;
+                    }
+                    writeHeader();
+                    rowsOnPage = 0;
+                }
+            }
+            out.write(BORDER);
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private void writeHeader() throws IOException {
+        out.write(BORDER);
+        out.write('\n');
+        out.write(HEADER);
+        out.write('\n');
+        out.write(BORDER);
+        out.write('\n');
+    }
+
+    private void writeRow(Task task) throws IOException {
+        formatRow(task, line);
+        line.append('\n');
+        out.append(line);
+    }
+
+    // builds one row into sb, exactly what Task.toString() gives
+    static void formatRow(Task task, StringBuilder sb) {
+        sb.setLength(0);
+        sb.append("| ");
+        int start = sb.length();
+        sb.append(task.getId());
+        pad(sb, start, ID_WIDTH);
+
+        sb.append(" | ");
+        start = sb.length();
+        sb.append(task.getTitle());
+        pad(sb, start, TITLE_WIDTH);
+
+        sb.append(" | ");
+        start = sb.length();
+        appendDate(sb, task.getDueDate());
+        pad(sb, start, DATE_WIDTH);
+
+        sb.append(" | ");
+        start = sb.length();
+        sb.append(task.getPriority());
+        pad(sb, start, PRIORITY_WIDTH);
+
+        sb.append(" | ");
+        start = sb.length();
+        sb.append(task.isCompleted());
+        pad(sb, start, COMPLETED_WIDTH);
+        sb.append(" |");
+    }
+
+    private static void pad(StringBuilder sb, int start, int width) {
+        for (int i = sb.length() - start; i < width; i++) {
+            sb.append(' ');
+        }
+    }
+
+    // YYYY-MM-DD without making a new String for every row - same output as LocalDate.toString() for normal years
+    private static void appendDate(StringBuilder sb, LocalDate date) {
+        if (date == null || date.getYear() < 1000 || date.getYear() > 9999) {
+            sb.append(date);
+            return;
+        }
+        sb.append(date.getYear()).append('-');
+        appendTwoDigits(sb, date.getMonthValue());
+        sb.append('-');
+        appendTwoDigits(sb, date.getDayOfMonth());
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.example.model.Urgency;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ColumnarTaskStore has to answer every call exactly like TaskCache, so both get the same changes and are compared
+public class ColumnarTaskStoreTest {
+    private static final LocalDate START = LocalDate.of(2025, 4, 1);
+
+    private static Task randomTask(Random random, int id) {
+        return new Task(id, "Task " + id + " " + "x".repeat(random.nextInt(20)), START.plusDays(random.nextInt(30)),
+                random.nextInt(3) + 1, random.nextBoolean());
+    }
+
+    private static void assertSameTasks(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Task a = expected.get(i);
+            Task b = actual.get(i);
+            assertEquals(a.getId(), b.getId());
+            assertEquals(a.getTitle(), b.getTitle());
+            assertEquals(a.getDueDate(), b.getDueDate());
+            assertEquals(a.getPriority(), b.getPriority());
+            assertEquals(a.isCompleted(), b.isCompleted());
+        }
+    }
+
+    @Test
+    void testSameAnswersAsTaskCache() {
+        Random random = new Random(42);
+        List<Task> tasks = new ArrayList<>();
+        for (int id = 1; id <= 500; id++) {
+            tasks.add(randomTask(random, id));
+        }
+        TaskCache cache = new TaskCache();
+        ColumnarTaskStore columnar = new ColumnarTaskStore();
+        cache.load(tasks);
+        columnar.load(tasks);
+
+        // updates with longer and shorter titles, removes that move the last row, and new ids
+        for (int i = 0; i < 2000; i++) {
+            int id = random.nextInt(600) + 1;
+            if (random.nextInt(4) == 0) {
+                cache.remove(id);
+                columnar.remove(id);
+            } else {
+                Task task = randomTask(random, id);
+                cache.put(task);
+                columnar.put(task);
+            }
+        }
+
+        assertEquals(cache.size(), columnar.size());
+        assertSameTasks(cache.getAll(), columnar.getAll());
+        for (int id = 1; id <= 600; id++) {
+            assertEquals(cache.get(id) == null, columnar.get(id) == null);
+        }
+        assertSameTasks(cache.getPage(START.plusDays(10), 100, 25), columnar.getPage(START.plusDays(10), 100, 25));
+        assertSameTasks(cache.getByDate(START.plusDays(3)), columnar.getByDate(START.plusDays(3)));
+        assertSameTasks(cache.getByPriority(2), columnar.getByPriority(2));
+        assertSameTasks(cache.getByCompletionStatus(false), columnar.getByCompletionStatus(false));
+        for (TaskQuery.Order order : TaskQuery.Order.values()) {
+            TaskQuery query = new TaskQuery().dueBetween(START.plusDays(5), START.plusDays(20)).priorities(1, 3)
+                    .completed(false).titleContains("XX").orderBy(order).limit(30);
+            assertSameTasks(cache.query(query), columnar.query(query));
+        }
+        Urgency urgency = new Urgency();
+        assertSameTasks(cache.topUrgent(15, urgency, START.plusDays(12)), columnar.topUrgent(15, urgency, START.plusDays(12)));
+    }
+
+    @Test
+    void testRemoveAndTitleRewrite() {
+        ColumnarTaskStore columnar = new ColumnarTaskStore();
+        columnar.put(new Task(1, "First", START, 1, false));
+        columnar.put(new Task(2, "Second", START, 2, true));
+        columnar.put(new Task(3, "Third", START, 3, false));
+
+        columnar.remove(1); // row 0 is filled with task 3
+        columnar.put(new Task(3, "Third, with a longer title", START, 3, true));
+        columnar.put(new Task(2, "2nd", START, 2, true));
+
+        assertNull(columnar.get(1));
+        assertEquals("Third, with a longer title", columnar.get(3).getTitle());
+        assertTrue(columnar.get(3).isCompleted());
+        assertEquals("2nd", columnar.get(2).getTitle());
+        assertEquals(2, columnar.getByCompletionStatus(true).size());
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.controller;
+
+import org.example.model.LogTaskRepository;
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// change events and the views built on them, through a TaskManager on the log store so no database is needed
+public class MaterializedViewTest {
+    private static final LocalDate DATE = LocalDate.of(2025, 4, 22);
+
+    @TempDir
+    Path dir;
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        taskManager = new TaskManager(new LogTaskRepository(dir.resolve("tasks.log"), 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskManager.close();
+    }
+
+    @Test
+    void testEventsCarryBeforeAndAfter() {
+        List<TaskChange> changes = new ArrayList<>();
+        taskManager.addChangeListener(changes::add);
+
+        Task task = taskManager.addTask("Buy milk", DATE, 2);
+        Task change = new Task(task);
+        change.setCompleted(true);
+        taskManager.updateTask(change);
+        taskManager.deleteTask(task.getId());
+
+        assertEquals(3, changes.size());
+        assertEquals(TaskChange.Kind.ADD, changes.get(0).getKind());
+        assertNull(changes.get(0).getBefore());
+        assertEquals(TaskChange.Kind.UPDATE, changes.get(1).getKind());
+        assertFalse(changes.get(1).getBefore().isCompleted());
+        assertTrue(changes.get(1).getAfter().isCompleted());
+        assertEquals("Buy milk", changes.get(1).getAfter().getTitle());
+        assertEquals(TaskChange.Kind.DELETE, changes.get(2).getKind());
+        assertTrue(changes.get(2).getBefore().isCompleted());
+        assertNull(changes.get(2).getAfter());
+    }
+
+    // a partial update only reads the task before it while someone listens for the change
+    @Test
+    void testBeforeImageOnlyReadForListeners() throws IOException {
+        taskManager.close();
+        int[] reads = {0};
+        taskManager = new TaskManager(new LogTaskRepository(dir.resolve("counted.log"), 0) {
+            @Override
+            public Task filterTasksById(int id) {
+                reads[0]++;
+                return super.filterTasksById(id);
+            }
+        });
+        Task task = taskManager.addTask("Buy milk", DATE, 2);
+        Task change = new Task(task.getId(), "ignored", DATE, 1, false);
+        change.clearChanges();
+        change.setPriority(3);
+        assertTrue(taskManager.updateTask(change));
+        assertEquals(0, reads[0]);
+
+        List<TaskChange> changes = new ArrayList<>();
+        taskManager.addChangeListener(changes::add);
+        change.setPriority(1);
+        assertTrue(taskManager.updateTask(change));
+        assertEquals(1, reads[0]);
+        assertEquals("Buy milk", changes.get(0).getAfter().getTitle());
+        assertEquals(3, changes.get(0).getBefore().getPriority());
+    }
+
+    // the view follows adds, updates that move tasks in and out of it, bulk changes and deletes
+    @Test
+    void testViewFollowsChanges() {
+        Task first = taskManager.addTask("First", DATE.plusDays(2), 1);
+        taskManager.addTask("Second", DATE, 2);
+
+        TaskQuery openPriorityOne = new TaskQuery().priorities(1).completed(false);
+        MaterializedView view = taskManager.view(openPriorityOne);
+        assertSame(view, taskManager.view(new TaskQuery().priorities(1).completed(false)));
+        assertEquals(List.of("First"), titles(view));
+
+        Task third = taskManager.addTask("Third", DATE, 1);
+        assertEquals(List.of("Third", "First"), titles(view));
+
+        Task change = taskManager.getTaskById(third.getId());
+        change.setPriority(3);
+        taskManager.updateTask(change);
+        assertEquals(List.of("First"), titles(view));
+
+        taskManager.reprioritize(new TaskQuery().priorities(2), 1);
+        assertEquals(List.of("Second", "First"), titles(view));
+
+        taskManager.markCompleted(List.of(first.getId()));
+        assertEquals(List.of("Second"), titles(view));
+
+        taskManager.dropView(openPriorityOne);
+        taskManager.deleteTask(2);
+        assertEquals(List.of("Second"), titles(view)); // not followed any more
+        assertEquals(0, taskManager.view(openPriorityOne).size());
+    }
+
+    // pages carry on after the last task of the page before, as the view menu reads them
+    @Test
+    void testPages() {
+        for (int i = 0; i < 5; i++) {
+            taskManager.addTask("Task " + i, DATE.plusDays(4 - i), 1);
+        }
+        MaterializedView view = taskManager.view(new TaskQuery().priorities(1));
+        List<Task> first = view.page(null, 2);
+        assertEquals(List.of("Task 4", "Task 3"), first.stream().map(Task::getTitle).toList());
+        assertEquals(List.of("Task 2", "Task 1"), view.page(first.get(1), 2).stream().map(Task::getTitle).toList());
+        assertTrue(view.page(view.page(null, 5).get(4), 2).isEmpty());
+    }
+
+    private static List<String> titles(MaterializedView view) {
+        return view.getTasks().stream().map(Task::getTitle).toList();
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.controller;
+
+import org.example.model.BenchmarkDatabase;
+import org.example.model.DatabaseHelper;
+import org.example.model.Recurrence;
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks for weekly chores stored as recurring tasks (one row each, occurrences made when a listing asks for
+// them) against the same chores entered by hand as one row per week over the three years of BenchmarkDatabase, on top
+// of 10000 ordinary tasks. Setup prints what each way stores: the rows, the database size and, in cache mode, the heap
+// the TaskManager holds. Run with: mvn -Pbenchmark verify -Djmh.args="RecurrenceBenchmark -prof gc" to also see the
+// allocations per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RecurrenceBenchmark {
+    private static final int WEEKS = BenchmarkDatabase.DAYS / 7 + 1;
+
+    @Param({"100", "1000"})
+    public int chores;
+
+    // true enters every week of every chore as its own row, the way it had to be done before
+    @Param({"false", "true"})
+    public boolean expanded;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private BenchmarkDatabase database;
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = new BenchmarkDatabase(10_000);
+        LocalDate last = BenchmarkDatabase.FIRST_DUE_DATE.plusDays(BenchmarkDatabase.DAYS - 1);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < chores; i++) {
+            LocalDate start = BenchmarkDatabase.FIRST_DUE_DATE.plusDays(i % 7);
+            if (expanded) {
+                for (int week = 0; week < WEEKS && !start.plusWeeks(week).isAfter(last); week++) {
+                    tasks.add(new Task("Chore number " + i, start.plusWeeks(week), i % 3 + 1, false));
+                }
+            } else {
+                tasks.add(new Task(0, "Chore number " + i, start, i % 3 + 1, false,
+                        new Recurrence(Recurrence.Frequency.WEEKLY, 1, last)));
+            }
+        }
+        database.getTaskDao().addTasks(tasks);
+
+        long before = usedHeap();
+        taskManager = new TaskManager(database.getTaskDao(), cache);
+        long heap = usedHeap() - before;
+        DatabaseHelper.read(statements -> {
+            try (ResultSet rs = statements.prepare("SELECT (SELECT COUNT(*) FROM tasks), " +
+                    "(SELECT page_count FROM pragma_page_count()) * (SELECT page_size FROM pragma_page_size())").executeQuery()) {
+                rs.next();
+                System.out.printf("%n%,d rows, %,d KB database%s%n", rs.getLong(1), rs.getLong(2) / 1024,
+                        cache ? String.format(", %,d KB heap", heap / 1024) : "");
+            }
+            return null;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Task> filterByDate() {
+        int day = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.DAYS);
+        return taskManager.filterByDate(BenchmarkDatabase.FIRST_DUE_DATE.plusDays(day));
+    }
+
+    // the open tasks of one week
+    @Benchmark
+    public List<Task> queryWeek() {
+        LocalDate from = BenchmarkDatabase.FIRST_DUE_DATE.plusDays(ThreadLocalRandom.current().nextInt(BenchmarkDatabase.DAYS));
+        return taskManager.query(new TaskQuery().dueBetween(from, from.plusDays(6)).completed(false));
+    }
+
+    @Benchmark
+    public List<Task> viewTasksPage() {
+        return taskManager.viewTasksPage(null, 20);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
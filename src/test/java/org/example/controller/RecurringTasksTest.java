@@ -0,0 +1,137 @@
+package org.example.controller;
+
+import org.example.model.DatabaseHelper;
+import org.example.model.Recurrence;
+import org.example.model.Task;
+import org.example.model.TaskDao;
+import org.example.model.TaskQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecurringTasksTest {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private DatabaseHelper databaseHelper;
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void setUp() {
+        databaseHelper = new DatabaseHelper();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        taskManager.close();
+        try (Connection connection = databaseHelper.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS tasks");
+            stmt.execute("DROP TABLE IF EXISTS tasks_archive");
+            stmt.execute("DROP TABLE IF EXISTS task_occurrences");
+            stmt.execute("DROP TABLE IF EXISTS schema_version");
+        }
+        databaseHelper.closeConnection();
+    }
+
+    @Test
+    public void testOccurrencesTakeThePlaceOfTheRow() {
+        occurrencesTakeThePlaceOfTheRow(false);
+    }
+
+    @Test
+    public void testOccurrencesTakeThePlaceOfTheRowInCacheMode() {
+        occurrencesTakeThePlaceOfTheRow(true);
+    }
+
+    @Test
+    public void testPagesIncludeOccurrences() {
+        pagesIncludeOccurrences(null);
+    }
+
+    @Test
+    public void testPagesIncludeOccurrencesInCacheMode() {
+        pagesIncludeOccurrences(new TaskCache());
+    }
+
+    @Test
+    public void testPagesIncludeOccurrencesInColumnarStore() {
+        pagesIncludeOccurrences(new ColumnarTaskStore());
+    }
+
+    // a recurring task is one row, the listings show its occurrences in the dates they cover instead
+    private void occurrencesTakeThePlaceOfTheRow(boolean useCache) {
+        taskManager = new TaskManager(new TaskDao(databaseHelper), useCache);
+        Task weekly = taskManager.addTask("Take out the bins", TODAY, 2, new Recurrence(Recurrence.Frequency.WEEKLY));
+        Task once = taskManager.addTask("Dentist", TODAY.plusDays(3), 1);
+
+        assertEquals(List.of(TODAY.plusDays(7)), dueDates(taskManager.filterByDate(TODAY.plusDays(7))));
+        assertTrue(taskManager.filterByDate(TODAY.plusDays(8)).isEmpty());
+
+        List<Task> all = taskManager.viewAllTasks();
+        assertEquals(1 + RecurringTasks.HORIZON_DAYS / 7 + 1, all.size());
+        assertEquals(List.of(weekly.getId(), once.getId(), weekly.getId()),
+                all.subList(0, 3).stream().map(Task::getId).toList());
+
+        // only the occurrence that was ticked off is completed, and a date it doesn't fall on is refused
+        assertTrue(taskManager.setOccurrenceCompleted(weekly.getId(), TODAY.plusDays(7), true));
+        assertFalse(taskManager.setOccurrenceCompleted(weekly.getId(), TODAY.plusDays(8), true));
+        assertFalse(taskManager.setOccurrenceCompleted(once.getId(), once.getDueDate(), true));
+        TaskQuery open = new TaskQuery().dueBetween(TODAY, TODAY.plusDays(21)).completed(false);
+        assertEquals(List.of(TODAY, TODAY.plusDays(3), TODAY.plusDays(14), TODAY.plusDays(21)),
+                dueDates(taskManager.query(open)));
+        assertEquals(List.of(TODAY, TODAY.plusDays(3)), dueDates(taskManager.query(new TaskQuery(open).limit(2))));
+
+        // the completed occurrences are stored, so they are still there after starting again
+        taskManager.close();
+        taskManager = new TaskManager(new TaskDao(databaseHelper), useCache);
+        assertTrue(taskManager.filterByDate(TODAY.plusDays(7)).get(0).isCompleted());
+        assertFalse(taskManager.filterByDate(TODAY.plusDays(14)).get(0).isCompleted());
+
+        // a change made through an occurrence changes the whole task
+        Task occurrence = taskManager.filterByDate(TODAY.plusDays(14)).get(0);
+        occurrence.setTitle("Bins");
+        assertTrue(taskManager.updateTask(occurrence));
+        assertEquals(TODAY, taskManager.getTaskById(weekly.getId()).getDueDate());
+        assertEquals("Bins", taskManager.filterByDate(TODAY.plusDays(21)).get(0).getTitle());
+    }
+
+    // paging gives the same tasks as viewAllTasks, with every occurrence its own page key. Both start a recurring task
+    // at its first open occurrence, so the overdue ones are there too.
+    private void pagesIncludeOccurrences(TaskStore store) {
+        taskManager = new TaskManager(new TaskDao(databaseHelper), store);
+        Task plants = taskManager.addTask("Water the plants", TODAY.minusDays(10), 3,
+                new Recurrence(Recurrence.Frequency.DAILY, 2, null));
+        assertTrue(taskManager.setOccurrenceCompleted(plants.getId(), TODAY.minusDays(10), true));
+        taskManager.addTask("Pay rent", TODAY, 1, new Recurrence(Recurrence.Frequency.MONTHLY));
+        for (int i = 0; i < 10; i++) {
+            taskManager.addTask("Task " + i, TODAY.plusDays(i * 4L - 5), 2);
+        }
+
+        List<Task> paged = new ArrayList<>();
+        List<Task> page = taskManager.viewTasksPage(null, 3);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 3);
+            paged.addAll(page);
+            page = taskManager.viewTasksPage(page.get(page.size() - 1), 3);
+        }
+        List<Task> all = taskManager.viewAllTasks();
+        assertEquals(TODAY.minusDays(8), all.get(0).getDueDate());
+        assertFalse(all.get(0).isCompleted());
+        assertEquals(2, taskManager.query(new TaskQuery().recurring(true)).size());
+        assertEquals(dueDates(all), dueDates(paged));
+        assertEquals(all.stream().map(Task::getId).toList(), paged.stream().map(Task::getId).toList());
+    }
+
+    private static List<LocalDate> dueDates(List<Task> tasks) {
+        return tasks.stream().map(Task::getDueDate).toList();
+    }
+}
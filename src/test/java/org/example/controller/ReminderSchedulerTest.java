@@ -0,0 +1,95 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReminderSchedulerTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 4, 22);
+
+    // a clock the test can move forward a day at a time
+    private static class TestClock extends Clock {
+        private LocalDate today = TODAY;
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+
+        @Override
+        public Instant instant() { return today.atTime(12, 0).toInstant(ZoneOffset.UTC); }
+    }
+
+    private final TestClock clock = new TestClock();
+    private final List<String> reminders = new ArrayList<>();
+    private ReminderScheduler scheduler;
+
+    @AfterEach
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void testRemindersGoOffOnTheirDay() {
+        scheduler = new ReminderScheduler((kind, task) -> reminders.add(kind + " " + task.getTitle()), clock);
+        scheduler.load(List.of(
+                new Task(1, "Tomorrow", TODAY.plusDays(1), 1, false),
+                new Task(2, "Today", TODAY, 2, false),
+                new Task(3, "Last week", TODAY.minusDays(7), 3, false),
+                new Task(4, "Done", TODAY.plusDays(1), 1, true)));
+        assertEquals(2, scheduler.size()); // nothing for tasks already overdue or completed
+
+        assertEquals(0, scheduler.fireDue());
+        clock.today = TODAY.plusDays(1);
+        assertEquals(2, scheduler.fireDue());
+        assertEquals(List.of("DUE Tomorrow", "OVERDUE Today"), reminders);
+
+        // renaming a task keeps its reminders, moving it schedules them again
+        Task tomorrow = new Task(1, "Tomorrow", TODAY.plusDays(1), 1, false);
+        Task renamed = new Task(1, "Renamed", TODAY.plusDays(1), 1, false);
+        scheduler.taskChanged(new TaskChange(TaskChange.Kind.UPDATE, 1, tomorrow, renamed));
+        Task moved = new Task(1, "Renamed", TODAY.plusDays(3), 1, false);
+        scheduler.taskChanged(new TaskChange(TaskChange.Kind.UPDATE, 1, renamed, moved));
+        clock.today = TODAY.plusDays(2);
+        assertEquals(0, scheduler.fireDue());
+
+        // a completed task is dropped
+        Task completed = new Task(1, "Renamed", TODAY.plusDays(3), 1, true);
+        scheduler.taskChanged(new TaskChange(TaskChange.Kind.UPDATE, 1, moved, completed));
+        assertEquals(0, scheduler.size());
+        clock.today = TODAY.plusDays(5);
+        assertEquals(0, scheduler.fireDue());
+        assertEquals(2, reminders.size());
+    }
+
+    // the timer goes off by itself - a task added with a due date that has already come is reminded about right away
+    @Test
+    public void testTimerFires() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        scheduler = new ReminderScheduler((kind, task) -> {
+            if (kind == ReminderScheduler.Kind.DUE) {
+                fired.countDown();
+            }
+        }, clock);
+        scheduler.load(List.of());
+
+        Task task = new Task(1, "Due today", TODAY, 1, false);
+        scheduler.taskChanged(new TaskChange(TaskChange.Kind.ADD, 1, null, task));
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+}
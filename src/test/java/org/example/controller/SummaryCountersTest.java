@@ -0,0 +1,52 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TaskSummary;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the same tasks as TaskDaoTest.testSummary, so the counters are checked against what the SQL counts
+public class SummaryCountersTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 4, 23);
+
+    @Test
+    void testCountsFollowChanges() {
+        SummaryCounters counters = new SummaryCounters();
+        counters.load(List.of(
+                new Task(1, "Overdue", LocalDate.of(2025, 4, 20), 1, false),
+                new Task(2, "Today", TODAY, 2, false),
+                new Task(3, "Sunday", LocalDate.of(2025, 4, 27), 3, false),
+                new Task(4, "Next week", LocalDate.of(2025, 4, 28), 1, false),
+                new Task(5, "Done", LocalDate.of(2025, 4, 20), 2, true)));
+
+        TaskSummary summary = counters.summary(TODAY);
+        assertEquals(2, summary.getOpen(1));
+        assertEquals(1, summary.getCompleted(2));
+        assertEquals(5, summary.getTotal());
+        assertEquals(1, summary.getOverdue());
+        assertEquals(1, summary.getDueToday());
+        assertEquals(2, summary.getDueThisWeek());
+
+        // the overdue task is done, the one due next week moves to today, the Sunday one goes away
+        counters.setCompleted(1, true);
+        counters.put(new Task(4, "Next week", TODAY, 3, false));
+        counters.remove(3);
+        counters.remove(42);
+
+        summary = counters.summary(TODAY);
+        assertEquals(1, summary.getCompleted(1));
+        assertEquals(0, summary.getOpen(1));
+        assertEquals(1, summary.getOpen(3));
+        assertEquals(4, summary.getTotal());
+        assertEquals(0, summary.getOverdue());
+        assertEquals(2, summary.getDueToday());
+        assertEquals(2, summary.getDueThisWeek());
+
+        // a day later the tasks due today are overdue
+        assertEquals(2, counters.summary(TODAY.plusDays(1)).getOverdue());
+    }
+}
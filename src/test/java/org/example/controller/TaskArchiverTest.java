@@ -0,0 +1,71 @@
+package org.example.controller;
+
+import org.example.model.DatabaseHelper;
+import org.example.model.Task;
+import org.example.model.TaskDao;
+import org.example.model.TaskQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskArchiverTest {
+    private DatabaseHelper databaseHelper;
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        databaseHelper = new DatabaseHelper();
+        taskManager = new TaskManager(new TaskDao(databaseHelper), true);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        taskManager.close();
+        try (Connection connection = databaseHelper.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS tasks");
+            stmt.execute("DROP TABLE IF EXISTS tasks_archive");
+            stmt.execute("DROP TABLE IF EXISTS task_occurrences");
+            stmt.execute("DROP TABLE IF EXISTS schema_version");
+        }
+        databaseHelper.closeConnection();
+    }
+
+    // in cache mode an archived task leaves the cache too, and a view that includes the archive keeps it
+    @Test
+    public void testArchivedTasksLeaveTheCache() {
+        Task open = taskManager.addTask("Open", LocalDate.of(2025, 4, 22), 1);
+        Task done = taskManager.addTask("Done", LocalDate.of(2025, 4, 21), 2);
+        taskManager.markCompleted(List.of(done.getId()));
+
+        MaterializedView completed = taskManager.view(new TaskQuery().completed(true));
+        MaterializedView everything = taskManager.view(new TaskQuery().includeArchived(true));
+        List<TaskChange> changes = new ArrayList<>();
+        taskManager.addChangeListener(changes::add);
+
+        // the task was completed today, so with the default settings it stays
+        try (TaskArchiver archiver = new TaskArchiver(taskManager, new TaskArchiver.Settings())) {
+            assertEquals(0, archiver.run());
+        }
+        assertEquals(1, taskManager.archiveCompleted(LocalDate.now().plusDays(1), 10));
+
+        assertEquals(List.of(open.getId()), taskManager.viewAllTasks().stream().map(Task::getId).toList());
+        assertNull(taskManager.getTaskById(done.getId()));
+        assertEquals(0, taskManager.summary().getCompletedTotal());
+        assertEquals(1, changes.size());
+        assertEquals(TaskChange.Kind.ARCHIVE, changes.get(0).getKind());
+
+        assertEquals(0, completed.size());
+        assertEquals(2, everything.size());
+        assertEquals(2, taskManager.query(new TaskQuery().includeArchived(true)).size());
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.example.model.TaskQuery;
+import org.example.model.Urgency;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// tests the in-memory indexes of TaskCache, no database needed
+public class TaskCacheTest {
+    private TaskCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new TaskCache();
+        cache.load(List.of(
+                new Task(1, "Task 1", LocalDate.of(2025, 4, 23), 1, false),
+                new Task(2, "Task 2", LocalDate.of(2025, 4, 22), 2, true),
+                new Task(3, "Task 3", LocalDate.of(2025, 4, 22), 1, false)));
+    }
+
+    // all tasks come back soonest first, and tasks on the same day by id
+    @Test
+    void testGetAllIsSortedByDate() {
+        List<Task> tasks = cache.getAll();
+
+        assertEquals(3, tasks.size());
+        assertEquals(2, tasks.get(0).getId());
+        assertEquals(3, tasks.get(1).getId());
+        assertEquals(1, tasks.get(2).getId());
+    }
+
+    @Test
+    void testFilters() {
+        assertEquals(2, cache.getByDate(LocalDate.of(2025, 4, 22)).size());
+        assertEquals(2, cache.getByPriority(1).size());
+        assertEquals(0, cache.getByPriority(3).size());
+        assertEquals(1, cache.getByCompletionStatus(true).size());
+        assertEquals(2, cache.getByCompletionStatus(false).size());
+    }
+
+    // after an update the task should move to its new date, priority and completion status
+    @Test
+    void testPutMovesTaskBetweenIndexes() {
+        Task task = cache.get(1);
+        task.setDueDate(LocalDate.of(2025, 4, 22));
+        task.setPriority(3);
+        task.setCompleted(true);
+        cache.put(task);
+
+        assertEquals(3, cache.getByDate(LocalDate.of(2025, 4, 22)).size());
+        assertEquals(1, cache.getByPriority(1).size());
+        assertEquals(1, cache.getByPriority(3).size());
+        assertEquals(2, cache.getByCompletionStatus(true).size());
+    }
+
+    @Test
+    void testRemove() {
+        cache.remove(3);
+
+        assertNull(cache.get(3));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getByCompletionStatus(false).size());
+    }
+
+    // changing a task that was handed out must not change the cached one
+    @Test
+    void testReturnedTasksAreCopies() {
+        cache.get(1).setTitle("Changed");
+
+        assertEquals("Task 1", cache.get(1).getTitle());
+    }
+
+    // the cache should answer a TaskQuery the same way the database does
+    @Test
+    void testQuery() {
+        List<Task> open = cache.query(new TaskQuery()
+                .dueBetween(LocalDate.of(2025, 4, 22), LocalDate.of(2025, 4, 22))
+                .completed(false));
+        assertEquals(1, open.size());
+        assertEquals(3, open.get(0).getId());
+
+        List<Task> newest = cache.query(new TaskQuery().titleContains("task").orderBy(TaskQuery.Order.NEWEST).limit(2));
+        assertEquals(3, newest.get(0).getId());
+        assertEquals(2, newest.get(1).getId());
+        assertEquals(2, newest.size());
+    }
+
+    // only open tasks, most urgent first - task 3 has the better priority on the same day as task 1 is due later
+    @Test
+    void testTopUrgent() {
+        List<Task> top = cache.topUrgent(5, new Urgency(), LocalDate.of(2025, 4, 22));
+
+        assertEquals(2, top.size());
+        assertEquals(3, top.get(0).getId());
+        assertEquals(1, top.get(1).getId());
+        assertEquals(1, cache.topUrgent(1, new Urgency(), LocalDate.of(2025, 4, 22)).size());
+    }
+}
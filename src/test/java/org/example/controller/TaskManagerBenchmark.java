@@ -0,0 +1,73 @@
+package org.example.controller;
+
+import org.example.model.BenchmarkDatabase;
+import org.example.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks for the TaskManager reads, with and without the in-memory cache, run with: mvn -Pbenchmark verify
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TaskManagerBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private BenchmarkDatabase database;
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase(rows);
+        taskManager = new TaskManager(database.getTaskDao(), cache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public Task getTaskById() {
+        return taskManager.getTaskById(ThreadLocalRandom.current().nextInt(1, rows + 1));
+    }
+
+    @Benchmark
+    public List<Task> filterByDate() {
+        int day = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.DAYS);
+        return taskManager.filterByDate(BenchmarkDatabase.FIRST_DUE_DATE.plusDays(day));
+    }
+
+    @Benchmark
+    public List<Task> filterByPriority() {
+        return taskManager.filterByPriority(ThreadLocalRandom.current().nextInt(1, 4));
+    }
+
+    @Benchmark
+    public List<Task> viewTasksPage() {
+        return taskManager.viewTasksPage(null, 20);
+    }
+}
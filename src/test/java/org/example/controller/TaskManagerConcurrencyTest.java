@@ -0,0 +1,131 @@
+package org.example.controller;
+
+import org.example.model.DatabaseHelper;
+import org.example.model.Task;
+import org.example.model.TaskDao;
+import org.example.model.WriteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// several clients editing the same few tasks at once. Each one reads a task, bumps the counter in its title and writes
+// it back with compareAndUpdate, reading again after a conflict - no increment may be lost.
+public class TaskManagerConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int INCREMENTS_PER_THREAD = 200;
+    private static final int TASKS = 4;
+
+    private DatabaseHelper databaseHelper;
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        databaseHelper = new DatabaseHelper();
+        taskManager = new TaskManager(new TaskDao(databaseHelper), true);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        taskManager.close();
+        try (Connection connection = databaseHelper.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS tasks");
+            stmt.execute("DROP TABLE IF EXISTS tasks_archive");
+            stmt.execute("DROP TABLE IF EXISTS task_occurrences");
+            stmt.execute("DROP TABLE IF EXISTS schema_version");
+        }
+        databaseHelper.closeConnection();
+    }
+
+    // a group that fails to commit changes nothing in memory either, and its adds get no id
+    @Test
+    public void testRolledBackChangesAreNotKept() {
+        LocalDate date = LocalDate.of(2025, 4, 22);
+        Task kept = taskManager.addTask("Kept", date, 2);
+        Task broken = new Task(kept);
+        broken.setTitle(null); // title is NOT NULL
+
+        assertFalse(taskManager.inTransaction(() -> {
+            taskManager.addTask("Rolled back", date, 1);
+            taskManager.updateTask(broken);
+        }));
+        assertEquals(List.of("Kept"), taskManager.viewAllTasks().stream().map(Task::getTitle).toList());
+
+        taskManager.enableWriteBehind(new WriteBehindQueue.Settings().setMaxDelayMillis(10_000));
+        Task queued = taskManager.addTask("Queued", date, 1);
+        taskManager.updateTask(broken);
+        taskManager.flush();
+        assertEquals(0, queued.getId());
+        assertEquals(List.of("Kept"), taskManager.viewAllTasks().stream().map(Task::getTitle).toList());
+        assertEquals("Kept", new TaskDao(databaseHelper).filterTasksById(kept.getId()).getTitle());
+    }
+
+    @Test
+    public void testNoLostUpdates() throws Exception {
+        int[] ids = new int[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            ids[i] = taskManager.addTask("0", LocalDate.of(2025, 4, 22), 2).getId();
+        }
+
+        AtomicLong conflicts = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int first = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                        int id = ids[(first + i) % TASKS];
+                        while (true) {
+                            Task task = taskManager.getTaskById(id);
+                            task.setTitle(String.valueOf(Integer.parseInt(task.getTitle()) + 1));
+                            WriteResult result = taskManager.compareAndUpdate(task);
+                            if (result == WriteResult.DONE) {
+                                break;
+                            }
+                            assertEquals(WriteResult.CONFLICT, result);
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int updates = THREADS * INCREMENTS_PER_THREAD;
+        System.out.printf("%d updates in %.2f s (%.0f/s), %d conflicts (%.1f%% of attempts)%n", updates, seconds,
+                updates / seconds, conflicts.get(), 100.0 * conflicts.get() / (updates + conflicts.get()));
+
+        // the cache and the database must agree, and every increment is in the counters
+        TaskDao database = new TaskDao(databaseHelper);
+        int total = 0;
+        for (int id : ids) {
+            Task cached = taskManager.getTaskById(id);
+            Task stored = database.filterTasksById(id);
+            assertEquals(stored.getTitle(), cached.getTitle());
+            assertEquals(stored.getVersion(), cached.getVersion());
+            assertEquals(Integer.parseInt(stored.getTitle()) + 1, stored.getVersion());
+            total += Integer.parseInt(stored.getTitle());
+        }
+        assertEquals(updates, total);
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.controller;
+
+import org.example.model.DatabaseHelper;
+import org.example.model.Recurrence;
+import org.example.model.Task;
+import org.example.model.TaskDao;
+import org.example.model.TaskQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskTransferTest {
+    private static final String AWKWARD_TITLE = "Say \"hi\", then\nleave \\ é";
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        try (Connection connection = DatabaseHelper.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS tasks");
+            stmt.execute("DROP TABLE IF EXISTS tasks_archive");
+            stmt.execute("DROP TABLE IF EXISTS task_occurrences");
+            stmt.execute("DROP TABLE IF EXISTS schema_version");
+        }
+        DatabaseHelper.closeConnection();
+    }
+
+    // quotes, commas, line breaks and backslashes in a title should survive both formats
+    @Test
+    public void testFormatsRoundTrip() {
+        Task task = new Task(7, AWKWARD_TITLE, LocalDate.of(2025, 4, 22), 2, true);
+
+        StringBuilder csv = new StringBuilder();
+        TaskTransfer.appendCsv(task, List.of(), csv);
+        Task fromCsv = TaskTransfer.parseCsv(csv.toString(), TaskTransfer.CSV_COLUMNS).task();
+        assertEquals(AWKWARD_TITLE, fromCsv.getTitle());
+        assertEquals(LocalDate.of(2025, 4, 22), fromCsv.getDueDate());
+        assertTrue(fromCsv.isCompleted());
+
+        StringBuilder json = new StringBuilder();
+        TaskTransfer.appendJson(task, List.of(), json);
+        Task fromJson = TaskTransfer.parseJson(json.toString()).task();
+        assertEquals(AWKWARD_TITLE, fromJson.getTitle());
+        assertEquals(2, fromJson.getPriority());
+
+        // the old --import format, unquoted with commas in the title
+        assertEquals("Buy milk, eggs",
+                TaskTransfer.parseCsv("Buy milk, eggs,2025-04-22,1,false", TaskTransfer.OLD_CSV_COLUMNS).task().getTitle());
+        assertNull(TaskTransfer.parseCsv("no fields", TaskTransfer.OLD_CSV_COLUMNS));
+        assertNull(TaskTransfer.parseCsv("Bins,2025-04-22,1,false,HOURLY/1,", TaskTransfer.CSV_COLUMNS));
+        assertNull(TaskTransfer.parseJson("{\"title\":\"x\"}"));
+    }
+
+    // everything exported from one database should import into another unchanged
+    @Test
+    public void testExportThenImport() throws IOException, SQLException {
+        TaskManager taskManager = new TaskManager(new TaskDao(new DatabaseHelper()));
+        taskManager.addTask(AWKWARD_TITLE, LocalDate.of(2025, 4, 22), 1);
+        taskManager.addTask("Plain", LocalDate.of(2025, 4, 23), 3);
+        Recurrence weekly = new Recurrence(Recurrence.Frequency.WEEKLY, 1, LocalDate.of(2025, 6, 30));
+        int bins = taskManager.addTask("Bins, weekly", LocalDate.of(2025, 4, 21), 2, weekly).getId();
+        List<LocalDate> done = List.of(LocalDate.of(2025, 4, 28), LocalDate.of(2025, 5, 5));
+        for (LocalDate date : done) {
+            assertTrue(taskManager.setOccurrenceCompleted(bins, date, true));
+        }
+
+        for (TaskTransfer.Format format : TaskTransfer.Format.values()) {
+            Path file = dir.resolve("tasks." + format.name().toLowerCase());
+            assertEquals(3, taskManager.exportTasks(file, format, TaskTransfer.Progress.none()));
+            // a line that can't be read is skipped, not fatal
+            Files.writeString(file, "not a task\n", StandardOpenOption.APPEND);
+
+            long[] skipped = {0};
+            long imported = taskManager.importTasks(file, format, 1, new TaskTransfer.Progress() {
+                @Override
+                public void update(long rows, long elapsedNanos, boolean done) {
+                }
+
+                @Override
+                public void skipped(long lineNumber, String line) {
+                    skipped[0]++;
+                }
+            });
+            assertEquals(3, imported);
+            assertEquals(1, skipped[0]);
+
+            List<Task> copies = taskManager.searchByTitle("plain", 10);
+            assertEquals(2, copies.size());
+            assertEquals(AWKWARD_TITLE, taskManager.filterByDate(LocalDate.of(2025, 4, 22)).get(1).getTitle());
+
+            // the copy of the recurring task still repeats, with the same occurrences ticked off
+            List<Task> recurring = taskManager.query(new TaskQuery().recurring(true));
+            assertEquals(2, recurring.size());
+            int copy = recurring.get(1).getId();
+            assertEquals(weekly, recurring.get(1).getRecurrence());
+            assertEquals(done, taskManager.getCompletedOccurrences(copy));
+
+            // back to just the three original tasks for the next format
+            List<Integer> ids = new ArrayList<>();
+            taskManager.forEachTask(task -> ids.add(task.getId()));
+            taskManager.deleteTasks(ids.stream().filter(id -> id > bins).toList());
+        }
+    }
+}
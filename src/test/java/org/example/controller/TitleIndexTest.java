@@ -0,0 +1,52 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// tests the in-memory title search used when SQLite has no FTS5
+public class TitleIndexTest {
+    private TitleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TitleIndex();
+        index.load(List.of(
+                new Task(1, "Write the milk report", LocalDate.of(2025, 4, 22), 1, false),
+                new Task(2, "Buy milk", LocalDate.of(2025, 4, 22), 2, false),
+                new Task(3, "Silky smooth", LocalDate.of(2025, 4, 23), 3, false)));
+    }
+
+    // words are matched from their start, and shorter titles come first
+    @Test
+    void testPrefixSearch() {
+        assertEquals(List.of(2, 1), index.search("mil", 10));
+        assertEquals(List.of(2, 1), index.search("m", 10));
+        assertEquals(List.of(3), index.search("SILK", 10));
+        assertEquals(List.of(2), index.search("mil", 1));
+    }
+
+    // every word of the search has to match a word of the title
+    @Test
+    void testAllWordsMustMatch() {
+        assertEquals(List.of(1), index.search("report milk", 10));
+        assertTrue(index.search("milk bread", 10).isEmpty());
+        assertTrue(index.search("ilk", 10).isEmpty());
+        assertTrue(index.search(" ,, ", 10).isEmpty());
+    }
+
+    @Test
+    void testPutAndRemove() {
+        index.put(new Task(2, "Buy bread", LocalDate.of(2025, 4, 22), 2, false));
+        index.remove(1);
+
+        assertTrue(index.search("milk", 10).isEmpty());
+        assertEquals(List.of(2), index.search("bread", 10));
+        assertEquals(2, index.size());
+    }
+}
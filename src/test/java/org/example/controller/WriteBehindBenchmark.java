@@ -0,0 +1,86 @@
+package org.example.controller;
+
+import org.example.model.BenchmarkDatabase;
+import org.example.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// the synchronous writes against write-behind, run with: mvn -Pbenchmark verify
+//   updateTask         - how many updates per second the callers get through (throughput)
+//   updateTaskAndFlush - how long until one update is really committed (latency)
+// write-behind should win the first by a wide margin and lose a little on the second, since a flush has to wait
+// for the queue thread.
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+public class WriteBehindBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Param({"false", "true"})
+    public boolean writeBehind;
+
+    private BenchmarkDatabase database;
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase(ROWS);
+        taskManager = new TaskManager(database.getTaskDao());
+        if (writeBehind) {
+            taskManager.enableWriteBehind(new WriteBehindQueue.Settings());
+        }
+    }
+
+    // the queue is drained after every iteration so one iteration's backlog isn't counted in the next
+    @TearDown(Level.Iteration)
+    public void drain() {
+        taskManager.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        taskManager.disableWriteBehind();
+        database.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public boolean updateTask() {
+        return taskManager.updateTask(randomUpdate());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean updateTaskAndFlush() {
+        boolean updated = taskManager.updateTask(randomUpdate());
+        taskManager.flush();
+        return updated;
+    }
+
+    private static Task randomUpdate() {
+        int i = ThreadLocalRandom.current().nextInt(ROWS);
+        Task task = new Task(i + 1, null, null, 0, false);
+        task.setPriority(ThreadLocalRandom.current().nextInt(1, 4));
+        return task;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.controller;
+
+import org.example.model.Task;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// tests the grouping and merging of WriteBehindQueue with a writer that only records the groups, no database needed
+public class WriteBehindQueueTest {
+    private final List<List<Task>> addGroups = new ArrayList<>();
+    private final List<List<Task>> updateGroups = new ArrayList<>();
+    private final List<List<Integer>> deleteGroups = new ArrayList<>();
+
+    private WriteBehindQueue newQueue(WriteBehindQueue.Settings settings) {
+        return new WriteBehindQueue((adds, updates, deletes) -> {
+            synchronized (this) {
+                addGroups.add(adds);
+                updateGroups.add(updates);
+                deleteGroups.add(deletes);
+            }
+        }, settings);
+    }
+
+    // changes queued within maxDelay end up in one group, repeated updates to a task are merged into one
+    @Test
+    void testUpdatesAreMerged() {
+        WriteBehindQueue queue = newQueue(new WriteBehindQueue.Settings().setMaxDelayMillis(10_000));
+        Task task = new Task(1, "Task", LocalDate.of(2025, 4, 22), 3, false);
+        task.setPriority(1);
+        queue.update(task);
+        task.clearChanges();
+        task.setCompleted(true);
+        queue.update(task);
+        queue.add(new Task("New", LocalDate.of(2025, 4, 22), 2, false));
+        queue.update(new Task(2, "Gone", LocalDate.of(2025, 4, 22), 2, false));
+        queue.delete(2);
+        queue.flush();
+
+        assertEquals(1, updateGroups.size());
+        List<Task> updates = updateGroups.get(0);
+        assertEquals(1, updates.size());
+        assertEquals(1, updates.get(0).getPriority());
+        assertTrue(updates.get(0).isCompleted());
+        assertEquals(2, updates.get(0).getChangedFields().size());
+        assertEquals(1, addGroups.get(0).size());
+        assertEquals(List.of(2), deleteGroups.get(0));
+        queue.close();
+    }
+
+    // groups are cut at maxGroup changes, and close() writes what is left
+    @Test
+    void testGroupSizeAndClose() {
+        WriteBehindQueue queue = newQueue(new WriteBehindQueue.Settings().setMaxGroup(10).setMaxDelayMillis(10_000));
+        for (int i = 1; i <= 25; i++) {
+            queue.delete(i);
+        }
+        queue.close();
+
+        int deleted = 0;
+        for (List<Integer> group : deleteGroups) {
+            assertTrue(group.size() <= 10);
+            deleted += group.size();
+        }
+        assertEquals(25, deleted);
+        assertThrows(IllegalStateException.class, () -> queue.delete(26));
+    }
+}
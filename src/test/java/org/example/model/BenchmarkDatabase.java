@@ -0,0 +1,61 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// a throwaway tasks database in a temp directory, filled with the same made-up tasks every time, for the benchmarks
+public class BenchmarkDatabase implements AutoCloseable {
+    public static final LocalDate FIRST_DUE_DATE = LocalDate.of(2025, 1, 1);
+    public static final int DAYS = 3 * 365;
+
+    private final Path dir;
+    private final TaskDao taskDao;
+    private final int rows;
+
+    public BenchmarkDatabase(int rows) throws IOException {
+        this.rows = rows;
+        dir = Files.createTempDirectory("tasktracker-bench");
+        DatabaseHelper.configure(new DatabaseHelper.Settings().setUrl("jdbc:sqlite:" + dir.resolve("tasks.db")));
+        taskDao = new TaskDao(new DatabaseHelper());
+        taskDao.setBatchSize(10_000);
+
+        List<Task> chunk = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            chunk.add(task(i));
+            if (chunk.size() == 10_000) {
+                taskDao.addTasks(chunk);
+                chunk.clear();
+            }
+        }
+        taskDao.addTasks(chunk);
+    }
+
+    // task number i - due dates spread over three years, priorities 1 to 3, every third task completed
+    public static Task task(int i) {
+        return new Task("Task number " + i, FIRST_DUE_DATE.plusDays(i % DAYS), i % 3 + 1, i % 3 == 0);
+    }
+
+    public TaskDao getTaskDao() {
+        return taskDao;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        DatabaseHelper.closeConnection();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogTaskRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDate DATE = LocalDate.of(2025, 4, 22);
+
+    // the index is rebuilt from the file, so updates and deletes survive a reopen
+    @Test
+    public void testReopenReplaysTheLog() throws IOException {
+        Path file = dir.resolve("tasks.log");
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            Task first = new Task("First", DATE, 1, false);
+            Task second = new Task("Second", DATE.plusDays(1), 2, false);
+            log.addTask(first);
+            log.addTask(second);
+            first.setTitle("First, renamed");
+            assertTrue(log.updateTask(first));
+            assertTrue(log.deleteTask(second.getId()));
+            assertFalse(log.deleteTask(second.getId()));
+        }
+
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            assertEquals(1, log.size());
+            assertEquals(3, log.deadRecords()); // the first version of "First", "Second" and its tombstone
+            assertEquals("First, renamed", log.filterTasksById(1).getTitle());
+            assertNull(log.filterTasksById(2));
+
+            Task third = new Task("Third", DATE, 3, true);
+            log.addTask(third);
+            assertEquals(3, third.getId()); // ids aren't reused
+        }
+    }
+
+    // only the changed fields are written over the stored record, like TaskDao
+    @Test
+    public void testPartialUpdateAndQueries() throws IOException {
+        try (LogTaskRepository log = new LogTaskRepository(dir.resolve("tasks.log"), 0)) {
+            for (int i = 0; i < 10; i++) {
+                log.addTask(new Task("Task " + i, DATE.plusDays(9 - i), i % 3 + 1, i % 2 == 0));
+            }
+            Task change = new Task(4, "ignored", DATE, 1, false);
+            change.clearChanges();
+            change.setPriority(3);
+            assertTrue(log.updateTask(change));
+            assertEquals("Task 3", log.filterTasksById(4).getTitle());
+            assertEquals(3, log.filterTasksById(4).getPriority());
+
+            List<Task> all = log.getAllTasks();
+            assertEquals(10, all.size());
+            assertEquals(10, all.get(0).getId()); // sorted by due date
+            List<Task> page = log.getTasksPage(all.get(2).getDueDate(), all.get(2).getId(), 2);
+            assertEquals(List.of(all.get(3).getId(), all.get(4).getId()), page.stream().map(Task::getId).toList());
+            assertEquals(5, log.filterTasksByCompletionStatus(true).size());
+            assertEquals(1, log.filterTasksByDate(DATE).size());
+            assertEquals(2, log.markCompleted(List.of(2, 4), true));
+            assertEquals(7, log.filterTasksByCompletionStatus(true).size());
+        }
+    }
+
+    @Test
+    public void testTooLongTitleIsRejected() throws IOException {
+        try (LogTaskRepository log = new LogTaskRepository(dir.resolve("tasks.log"), 0)) {
+            Task task = new Task("x".repeat(LogTaskRepository.MAX_TITLE_BYTES + 1), DATE, 1, false);
+            log.addTask(task);
+            assertEquals(0, task.getId());
+            assertEquals(0, log.size());
+        }
+    }
+
+    // the recurrence is kept after the title, and survives an update of another field and a reopen
+    @Test
+    public void testRecurrenceIsStored() throws IOException {
+        Path file = dir.resolve("tasks.log");
+        Recurrence weekly = new Recurrence(Recurrence.Frequency.WEEKLY, 2, DATE.plusMonths(3));
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            log.addTask(new Task(0, "Bins", DATE, 2, false, weekly));
+            log.addTask(new Task("Dentist", DATE, 1, false));
+            Task change = log.filterTasksById(1);
+            change.setPriority(3);
+            assertTrue(log.updateTask(change));
+
+            // a recurring task has less room for its title
+            Task tooLong = new Task(0, "x".repeat(LogTaskRepository.MAX_TITLE_BYTES), DATE, 1, false, weekly);
+            log.addTask(tooLong);
+            assertEquals(0, tooLong.getId());
+        }
+
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            assertEquals(weekly, log.filterTasksById(1).getRecurrence());
+            assertEquals(3, log.filterTasksById(1).getPriority());
+            assertNull(log.filterTasksById(2).getRecurrence());
+            assertEquals(List.of(1), log.getRecurringTasks().stream().map(Task::getId).toList());
+
+            Task once = log.filterTasksById(1);
+            once.setRecurrence(null);
+            assertTrue(log.updateTask(once));
+            assertTrue(log.getRecurringTasks().isEmpty());
+        }
+    }
+
+    // compaction drops the dead records and keeps the latest version of every task
+    @Test
+    public void testCompaction() throws IOException {
+        Path file = dir.resolve("tasks.log");
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            for (int i = 0; i < 100; i++) {
+                log.addTask(new Task("Task " + i, DATE, 1, false));
+            }
+            for (int id = 1; id <= 100; id++) {
+                Task task = log.filterTasksById(id);
+                task.setPriority(2);
+                log.updateTask(task);
+            }
+            log.deleteTasks(List.of(1, 2, 3));
+            assertEquals(106, log.deadRecords()); // 100 old versions, 3 deleted tasks and their tombstones
+
+            log.compact();
+            assertEquals(0, log.deadRecords());
+            assertEquals(97, log.size());
+            assertEquals(2, log.filterTasksById(50).getPriority());
+
+            log.addTask(new Task("After", DATE, 1, false));
+            assertEquals(101, log.filterTasksByDate(DATE).get(97).getId());
+        }
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            assertEquals(98, log.size());
+            assertEquals(0, log.deadRecords());
+            assertNull(log.filterTasksById(1));
+        }
+    }
+
+    // the background compaction only runs once start() is called
+    @Test
+    public void testBackgroundCompactionWaitsForStart() throws Exception {
+        try (LogTaskRepository log = new LogTaskRepository(dir.resolve("tasks.log"), 1)) {
+            Task task = new Task("Task", DATE, 1, false);
+            log.addTask(task);
+            for (int i = 0; i < 10_001; i++) {
+                task.setPriority(i % 3 + 1);
+                log.updateTask(task);
+            }
+            Thread.sleep(1500);
+            assertEquals(10_001, log.deadRecords());
+
+            log.start();
+            for (int i = 0; i < 50 && log.deadRecords() > 0; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, log.deadRecords());
+            assertEquals(1, log.size());
+        }
+    }
+
+    // a file written before tasks had versions is converted when it is opened, and every task starts at version 1
+    @Test
+    public void testFormat1FileIsConverted() throws IOException {
+        Path file = dir.resolve("tasks.log");
+        ByteBuffer bytes = ByteBuffer.allocate(2 * LogTaskRepository.RECORD_SIZE);
+        bytes.putInt(0, 0x5441534B).putInt(4, 1).putInt(8, LogTaskRepository.RECORD_SIZE).putInt(12, 2);
+        int record = LogTaskRepository.RECORD_SIZE;
+        byte[] title = "Old task".getBytes(StandardCharsets.UTF_8);
+        bytes.putLong(record + 4, DATE.toEpochDay()).put(record + 12, (byte) 2).put(record + 13, (byte) 0)
+                .putShort(record + 14, (short) title.length).put(record + 16, title).putInt(record, 1);
+        Files.write(file, bytes.array());
+
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            Task task = log.filterTasksById(1);
+            assertEquals("Old task", task.getTitle());
+            assertEquals(DATE, task.getDueDate());
+            assertEquals(1, task.getVersion());
+
+            Task stale = new Task(task);
+            task.setPriority(1);
+            assertEquals(WriteResult.DONE, log.compareAndUpdate(task));
+            stale.setTitle("Renamed");
+            assertEquals(WriteResult.CONFLICT, log.compareAndUpdate(stale));
+            assertEquals(WriteResult.CONFLICT, log.compareAndDelete(1, 1));
+        }
+
+        try (LogTaskRepository log = new LogTaskRepository(file, 0)) {
+            Task task = log.filterTasksById(1);
+            assertEquals(2, task.getVersion());
+            assertEquals(DATE, task.getDueDate());
+            assertEquals(WriteResult.DONE, log.compareAndDelete(1, 2));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.model;
+
+import org.junit.jupiter.api.AfterEach;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @AfterEach
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    // nothing should be recorded while metrics are off
+    @Test
+    public void testDisabledRecordsNothing() {
+        Metrics.setEnabled(false);
+        long start = Metrics.start();
+        Metrics.record("MetricsTest.disabled", start, 5, false);
+
+        assertEquals(0, start);
+        assertTrue(Metrics.snapshot().stream().noneMatch(stats -> stats.getName().equals("MetricsTest.disabled")));
+    }
+
+    @Test
+    public void testRecordCountsCallsRowsAndErrors() {
+        Metrics.setEnabled(true);
+        Metrics.record("MetricsTest.op", Metrics.start(), 3, false);
+        Metrics.record("MetricsTest.op", Metrics.start(), 2, true);
+
+        OperationStats stats = Metrics.snapshot().stream()
+                .filter(s -> s.getName().equals("MetricsTest.op"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(2, stats.getCalls());
+        assertEquals(5, stats.getRows());
+        assertEquals(1, stats.getErrors());
+        assertTrue(Metrics.report().contains("MetricsTest.op"));
+    }
+
+    // every recorded call is also a TaskOperation event in a running JFR recording
+    @Test
+    public void testRecordSendsFlightRecorderEvent(@TempDir Path dir) throws IOException {
+        Metrics.setEnabled(true);
+        Path file = dir.resolve("metrics.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.example.TaskOperation");
+            recording.start();
+            Metrics.record("MetricsTest.jfr", Metrics.start(), 4, false);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("org.example.TaskOperation"))
+                .filter(event -> event.getString("operation").equals("MetricsTest.jfr"))
+                .toList();
+        assertEquals(1, events.size());
+        assertEquals(4, events.get(0).getInt("rows"));
+        assertFalse(events.get(0).getBoolean("failed"));
+        assertTrue(events.get(0).getLong("elapsedNanos") >= 0);
+    }
+
+    // percentiles come from power-of-two buckets, so they are upper bounds of the bucket
+    @Test
+    public void testPercentiles() {
+        OperationStats stats = new OperationStats("test");
+        for (int i = 0; i < 99; i++) {
+            stats.record(1000, 1, false); // bucket 512-1023
+        }
+        stats.record(1_000_000, 1, false); // bucket 524288-1048575
+
+        assertEquals(1023, stats.getPercentileNanos(50));
+        assertEquals(1023, stats.getPercentileNanos(99));
+        assertEquals(1_048_575, stats.getPercentileNanos(100));
+        assertEquals(1_000_000, stats.getMaxNanos());
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecurrenceTest {
+    private static final LocalDate START = LocalDate.of(2025, 1, 31);
+
+    @Test
+    void testOccurrencesOnlyInsideTheRange() {
+        Recurrence everyOtherWeek = new Recurrence(Recurrence.Frequency.WEEKLY, 2, null);
+        assertEquals(List.of(LocalDate.of(2025, 2, 14), LocalDate.of(2025, 2, 28)),
+                everyOtherWeek.occurrencesBetween(START, LocalDate.of(2025, 2, 1), LocalDate.of(2025, 3, 13)));
+        // nothing before the first occurrence, and a range far ahead is reached without stepping through the years
+        assertEquals(List.of(START), everyOtherWeek.occurrencesBetween(START, LocalDate.of(2024, 1, 1), START));
+        assertEquals(1, everyOtherWeek.occurrencesBetween(START, LocalDate.of(2125, 1, 1), LocalDate.of(2125, 1, 14)).size());
+
+        assertTrue(everyOtherWeek.occursOn(START, LocalDate.of(2025, 2, 14)));
+        assertFalse(everyOtherWeek.occursOn(START, LocalDate.of(2025, 2, 7)));
+    }
+
+    // the 31st falls on the last day of shorter months, and comes back to the 31st after them
+    @Test
+    void testMonthlyAtTheEndOfTheMonth() {
+        Recurrence monthly = new Recurrence(Recurrence.Frequency.MONTHLY, 1, LocalDate.of(2025, 4, 30));
+        assertEquals(List.of(START, LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 31), LocalDate.of(2025, 4, 30)),
+                monthly.occurrencesBetween(START, START, LocalDate.of(2025, 12, 31)));
+    }
+
+    @Test
+    void testParse() {
+        Recurrence recurrence = new Recurrence(Recurrence.Frequency.DAILY, 3, LocalDate.of(2025, 6, 1));
+        assertEquals(recurrence, Recurrence.parse(recurrence.toString()));
+        assertEquals(new Recurrence(Recurrence.Frequency.WEEKLY), Recurrence.parse(" weekly "));
+        assertThrows(IllegalArgumentException.class, () -> Recurrence.parse("yearly"));
+        assertThrows(IllegalArgumentException.class, () -> Recurrence.parse("daily/0"));
+        assertThrows(IllegalArgumentException.class, () -> Recurrence.parse("daily/1/soon"));
+    }
+}
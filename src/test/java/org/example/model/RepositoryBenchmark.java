@@ -0,0 +1,98 @@
+package org.example.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// the same operations against SQLite (TaskDao) and the append-only log (LogTaskRepository), both filled with the
+// BenchmarkDatabase tasks. Run with: mvn -Pbenchmark verify -Djmh.args="RepositoryBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RepositoryBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Param({"sqlite", "log"})
+    public String backend;
+
+    private BenchmarkDatabase database;
+    private Path logFile;
+    private TaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (backend.equals("sqlite")) {
+            database = new BenchmarkDatabase(ROWS);
+            repository = database.getTaskDao();
+            return;
+        }
+        logFile = Files.createTempFile("tasktracker-bench", ".log");
+        Files.delete(logFile);
+        repository = new LogTaskRepository(logFile, 0);
+        List<Task> tasks = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            tasks.add(BenchmarkDatabase.task(i));
+        }
+        repository.addTasks(tasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        if (database != null) {
+            database.close();
+        } else {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, ROWS + 1);
+    }
+
+    @Benchmark
+    public Task addTask() {
+        Task task = BenchmarkDatabase.task(randomId());
+        repository.addTask(task);
+        return task;
+    }
+
+    @Benchmark
+    public boolean updateTask() {
+        Task task = new Task(randomId(), "Updated", BenchmarkDatabase.FIRST_DUE_DATE, 1, false);
+        task.clearChanges();
+        task.setCompleted(ThreadLocalRandom.current().nextBoolean());
+        return repository.updateTask(task);
+    }
+
+    @Benchmark
+    public Task filterTasksById() {
+        return repository.filterTasksById(randomId());
+    }
+
+    @Benchmark
+    public List<Task> filterTasksByDate() {
+        return repository.filterTasksByDate(BenchmarkDatabase.FIRST_DUE_DATE.plusDays(randomId() % BenchmarkDatabase.DAYS));
+    }
+}
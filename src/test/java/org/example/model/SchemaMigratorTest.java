@@ -0,0 +1,119 @@
+package org.example.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// tests the schema upgrades on a throwaway in-memory database, including upgrading a database made by the old version
+public class SchemaMigratorTest {
+    private Connection conn;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    // a brand-new database should end up at the latest version
+    @Test
+    public void testMigrateNewDatabase() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(conn);
+
+        assertEquals(SchemaMigrator.latestVersion(), migrator.migrate());
+        assertEquals(SchemaMigrator.latestVersion(), migrator.currentVersion());
+
+        // running it again should do nothing
+        assertEquals(SchemaMigrator.latestVersion(), migrator.migrate());
+    }
+
+    // a tasks.db from before the migrations existed stores dates as text, these should be converted to epoch days
+    @Test
+    public void testUpgradeLegacyDatabase() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE tasks (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL," +
+                    "due_date TEXT NOT NULL, priority INTEGER NOT NULL, isCompleted BOOLEAN NOT NULL)");
+            stmt.execute("INSERT INTO tasks (title, due_date, priority, isCompleted) VALUES ('Old Task', '2025-04-22', 2, 0)");
+            stmt.execute("INSERT INTO tasks (title, due_date, priority, isCompleted) VALUES ('Deleted Task', '2025-04-23', 1, 0)");
+            stmt.execute("DELETE FROM tasks WHERE title = 'Deleted Task'");
+        }
+
+        new SchemaMigrator(conn).migrate();
+
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT id, due_date, typeof(due_date) FROM tasks")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                assertEquals(LocalDate.of(2025, 4, 22).toEpochDay(), rs.getLong(2));
+                assertEquals("integer", rs.getString(3));
+            }
+
+            // the id of the deleted task must not be handed out again
+            stmt.execute("INSERT INTO tasks (title, due_date, priority, isCompleted) VALUES ('New Task', 0, 1, 0)");
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM tasks")) {
+                assertTrue(rs.next());
+                assertEquals(3, rs.getInt(1));
+            }
+
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'idx_tasks_open_due'")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    // a date that can't be converted stops the upgrade with the task named, and leaves the database at the version before
+    @Test
+    public void testBadLegacyDateFailsTheMigration() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE tasks (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL," +
+                    "due_date TEXT NOT NULL, priority INTEGER NOT NULL, isCompleted BOOLEAN NOT NULL)");
+            stmt.execute("INSERT INTO tasks (title, due_date, priority, isCompleted) VALUES ('Old Task', 'next tuesday', 2, 0)");
+        }
+
+        SchemaMigrator migrator = new SchemaMigrator(conn);
+        SQLException e = assertThrows(SQLException.class, migrator::migrate);
+        assertTrue(e.getMessage().contains("next tuesday"));
+        assertEquals(1, migrator.currentVersion());
+
+        // a tasks table that went missing isn't papered over either
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE tasks");
+        }
+        assertThrows(SQLException.class, migrator::migrate);
+    }
+
+    // a tasks table made again next to an existing archive must not hand out the archived ids
+    @Test
+    public void testRecreatedTasksSkipArchivedIds() throws SQLException {
+        new SchemaMigrator(conn).migrate();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO tasks_archive (id, title, due_date, priority, isCompleted, version, archived_on) " +
+                    "VALUES (50, 'Archived', 0, 1, 1, 1, 0)");
+            stmt.execute("DROP TABLE tasks");
+            stmt.execute("DROP TABLE schema_version");
+        }
+
+        new SchemaMigrator(conn).migrate();
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO tasks (title, due_date, priority, isCompleted) VALUES ('New Task', 0, 1, 0)");
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM tasks")) {
+                assertTrue(rs.next());
+                assertEquals(51, rs.getInt(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks for the TaskDao hot paths on a pre-filled database, run with: mvn -Pbenchmark verify
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TaskDaoBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private TaskDao taskDao;
+    private List<Task> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase(rows);
+        taskDao = database.getTaskDao();
+    }
+
+    @Setup(Level.Invocation)
+    public void newBatch() {
+        batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(BenchmarkDatabase.task(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, rows + 1);
+    }
+
+    @Benchmark
+    public Task addTask() {
+        Task task = BenchmarkDatabase.task(randomId());
+        taskDao.addTask(task);
+        return task;
+    }
+
+    // time for a batch of 1000 - divide by 1000 to compare with addTask
+    @Benchmark
+    public int addTasksBatch() {
+        return taskDao.addTasks(batch);
+    }
+
+    @Benchmark
+    public Task filterTasksById() {
+        return taskDao.filterTasksById(randomId());
+    }
+
+    @Benchmark
+    public List<Task> filterTasksByDate() {
+        return taskDao.filterTasksByDate(BenchmarkDatabase.FIRST_DUE_DATE.plusDays(randomId() % BenchmarkDatabase.DAYS));
+    }
+
+    @Benchmark
+    public List<Task> filterTasksByPriority() {
+        return taskDao.filterTasksByPriority(randomId() % 3 + 1);
+    }
+
+    @Benchmark
+    public List<Task> filterTasksByCompletionStatus() {
+        return taskDao.filterTasksByCompletionStatus(true);
+    }
+
+    @Benchmark
+    public List<Task> getAllTasks() {
+        return taskDao.getAllTasks();
+    }
+
+    @Benchmark
+    public boolean updateTask() {
+        Task task = BenchmarkDatabase.task(0);
+        task.setId(randomId());
+        task.setCompleted(ThreadLocalRandom.current().nextBoolean());
+        return taskDao.updateTask(task);
+    }
+
+    // decoding 1000 rows into Task objects, against only stepping through the same rows, shows the cost of the mapping
+    @Benchmark
+    public void mapResultSetToTask(Blackhole blackhole) throws SQLException {
+        decodeRows(blackhole, true);
+    }
+
+    @Benchmark
+    public void stepRowsWithoutMapping(Blackhole blackhole) throws SQLException {
+        decodeRows(blackhole, false);
+    }
+
+    private void decodeRows(Blackhole blackhole, boolean map) throws SQLException {
+        DatabaseHelper.read(statements -> {
+            PreparedStatement stmt = statements.prepare("SELECT * FROM tasks LIMIT " + BATCH);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    blackhole.consume(map ? taskDao.mapResultSetToTask(rs) : rs);
+                }
+            }
+            return null;
+        });
+    }
+}
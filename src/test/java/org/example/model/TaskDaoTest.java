@@ -8,7 +8,13 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,11 +37,29 @@ public class TaskDaoTest {
         try (Connection connection = databaseHelper.getConnection();
              Statement stmt = connection.createStatement()) {
             stmt.execute("DROP TABLE IF EXISTS tasks");
+            stmt.execute("DROP TABLE IF EXISTS tasks_archive");
+            stmt.execute("DROP TABLE IF EXISTS task_occurrences");
+            stmt.execute("DROP TABLE IF EXISTS schema_version");
         }
         databaseHelper.closeConnection(); // Close the connection after tests
     }
 
     // test to add a task
+    // a write that fails inside inTransaction rolls back the writes before it too, instead of being skipped
+    @Test
+    public void testFailedWriteRollsBackTheTransaction() {
+        LocalDate date = LocalDate.of(2025, 4, 22);
+        Task first = new Task("First", date, 1, false);
+        assertFalse(taskDao.inTransaction(() -> {
+            taskDao.addTask(first);
+            taskDao.addTask(new Task(null, date, 2, false)); // title is NOT NULL
+        }));
+        assertTrue(taskDao.getAllTasks().isEmpty());
+
+        assertTrue(taskDao.inTransaction(() -> taskDao.addTask(new Task("Second", date, 1, false))));
+        assertEquals(1, taskDao.getAllTasks().size());
+    }
+
     @Test
     public void testCreateTask() throws SQLException {
         // Create a new task
@@ -91,7 +115,7 @@ public class TaskDaoTest {
         task.setPriority(3);
         task.setDueDate(LocalDate.of(2025, 5, 22));
         task.setCompleted(true);
-        taskDao.updateTask(task);
+        assertTrue(taskDao.updateTask(task));
 
         // Retrieve the updated task
         Task updatedTask = taskDao.filterTasksById(task.getId());
@@ -112,7 +136,8 @@ public class TaskDaoTest {
         taskDao.addTask(task);
 
         // Delete the task
-        taskDao.deleteTask(task.getId());
+        assertTrue(taskDao.deleteTask(task.getId()));
+        assertFalse(taskDao.deleteTask(task.getId())); // it's gone now
 
         // Try to retrieve the task
         Task deletedTask = taskDao.filterTasksById(task.getId());
@@ -182,4 +207,346 @@ public class TaskDaoTest {
         assertEquals(1, tasks.size());
         assertEquals("Incomplete Task", tasks.get(0).getTitle());
     }
+
+    // bulk insert should assign every task its own id, across more than one batch
+    @Test
+    public void testAddTasksInBatches() {
+        taskDao.setBatchSize(2);
+        List<Task> newTasks = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            newTasks.add(new Task("Bulk Task " + i, LocalDate.of(2025, 4, 20 + i), 2, false));
+        }
+
+        int inserted = taskDao.addTasks(newTasks);
+
+        assertEquals(5, inserted);
+        assertEquals(5, taskDao.getAllTasks().size());
+        for (Task task : newTasks) {
+            Task retrievedTask = taskDao.filterTasksById(task.getId());
+            assertNotNull(retrievedTask);
+            assertEquals(task.getTitle(), retrievedTask.getTitle());
+        }
+    }
+
+    // looking the same task up twice should reuse the prepared statement the first lookup created
+    @Test
+    public void testStatementCacheReusesStatements() {
+        Task task = new Task("Cached Task", LocalDate.of(2025, 4, 22), 1, false);
+        taskDao.addTask(task);
+
+        taskDao.filterTasksById(task.getId());
+        long[] afterFirstLookup = DatabaseHelper.statementCacheCounts();
+
+        taskDao.filterTasksById(task.getId());
+        long[] afterSecondLookup = DatabaseHelper.statementCacheCounts();
+
+        assertEquals(afterFirstLookup[0] + 1, afterSecondLookup[0]); // one more hit
+        assertEquals(afterFirstLookup[1], afterSecondLookup[1]); // no new misses
+    }
+
+    // several threads adding and reading at the same time should not lose or break any writes
+    @Test
+    public void testConcurrentAddAndRead() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        Task task = new Task("Thread " + thread + " Task " + i, LocalDate.of(2025, 4, 22), 1, false);
+                        taskDao.addTask(task);
+                        assertNotNull(taskDao.filterTasksById(task.getId()));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(100, taskDao.getAllTasks().size());
+    }
+
+    // paging through all tasks should visit every task once, in due date order
+    @Test
+    public void testGetTasksPage() {
+        for (int i = 0; i < 5; i++) {
+            taskDao.addTask(new Task("Task " + i, LocalDate.of(2025, 4, 22).plusDays(i % 3), 1, false));
+        }
+
+        List<Task> firstPage = taskDao.getTasksPage(null, 0, 2);
+        Task last = firstPage.get(1);
+        List<Task> secondPage = taskDao.getTasksPage(last.getDueDate(), last.getId(), 2);
+        last = secondPage.get(1);
+        List<Task> thirdPage = taskDao.getTasksPage(last.getDueDate(), last.getId(), 2);
+
+        assertEquals(2, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertEquals(1, thirdPage.size());
+
+        List<Task> paged = new ArrayList<>(firstPage);
+        paged.addAll(secondPage);
+        paged.addAll(thirdPage);
+        List<Task> allTasks = taskDao.getAllTasks();
+        for (int i = 0; i < allTasks.size(); i++) {
+            assertEquals(allTasks.get(i).getId(), paged.get(i).getId());
+        }
+    }
+
+    // the streaming version should return the same tasks as the list version
+    @Test
+    public void testStreamTasksByPriority() {
+        taskDao.addTask(new Task("High Priority Task", LocalDate.of(2025, 4, 22), 1, false));
+        taskDao.addTask(new Task("Low Priority Task", LocalDate.of(2025, 4, 23), 3, false));
+
+        List<String> titles;
+        try (Stream<Task> tasks = taskDao.streamTasksByPriority(3)) {
+            titles = tasks.map(Task::getTitle).collect(Collectors.toList());
+        }
+
+        assertEquals(List.of("Low Priority Task"), titles);
+        assertEquals(2, taskDao.forEachTask(task -> { }));
+    }
+
+    // the full-text index should follow inserts, updates and deletes through its triggers
+    @Test
+    public void testSearchByTitle() {
+        assertTrue(taskDao.isTitleSearchAvailable());
+        Task milk = new Task("Buy milk", LocalDate.of(2025, 4, 22), 1, false);
+        Task report = new Task("Write the milk report, \"final\" version", LocalDate.of(2025, 4, 23), 2, false);
+        taskDao.addTask(milk);
+        taskDao.addTask(report);
+        taskDao.addTask(new Task("Call mom", LocalDate.of(2025, 4, 24), 3, false));
+
+        // prefix search, the shorter title ranks first
+        List<Task> found = taskDao.searchByTitle("mil", 10);
+        assertEquals(2, found.size());
+        assertEquals(milk.getId(), found.get(0).getId());
+
+        // every word has to match, and quotes or punctuation in the search don't break the query
+        assertEquals(1, taskDao.searchByTitle("\"final\" rep", 10).size());
+        assertTrue(taskDao.searchByTitle("  ,, ", 10).isEmpty());
+
+        milk.setTitle("Buy bread");
+        taskDao.updateTask(milk);
+        taskDao.deleteTask(report.getId());
+        assertTrue(taskDao.searchByTitle("milk", 10).isEmpty());
+        assertEquals(1, taskDao.searchByTitle("bread", 10).size());
+    }
+
+    // LIKE only ignores the case of ASCII letters, and TaskQuery.matches - used in cache mode - does the same
+    @Test
+    public void testTitleFilterFoldsOnlyAsciiCase() {
+        taskDao.addTask(new Task("Éclair", LocalDate.of(2025, 4, 22), 1, false));
+        taskDao.addTask(new Task("éclair tart", LocalDate.of(2025, 4, 23), 1, false));
+        taskDao.addTask(new Task("CAKE ÉCLAIR", LocalDate.of(2025, 4, 24), 1, false));
+
+        for (String search : List.of("éclair", "ÉCLAIR", "Éclair", "cake é", "tart")) {
+            TaskQuery query = new TaskQuery().titleContains(search);
+            List<String> inMemory = taskDao.getAllTasks().stream().filter(query::matches).map(Task::getTitle).toList();
+            assertEquals(inMemory, taskDao.query(query).stream().map(Task::getTitle).toList(), search);
+        }
+        assertEquals(List.of("Éclair", "CAKE ÉCLAIR"), taskDao.query(new TaskQuery().titleContains("Éclair")).stream()
+                .map(Task::getTitle).toList()); // É is not é, only the ASCII letters are folded
+    }
+
+    // all the filters of a TaskQuery should be applied together, in one statement
+    @Test
+    public void testQueryCombinesFilters() {
+        taskDao.addTask(new Task("Open high 100%", LocalDate.of(2025, 4, 22), 1, false));
+        taskDao.addTask(new Task("Done high", LocalDate.of(2025, 4, 23), 1, true));
+        taskDao.addTask(new Task("Open low", LocalDate.of(2025, 4, 24), 3, false));
+        taskDao.addTask(new Task("Open high, next month", LocalDate.of(2025, 5, 22), 2, false));
+
+        TaskQuery query = new TaskQuery()
+                .dueBetween(LocalDate.of(2025, 4, 21), LocalDate.of(2025, 4, 27))
+                .priorities(1, 2)
+                .completed(false);
+        List<Task> tasks = taskDao.query(query);
+        assertEquals(1, tasks.size());
+        assertEquals("Open high 100%", tasks.get(0).getTitle());
+
+        // % in the title filter is taken literally, not as a wildcard
+        assertEquals(1, taskDao.query(new TaskQuery().titleContains("100%")).size());
+        assertEquals(0, taskDao.query(new TaskQuery().titleContains("1%0")).size());
+
+        List<Task> byPriority = taskDao.query(new TaskQuery().completed(false).orderBy(TaskQuery.Order.PRIORITY).limit(2));
+        assertEquals(List.of("Open high 100%", "Open high, next month"), byPriority.stream().map(Task::getTitle).collect(Collectors.toList()));
+
+        List<Object> parameters = new ArrayList<>();
+        assertEquals("SELECT * FROM tasks WHERE due_date >= ? AND due_date <= ? AND priority IN (?, ?) AND isCompleted = 0 " +
+                "ORDER BY due_date ASC, id ASC", TaskDao.toSql(query, parameters));
+        assertEquals(4, parameters.size());
+    }
+
+    // the database ranking should agree with Urgency.score
+    @Test
+    public void testTopUrgent() {
+        LocalDate today = LocalDate.of(2025, 4, 22);
+        taskDao.addTask(new Task("Low, overdue", LocalDate.of(2025, 4, 20), 3, false));
+        taskDao.addTask(new Task("High, next week", LocalDate.of(2025, 4, 29), 1, false));
+        taskDao.addTask(new Task("Medium, today", LocalDate.of(2025, 4, 22), 2, false));
+        taskDao.addTask(new Task("High, done", LocalDate.of(2025, 4, 1), 1, true));
+
+        Urgency urgency = new Urgency().setPriorityWeight(10).setDayWeight(1).setOverdueWeight(20);
+        List<Task> top = taskDao.topUrgent(2, urgency, today);
+
+        // scores: 10 + 2 + 20 = 32, 30 - 7 = 23, 20 + 0 = 20, the completed task doesn't count
+        assertEquals(List.of("Low, overdue", "High, next week"), top.stream().map(Task::getTitle).collect(Collectors.toList()));
+
+        List<Task> expected = taskDao.filterTasksByCompletionStatus(false);
+        expected.sort(urgency.mostUrgentFirst(today));
+        assertEquals(expected.get(2).getId(), taskDao.topUrgent(3, urgency, today).get(2).getId());
+    }
+
+    // only the changed column should be written - the title changed behind this task's back is kept
+    @Test
+    public void testPartialUpdate() {
+        Task task = new Task("Original", LocalDate.of(2025, 4, 22), 1, false);
+        taskDao.addTask(task);
+        Task other = taskDao.filterTasksById(task.getId());
+        other.setTitle("Renamed elsewhere");
+        taskDao.updateTask(other);
+
+        // task is now out of date, so its update is refused unless the version check is turned off
+        task.setCompleted(true);
+        assertFalse(taskDao.updateTask(task));
+        task.setVersion(0);
+        assertTrue(taskDao.updateTask(task));
+        assertFalse(task.hasChanges());
+
+        Task saved = taskDao.filterTasksById(task.getId());
+        assertEquals("Renamed elsewhere", saved.getTitle());
+        assertTrue(saved.isCompleted());
+    }
+
+    @Test
+    public void testBulkOperations() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(new Task("Task " + i, LocalDate.of(2025, 4, 22).plusDays(i), 3, false));
+        }
+        taskDao.addTasks(tasks);
+        List<Integer> firstFive = tasks.subList(0, 5).stream().map(Task::getId).collect(Collectors.toList());
+
+        assertEquals(5, taskDao.markCompleted(firstFive, true));
+        assertEquals(5, taskDao.filterTasksByCompletionStatus(true).size());
+
+        // the two open tasks due soonest become priority 1
+        assertEquals(2, taskDao.reprioritize(new TaskQuery().completed(false).limit(2), 1));
+        assertEquals(List.of("Task 5", "Task 6"),
+                taskDao.filterTasksByPriority(1).stream().map(Task::getTitle).collect(Collectors.toList()));
+
+        assertEquals(5, taskDao.deleteTasks(firstFive));
+        assertEquals(0, taskDao.deleteTasks(firstFive));
+        assertEquals(5, taskDao.getAllTasks().size());
+    }
+
+    // 2025-04-23 is a Wednesday, so this week runs to Sunday 2025-04-27
+    @Test
+    public void testSummary() {
+        LocalDate today = LocalDate.of(2025, 4, 23);
+        taskDao.addTasks(List.of(
+                new Task("Overdue", LocalDate.of(2025, 4, 20), 1, false),
+                new Task("Today", today, 2, false),
+                new Task("Sunday", LocalDate.of(2025, 4, 27), 3, false),
+                new Task("Next week", LocalDate.of(2025, 4, 28), 1, false),
+                new Task("Done", LocalDate.of(2025, 4, 20), 2, true)));
+
+        TaskSummary summary = taskDao.summary(today);
+        assertEquals(2, summary.getOpen(1));
+        assertEquals(1, summary.getOpen(2));
+        assertEquals(1, summary.getCompleted(2));
+        assertEquals(0, summary.getCompleted(3));
+        assertEquals(5, summary.getTotal());
+        assertEquals(1, summary.getOverdue());
+        assertEquals(1, summary.getDueToday());
+        assertEquals(2, summary.getDueThisWeek());
+    }
+
+    // an update or delete made from a task read before someone else changed it is refused, not silently applied
+    @Test
+    public void testCompareAndSet() {
+        Task task = new Task("Buy milk", LocalDate.of(2025, 4, 22), 2, false);
+        taskDao.addTask(task);
+        assertEquals(1, task.getVersion());
+
+        Task mine = taskDao.filterTasksById(task.getId());
+        Task theirs = taskDao.filterTasksById(task.getId());
+        theirs.setPriority(1);
+        assertEquals(WriteResult.DONE, taskDao.compareAndUpdate(theirs));
+        assertEquals(2, theirs.getVersion());
+
+        mine.setTitle("Buy oat milk");
+        assertEquals(WriteResult.CONFLICT, taskDao.compareAndUpdate(mine));
+        assertEquals(WriteResult.CONFLICT, taskDao.compareAndDelete(task.getId(), 1));
+        assertEquals("Buy milk", taskDao.filterTasksById(task.getId()).getTitle());
+
+        // version 0 isn't checked
+        mine.setVersion(0);
+        assertEquals(WriteResult.DONE, taskDao.compareAndUpdate(mine));
+        Task stored = taskDao.filterTasksById(task.getId());
+        assertEquals("Buy oat milk", stored.getTitle());
+        assertEquals(1, stored.getPriority());
+        assertEquals(3, stored.getVersion());
+
+        assertEquals(1, taskDao.markCompleted(List.of(task.getId()), true));
+        assertEquals(4, taskDao.filterTasksById(task.getId()).getVersion());
+        assertEquals(WriteResult.DONE, taskDao.compareAndDelete(task.getId(), 4));
+        assertEquals(WriteResult.NOT_FOUND, taskDao.compareAndDelete(task.getId(), 0));
+        assertEquals(WriteResult.NOT_FOUND, taskDao.compareAndUpdate(stored));
+    }
+
+    // archived tasks leave every ordinary read and only come back when a query asks for the archive
+    @Test
+    public void testArchiveCompleted() {
+        Task open = new Task("Still open", LocalDate.of(2025, 4, 20), 1, false);
+        Task done = new Task("Done long ago", LocalDate.of(2025, 4, 21), 2, true);
+        Task doneLater = new Task("Done just now", LocalDate.of(2025, 4, 22), 3, false);
+        taskDao.addTasks(List.of(open, done, doneLater));
+        doneLater.setCompleted(true);
+        assertTrue(taskDao.updateTask(doneLater)); // sets completed_on through the trigger
+
+        // nothing was completed before today
+        assertTrue(taskDao.archiveCompleted(LocalDate.now(), 10).isEmpty());
+
+        List<Task> archived = taskDao.archiveCompleted(LocalDate.now().plusDays(1), 1);
+        assertEquals(1, archived.size());
+        archived.addAll(taskDao.archiveCompleted(LocalDate.now().plusDays(1), 10));
+        assertEquals(List.of(done.getId(), doneLater.getId()), archived.stream().map(Task::getId).collect(Collectors.toList()));
+        assertEquals(2, archived.get(1).getVersion());
+
+        assertEquals(List.of(open.getId()), taskDao.getAllTasks().stream().map(Task::getId).collect(Collectors.toList()));
+        assertNull(taskDao.filterTasksById(done.getId()));
+        assertTrue(taskDao.query(new TaskQuery().completed(true)).isEmpty());
+
+        List<Task> everything = taskDao.query(new TaskQuery().includeArchived(true).orderBy(TaskQuery.Order.PRIORITY));
+        assertEquals(List.of("Still open", "Done long ago", "Done just now"),
+                everything.stream().map(Task::getTitle).collect(Collectors.toList()));
+        assertEquals(1, taskDao.query(new TaskQuery().includeArchived(true).completed(true).limit(1)).size());
+
+        // a new task never gets the id of an archived one
+        Task next = new Task("Next", LocalDate.of(2025, 4, 23), 1, false);
+        taskDao.addTask(next);
+        assertTrue(next.getId() > doneLater.getId());
+        assertTrue(taskDao.reclaimSpace(100) >= 0);
+    }
+
+    // an old database without auto_vacuum is only rebuilt when asked to, once
+    @Test
+    public void testEnableIncrementalVacuum() throws SQLException {
+        taskDao.addTask(new Task("Test Task", LocalDate.of(2025, 4, 22), 1, false));
+        assertFalse(taskDao.enableIncrementalVacuum());
+        try (Statement stmt = databaseHelper.getConnection().createStatement()) {
+            stmt.execute("PRAGMA auto_vacuum = NONE");
+            stmt.execute("VACUUM");
+        }
+        assertEquals(0, taskDao.reclaimSpace(100));
+        assertTrue(taskDao.enableIncrementalVacuum());
+        assertFalse(taskDao.enableIncrementalVacuum());
+        assertEquals(1, taskDao.getAllTasks().size());
+    }
 }
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -47,5 +48,17 @@ public class TaskTest {
         assertEquals(expectedString, task.toString());
     }
 
+    // the setters should remember which fields changed, until the changes are saved
+    @Test
+    void testChangedFields() {
+        assertFalse(task.hasChanges());
+
+        task.setPriority(2);
+        task.setCompleted(true);
+        assertEquals(Set.of(Task.Field.PRIORITY, Task.Field.COMPLETED), task.getChangedFields());
+
+        task.clearChanges();
+        assertFalse(task.hasChanges());
+    }
 
 }
@@ -0,0 +1,86 @@
+package org.example.view;
+
+import org.example.controller.TaskManager;
+import org.example.model.DatabaseHelper;
+import org.example.model.TaskDao;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// not a unit test - run the main method (with the test classpath) to compare how long one "get" command takes:
+//   cold     - a new JVM running Main directly, which opens and migrates the database every time
+//   client   - a new JVM running Main --client against a warm server
+//   request  - one request to the warm server from an already running program (what nc/socat would see)
+public class TaskServerLatencyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Path dir = Files.createTempDirectory("tasktracker-bench");
+        String dbUrl = "jdbc:sqlite:" + dir.resolve("tasks.db");
+        String socket = dir.resolve("tasks.sock").toString();
+
+        DatabaseHelper.configure(new DatabaseHelper.Settings().setUrl(dbUrl));
+        TaskManager taskManager = new TaskManager(new TaskDao(new DatabaseHelper()));
+        taskManager.addTask("Benchmark task", LocalDate.now(), 1);
+
+        try (TaskServer server = new TaskServer(taskManager, socket)) {
+            Thread serverThread = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            String classpath = System.getProperty("java.class.path");
+            List<String> cold = List.of(java, "-Dtasktracker.db.url=" + dbUrl, "-cp", classpath, "org.example.Main", "get", "1");
+            List<String> client = List.of(java, "-cp", classpath, "org.example.Main", "--client", socket, "get", "1");
+
+            report("cold", time(runs, () -> runProcess(cold)));
+            report("client", time(runs, () -> runProcess(client)));
+            // the in-process requests are cheap, so use more of them to get a stable number
+            report("request", time(runs * 100, () -> TaskClient.send(socket, "get 1", OutputStream.nullOutputStream())));
+        } finally {
+            DatabaseHelper.closeConnection();
+        }
+    }
+
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    private static List<Long> time(int runs, Run run) throws Exception {
+        run.run(); // warm up once
+        List<Long> micros = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            run.run();
+            micros.add((System.nanoTime() - start) / 1000);
+        }
+        micros.sort(null);
+        return micros;
+    }
+
+    private static void runProcess(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Command failed: " + command);
+        }
+    }
+
+    private static void report(String name, List<Long> micros) {
+        System.out.printf("%-8s median %,8d us   p90 %,8d us%n", name,
+                micros.get(micros.size() / 2), micros.get(micros.size() * 9 / 10));
+    }
+}
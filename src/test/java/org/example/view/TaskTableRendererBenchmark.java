@@ -0,0 +1,60 @@
+package org.example.view;
+
+import org.example.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmark comparing the old println/String.format printing with TaskTableRenderer, in rows per second.
+// Output goes to a stream that throws everything away, so only the formatting and buffering are measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TaskTableRendererBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({"renderer", "println"})
+    public String printer;
+
+    private List<Task> tasks;
+    private TaskTableRenderer renderer;
+    private PrintStream printStream;
+
+    @Setup
+    public void setUp() {
+        tasks = new ArrayList<>(ROWS);
+        for (int i = 1; i <= ROWS; i++) {
+            tasks.add(new Task(i, "Task number " + i, LocalDate.of(2025, 1, 1).plusDays(i % 365), i % 3 + 1, i % 2 == 0));
+        }
+        renderer = new TaskTableRenderer(OutputStream.nullOutputStream());
+        printStream = new PrintStream(OutputStream.nullOutputStream(), true);
+    }
+
+    // each operation prints all ROWS rows, so the score times ROWS is rows per second
+    @Benchmark
+    public void printTable() {
+        if (printer.equals("renderer")) {
+            renderer.render(tasks);
+        } else {
+            tasks.forEach(printStream::println);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.view;
+
+import org.example.model.Task;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// checks the renderer prints the same table as the old String.format version
+public class TaskTableRendererTest {
+
+    // a row should be exactly what Task.toString() gives, including titles longer than the column
+    @Test
+    void testRowMatchesToString() {
+        StringBuilder sb = new StringBuilder();
+        Task shortTask = new Task(7, "Test Task", LocalDate.of(2025, 4, 22), 1, false);
+        Task longTask = new Task(123456, "A title that is longer than twenty characters", LocalDate.of(2025, 12, 1), 3, true);
+
+        TaskTableRenderer.formatRow(shortTask, sb);
+        assertEquals(shortTask.toString(), sb.toString());
+
+        TaskTableRenderer.formatRow(longTask, sb);
+        assertEquals(longTask.toString(), sb.toString());
+    }
+
+    // in page mode it should stop when asked to, after the first page
+    @Test
+    void testPageModeStops() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            tasks.add(new Task(i, "Task " + i, LocalDate.of(2025, 4, 22), 1, false));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] prompts = {0};
+
+        long rows = new TaskTableRenderer(out, 2, () -> {
+            prompts[0]++;
+            return false;
+        }).render(tasks);
+
+        assertEquals(2, rows);
+        assertEquals(1, prompts[0]);
+        String printed = out.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.contains(tasks.get(1).toString()));
+        assertFalse(printed.contains(tasks.get(2).toString()));
+    }
+
+    // in raw mode every row is printed with one header and one footer
+    @Test
+    void testRawModePrintsEverything() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            tasks.add(new Task(i, "Task " + i, LocalDate.of(2025, 4, 22), 1, false));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(5, new TaskTableRenderer(out).render(tasks));
+        assertEquals(3 + 5 + 1, out.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+}